@@ -18,4 +18,8 @@
 
 # If you keep the line number information, uncomment this to
 # hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+#-renamesourcefileattribute SourceFile
+
+# StoryCatalog opens each story's challenge screen by the class name given in
+# assets/story_catalog.json.
+-keep class com.android.experienceaccessibility.AuditoryChallenge*Activity
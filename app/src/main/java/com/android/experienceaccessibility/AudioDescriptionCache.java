@@ -0,0 +1,272 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.android.experienceaccessibility.subtitles.CueTable;
+import com.android.experienceaccessibility.subtitles.SubtitleRepository;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * Spoken versions of a story's subtitles, synthesized ahead of playback and kept on disk, for
+ * viewers who cannot read the subtitles.
+ *
+ * <p>Clips are synthesized in cue order by a small pool of threads, each waiting for its
+ * utterance to finish. This keeps the engine's queue short, so live speech elsewhere in the app
+ * is not held up behind a whole story. Files are keyed by text, locale, voice and speech rate,
+ * like in {@link SpeechCache}, and live in the cache directory, which the system trims when it
+ * runs short of space. A clip whose synthesis fails is left out of the current description, and
+ * synthesized again the next time the description is prepared.
+ */
+public final class AudioDescriptionCache {
+  private static final String TAG = "AudioDescriptionCache";
+  private static final String DIRECTORY_NAME = "audio_description";
+  private static final String AUDIO_EXTENSION = ".wav";
+  private static final String TEMP_EXTENSION = ".tmp";
+  private static final String UTTERANCE_ID_PREFIX = "AudioDescription-";
+  private static final int SYNTHESIS_THREADS = 2;
+  private static final long ENGINE_TIMEOUT_SECONDS = 10;
+  private static final long SYNTHESIS_TIMEOUT_SECONDS = 30;
+  private static final Pattern MARKUP = Pattern.compile("<[^>]*>|\\{[^}]*\\}");
+
+  private static AudioDescriptionCache instance;
+
+  private final Context context;
+  private final SpeechService speechService;
+  private final File directory;
+  private final ExecutorService executor = Executors.newFixedThreadPool(SYNTHESIS_THREADS);
+  private final Map<String, SettableFuture<Boolean>> pendingUtterances =
+      new ConcurrentHashMap<>();
+  // Guarded by this.
+  private final Map<String, ListenableFuture<Description>> descriptions = new HashMap<>();
+
+  private AudioDescriptionCache(Context context) {
+    this.context = context;
+    speechService = SpeechService.getInstance(context);
+    directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    speechService.addUtteranceProgressListener(new SynthesisListener());
+  }
+
+  /** Returns the app wide cache. */
+  public static synchronized AudioDescriptionCache getInstance(Context context) {
+    if (instance == null) {
+      instance = new AudioDescriptionCache(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Starts synthesizing the description of the given subtitles, if not already done. The future
+   * completes as soon as the cues are known; clips are added to the description as they are
+   * synthesized.
+   */
+  public synchronized ListenableFuture<Description> prepare(String subtitlesPath) {
+    ListenableFuture<Description> description = descriptions.get(subtitlesPath);
+    if (description == null) {
+      SettableFuture<Description> future = SettableFuture.create();
+      executor.execute(() -> load(subtitlesPath, future));
+      descriptions.put(subtitlesPath, future);
+      description = future;
+    }
+    return description;
+  }
+
+  /** Runs on the executor. */
+  private void load(String subtitlesPath, SettableFuture<Description> future) {
+    CueTable cueTable;
+    try {
+      cueTable = SubtitleRepository.getInstance(context).getCueTable(subtitlesPath);
+      // The voice is part of the key, and only known once the synthesis engine is ready.
+      speechService.whenSynthesisReady().get(ENGINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (IOException | ExecutionException | InterruptedException | TimeoutException e) {
+      // Let a later call try again.
+      forget(subtitlesPath, future);
+      future.setException(e);
+      return;
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Log.w(TAG, "Cannot create " + directory);
+    }
+    Description description = new Description(cueTable);
+    // The same line may be said several times, but is only synthesized once.
+    LinkedHashMap<String, List<Integer>> cuesByKey = new LinkedHashMap<>();
+    Map<String, String> textByKey = new HashMap<>();
+    for (int i = 0; i < cueTable.size(); i++) {
+      String text = MARKUP.matcher(cueTable.getText(i)).replaceAll("").trim();
+      if (text.isEmpty()) {
+        continue;
+      }
+      String key = createKey(text);
+      List<Integer> cues = cuesByKey.get(key);
+      if (cues == null) {
+        cues = new ArrayList<>();
+        cuesByKey.put(key, cues);
+        textByKey.put(key, text);
+      }
+      cues.add(i);
+    }
+    List<Map.Entry<String, List<Integer>>> missingClips = new ArrayList<>();
+    for (Map.Entry<String, List<Integer>> entry : cuesByKey.entrySet()) {
+      File file = new File(directory, entry.getKey() + AUDIO_EXTENSION);
+      if (file.exists()) {
+        description.setClip(entry.getValue(), file);
+      } else {
+        missingClips.add(entry);
+      }
+    }
+    // Once every clip is tried, a description missing some is dropped so the next call retries.
+    AtomicInteger remaining = new AtomicInteger(missingClips.size());
+    AtomicBoolean failed = new AtomicBoolean();
+    for (Map.Entry<String, List<Integer>> entry : missingClips) {
+      File file = new File(directory, entry.getKey() + AUDIO_EXTENSION);
+      String text = textByKey.get(entry.getKey());
+      executor.execute(
+          () -> {
+            if (!synthesize(text, file, description, entry.getValue())) {
+              failed.set(true);
+            }
+            if (remaining.decrementAndGet() == 0 && failed.get()) {
+              forget(subtitlesPath, future);
+            }
+          });
+    }
+    future.set(description);
+  }
+
+  /** Drops the given description, unless it was already replaced by a newer one. */
+  private synchronized void forget(String subtitlesPath, ListenableFuture<Description> future) {
+    if (descriptions.get(subtitlesPath) == future) {
+      descriptions.remove(subtitlesPath);
+    }
+  }
+
+  /**
+   * Runs on the executor, blocking until the engine is done with the clip. Returns whether the
+   * clip was added to the description.
+   */
+  private boolean synthesize(String text, File file, Description description, List<Integer> cues) {
+    String utteranceId = UTTERANCE_ID_PREFIX + file.getName();
+    File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+    SettableFuture<Boolean> done = SettableFuture.create();
+    pendingUtterances.put(utteranceId, done);
+    try {
+      int status =
+          speechService.synthesizeToFile(text, /* params= */ null, tempFile, utteranceId);
+      if (status != TextToSpeech.ERROR
+          && done.get(SYNTHESIS_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+          && tempFile.renameTo(file)) {
+        description.setClip(cues, file);
+        return true;
+      }
+    } catch (ExecutionException | InterruptedException | TimeoutException e) {
+      Log.w(TAG, "Cannot synthesize description: " + text, e);
+    } finally {
+      pendingUtterances.remove(utteranceId);
+      tempFile.delete();
+    }
+    return false;
+  }
+
+  private String createKey(String text) {
+    String spec =
+        text
+            + '\n' + speechService.getLocale()
+            + '\n' + speechService.getVoiceName()
+            + '\n' + speechService.getSpeechRate();
+    return Hashing.sha256().hashString(spec, StandardCharsets.UTF_8).toString();
+  }
+
+  /** The cues of one story, and the clips synthesized for them so far. Safe on any thread. */
+  public static final class Description {
+    private final CueTable cueTable;
+    private final AtomicReferenceArray<File> clips;
+
+    private Description(CueTable cueTable) {
+      this.cueTable = cueTable;
+      clips = new AtomicReferenceArray<>(cueTable.size());
+    }
+
+    public int getCueCount() {
+      return cueTable.size();
+    }
+
+    public long getStartTimeUs(int cueIndex) {
+      return cueTable.getStartTimeUs(cueIndex);
+    }
+
+    /** Returns the clip of the given cue, or null if it is not synthesized yet. */
+    @Nullable
+    public File getClip(int cueIndex) {
+      return clips.get(cueIndex);
+    }
+
+    private void setClip(List<Integer> cueIndexes, File file) {
+      for (int cueIndex : cueIndexes) {
+        clips.set(cueIndex, file);
+      }
+    }
+  }
+
+  /** Completes the syntheses issued by this cache. */
+  private final class SynthesisListener extends UtteranceProgressListener {
+    @Override
+    public void onStart(String utteranceId) {}
+
+    @Override
+    public void onDone(String utteranceId) {
+      SettableFuture<Boolean> done = pendingUtterances.get(utteranceId);
+      if (done != null) {
+        done.set(true);
+      }
+    }
+
+    @Override
+    public void onError(String utteranceId) {
+      SettableFuture<Boolean> done = pendingUtterances.get(utteranceId);
+      if (done != null) {
+        done.set(false);
+      }
+    }
+
+    @Override
+    public void onStop(String utteranceId, boolean interrupted) {
+      onError(utteranceId);
+    }
+  }
+}
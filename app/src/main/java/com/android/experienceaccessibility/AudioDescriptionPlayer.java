@@ -0,0 +1,228 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.android.experienceaccessibility.AudioDescriptionCache.Description;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.PlayerMessage;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Speaks a story's audio description over its video. Each cue's clip starts when the video
+ * reaches the cue, and the video is ducked while the clip plays.
+ *
+ * <p>The clips play on their own media player rather than as a track merged into the video's
+ * media source, since the player only renders one audio track at a time. Must be used from the
+ * main thread.
+ */
+public final class AudioDescriptionPlayer
+    implements Player.EventListener,
+        MediaPlayer.OnPreparedListener,
+        MediaPlayer.OnCompletionListener {
+  private static final String TAG = "AudioDescriptionPlayer";
+  private static final float DUCKED_VOLUME = 0.25f;
+
+  private final AudioDescriptionCache cache;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final List<PlayerMessage> cueMessages = new ArrayList<>();
+  @Nullable private SimpleExoPlayer player;
+  @Nullable private ListenableFuture<Description> pendingDescription;
+  @Nullable private MediaPlayer clipPlayer;
+  private float volume = 1;
+  // A clip is loading, and starts once prepared unless something else happens first.
+  private boolean preparing = false;
+  private boolean describing = false;
+
+  public AudioDescriptionPlayer(Context context) {
+    cache = AudioDescriptionCache.getInstance(context);
+  }
+
+  /**
+   * Describes the given subtitles over the player from now on. Cues reached before their clip is
+   * synthesized go undescribed.
+   */
+  public void attach(SimpleExoPlayer player, String subtitlesPath) {
+    detach();
+    this.player = player;
+    player.addListener(this);
+    ListenableFuture<Description> description = cache.prepare(subtitlesPath);
+    pendingDescription = description;
+    description.addListener(
+        () -> {
+          if (pendingDescription == description) {
+            pendingDescription = null;
+            scheduleCues(description);
+          }
+        },
+        handler::post);
+  }
+
+  /** Stops describing, leaving the player's volume to its next user, who may already own it. */
+  public void detach() {
+    pendingDescription = null;
+    for (PlayerMessage message : cueMessages) {
+      message.cancel();
+    }
+    cueMessages.clear();
+    if (preparing) {
+      clipPlayer.reset();
+    } else if (clipPlayer != null && describing) {
+      clipPlayer.stop();
+    }
+    preparing = false;
+    describing = false;
+    if (player != null) {
+      player.removeListener(this);
+      player = null;
+    }
+  }
+
+  /** Sets the volume of the story, which the video is ducked from while a clip plays. */
+  public void setVolume(float volume) {
+    this.volume = volume;
+    applyVolume();
+  }
+
+  public void release() {
+    detach();
+    if (clipPlayer != null) {
+      clipPlayer.release();
+      clipPlayer = null;
+    }
+  }
+
+  private void scheduleCues(ListenableFuture<Description> future) {
+    Description description;
+    try {
+      description = Futures.getDone(future);
+    } catch (ExecutionException e) {
+      Log.w(TAG, "Cannot describe story", e);
+      return;
+    }
+    for (int i = 0; i < description.getCueCount(); i++) {
+      int cueIndex = i;
+      cueMessages.add(
+          player
+              .createMessage((messageType, payload) -> play(description.getClip(cueIndex)))
+              .setLooper(Looper.getMainLooper())
+              .setPosition(description.getStartTimeUs(i) / 1000)
+              // Described again when seeking back past the cue.
+              .setDeleteAfterDelivery(false)
+              .send());
+    }
+  }
+
+  private void play(@Nullable File clip) {
+    if (clip == null || player == null) {
+      return;
+    }
+    if (clipPlayer == null) {
+      clipPlayer = new MediaPlayer();
+      clipPlayer.setAudioAttributes(
+          new AudioAttributes.Builder()
+              .setUsage(AudioAttributes.USAGE_MEDIA)
+              .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+              .build());
+      clipPlayer.setOnPreparedListener(this);
+      clipPlayer.setOnCompletionListener(this);
+    }
+    // Loaded off the main thread, the video keeps its volume until the clip is ready.
+    try {
+      clipPlayer.reset();
+      clipPlayer.setDataSource(clip.getPath());
+    } catch (IOException e) {
+      Log.w(TAG, "Cannot play description " + clip, e);
+      preparing = false;
+      return;
+    }
+    clipPlayer.prepareAsync();
+    preparing = true;
+    if (describing) {
+      describing = false;
+      applyVolume();
+    }
+  }
+
+  private void applyVolume() {
+    if (player != null) {
+      player.setVolume(describing ? volume * DUCKED_VOLUME : volume);
+    }
+    if (clipPlayer != null) {
+      clipPlayer.setVolume(volume, volume);
+    }
+  }
+
+  private void stopClip() {
+    if (preparing) {
+      clipPlayer.reset();
+      preparing = false;
+    }
+    if (describing) {
+      clipPlayer.stop();
+      describing = false;
+      applyVolume();
+    }
+  }
+
+  @Override
+  public void onPrepared(MediaPlayer mediaPlayer) {
+    if (!preparing) {
+      return;
+    }
+    preparing = false;
+    describing = true;
+    applyVolume();
+    clipPlayer.start();
+  }
+
+  @Override
+  public void onCompletion(MediaPlayer mediaPlayer) {
+    describing = false;
+    applyVolume();
+  }
+
+  @Override
+  public void onIsPlayingChanged(boolean isPlaying) {
+    if (!describing) {
+      return;
+    }
+    if (isPlaying) {
+      clipPlayer.start();
+    } else {
+      clipPlayer.pause();
+    }
+  }
+
+  @Override
+  public void onPositionDiscontinuity(int reason) {
+    if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+      stopClip();
+    }
+  }
+}
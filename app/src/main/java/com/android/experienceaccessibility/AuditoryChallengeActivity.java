@@ -15,6 +15,8 @@
 package com.android.experienceaccessibility;
 
 import android.content.Intent;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
 import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
 import androidx.appcompat.app.AppCompatActivity;
@@ -27,15 +29,32 @@ import android.widget.ImageView;
 import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
+import com.android.experienceaccessibility.audit.AccessibilityAuditor;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.simulation.MacularDegenerationView;
+import com.android.experienceaccessibility.simulation.VisionDeficiency;
+import com.android.experienceaccessibility.simulation.VisionFilter;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 import android.util.Log;
+import java.util.function.Consumer;
 
 /** Activity that showcases a challenge in vision impairment scenario. */
 public class AuditoryChallengeActivity extends AppCompatActivity {
   private static final String TAG = "AuditoryChallengeActivity";
-  private TextToSpeech textToSpeech;
+  private SpeechService speechService;
+  private SpeechCache speechCache;
+  // Contrast sensitivity fades the text, cataracts add a yellowish veil.
+  private static final float CONTRAST_SENSITIVITY_LOSS = 0.7f;
+  private static final float CONTRAST_SENSITIVITY_HAZE = 0.5f;
+  private static final float CATARACT_CONTRAST_LOSS = 0.3f;
+  private static final float CATARACT_HAZE = 0.45f;
+  private final Paint visionLayerPaint = new Paint();
+  private Chip chipContrast;
+  private Chip chipColorBlindness;
+  private Chip chipCataracts;
+  private MacularDegenerationView macularOverlay;
   private int checkedChips = 0;
 
   @Override
@@ -54,13 +73,19 @@ public class AuditoryChallengeActivity extends AppCompatActivity {
     textHeader.setText(Html.fromHtml(getString(R.string.auditory_challenge_header), Html.FROM_HTML_MODE_LEGACY));
     textBody.setText(getString(R.string.auditory_challenge_body));
 
+    macularOverlay = findViewById(R.id.auditoryChallengeMacularOverlay);
     setUpBackButtons();
     setUpAccessibleSwitch();
     setUpChips();
 
-    textToSpeech = TextToSpeechFactory.createTextToSpeech(getApplicationContext());
+    speechService = SpeechService.getInstance(getApplicationContext());
+    speechCache = SpeechCache.getInstance(getApplicationContext());
 
     setUpIconTTS();
+
+    if (Constants.ACCESSIBILITY_AUDIT_ENABLED) {
+      AccessibilityAuditor.install(this);
+    }
   }
 
   private void setUpIconTTS() {
@@ -74,7 +99,7 @@ public class AuditoryChallengeActivity extends AppCompatActivity {
 
   private void speakContentDescription(View view) {
     String data = view.getContentDescription().toString();
-    int speechStatus = textToSpeech.speak(data, TextToSpeech.QUEUE_FLUSH, /* params= */ null, "ContentDescriptionId");
+    int speechStatus = speechCache.speak(data, "ContentDescriptionId");
     if (speechStatus == TextToSpeech.ERROR) {
       Log.v(TAG,"TTS error in converting Text to Speech!");
     }
@@ -103,62 +128,106 @@ public class AuditoryChallengeActivity extends AppCompatActivity {
             share.setContentDescription(getString(R.string.icon_share_description));
             menu.setContentDescription(getString(R.string.icon_menu_description));
             textBody.setAlpha(1.0f);
+            macularOverlay.invalidateContent();
+            markDirtyForAudit(favorite, share, menu, textBody);
           } else {
             // Intentionally set inaccessible content descriptions and contrast ratio.
             favorite.setContentDescription(getString(R.string.button_description));
             share.setContentDescription(getString(R.string.button_description));
             menu.setContentDescription(getString(R.string.button_description));
             textBody.setAlpha(0.5f);
+            macularOverlay.invalidateContent();
+            markDirtyForAudit(favorite, share, menu, textBody);
           }
         });
   }
 
+  private static void markDirtyForAudit(View... views) {
+    for (View view : views) {
+      AccessibilityAuditor.markDirty(view);
+    }
+  }
+
   private void setUpChips() {
     Chip chipHealthy = findViewById(R.id.chipHealthy);
-    Chip chipContrast = findViewById(R.id.chipContrast);
+    chipContrast = findViewById(R.id.chipContrast);
+    chipColorBlindness = findViewById(R.id.chipColorBlindness);
+    chipCataracts = findViewById(R.id.chipCataracts);
     Chip chipMacular = findViewById(R.id.chipMacular);
     ScrollView scrollView = findViewById(R.id.auditoryChallengeScrollView);
-    ImageView macularGradient = findViewById(R.id.auditoryChallengeGradientMask);
+    macularOverlay.setScrollView(scrollView);
 
     // Checking this chip unchecks all the other chips.
     chipHealthy.setOnCheckedChangeListener(
         (CompoundButton v, boolean isChecked) -> {
           if (isChecked) {
             chipContrast.setChecked(false);
+            chipColorBlindness.setChecked(false);
+            chipCataracts.setChecked(false);
             chipMacular.setChecked(false);
             checkedChips = 0;
           }
         });
-    chipContrast.setOnCheckedChangeListener(
-        (CompoundButton v, boolean isChecked) -> {
-          if (isChecked) {
-            // Lower the contrast of main text to mimic contrast sensitivity.
-            scrollView.setAlpha(0.2f);
-            chipHealthy.setChecked(false);
-            checkedChips++;
-          } else {
-            scrollView.setAlpha(1.0f);
-            checkedChips--;
-            if (checkedChips == 0) {
-              chipHealthy.setChecked(true);
-            }
-          }
-        });
-    chipMacular.setOnCheckedChangeListener(
+    setUpSimulationChip(chipContrast, chipHealthy, isChecked -> updateVisionFilter());
+    setUpSimulationChip(chipColorBlindness, chipHealthy, isChecked -> updateVisionFilter());
+    setUpSimulationChip(chipCataracts, chipHealthy, isChecked -> updateVisionFilter());
+    setUpSimulationChip(
+        chipMacular,
+        chipHealthy,
+        isChecked -> macularOverlay.setVisibility(isChecked ? View.VISIBLE : View.GONE));
+    chipHealthy.setChecked(true);
+  }
+
+  private void setUpSimulationChip(Chip chip, Chip chipHealthy, Consumer<Boolean> onChanged) {
+    chip.setOnCheckedChangeListener(
         (CompoundButton v, boolean isChecked) -> {
+          onChanged.accept(isChecked);
           if (isChecked) {
-            macularGradient.setVisibility(View.VISIBLE);
             chipHealthy.setChecked(false);
             checkedChips++;
           } else {
-            macularGradient.setVisibility(View.GONE);
             checkedChips--;
             if (checkedChips == 0) {
               chipHealthy.setChecked(true);
             }
           }
         });
-    chipHealthy.setChecked(true);
+  }
+
+  /**
+   * Filters the main text through the checked simulations. A hardware layer is only redrawn when
+   * its content changes, unlike the offscreen buffer that view alpha needs on every frame.
+   */
+  private void updateVisionFilter() {
+    float contrastLoss = 0;
+    float haze = 0;
+    if (chipContrast.isChecked()) {
+      contrastLoss = CONTRAST_SENSITIVITY_LOSS;
+      haze = CONTRAST_SENSITIVITY_HAZE;
+    }
+    if (chipCataracts.isChecked()) {
+      contrastLoss = Math.max(contrastLoss, CATARACT_CONTRAST_LOSS);
+      haze = Math.max(haze, CATARACT_HAZE);
+    }
+    VisionFilter filter =
+        new VisionFilter.Builder()
+            .setDeficiency(
+                chipColorBlindness.isChecked()
+                    ? VisionDeficiency.DEUTERANOPIA
+                    : VisionDeficiency.NONE)
+            .setContrastLoss(contrastLoss)
+            .setHaze(haze)
+            .build();
+
+    ScrollView scrollView = findViewById(R.id.auditoryChallengeScrollView);
+    if (filter.hasColorEffect()) {
+      ColorFilter colorFilter = filter.createColorFilter();
+      visionLayerPaint.setColorFilter(colorFilter);
+      scrollView.setLayerType(View.LAYER_TYPE_HARDWARE, visionLayerPaint);
+    } else {
+      scrollView.setLayerType(View.LAYER_TYPE_NONE, null);
+    }
+    macularOverlay.setContentVisionFilter(filter);
   }
 
   private void backToMenu() {
@@ -171,9 +240,9 @@ public class AuditoryChallengeActivity extends AppCompatActivity {
   @Override
   public void onDestroy() {
     super.onDestroy();
-    if (textToSpeech != null) {
-      textToSpeech.stop();
-      textToSpeech.shutdown();
+    if (speechService != null) {
+      speechService.stop();
+      speechCache.stop();
     }
   }
 }
@@ -17,9 +17,14 @@ package com.android.experienceaccessibility;
 import android.content.Intent;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+import android.view.View;
 import android.view.WindowManager;
 import android.widget.CompoundButton;
 import android.widget.TextView;
+import com.android.experienceaccessibility.simulation.HearingLossProfile;
+import com.android.experienceaccessibility.subtitles.CaptionView;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
@@ -30,12 +35,16 @@ import com.google.android.material.switchmaterial.SwitchMaterial;
 /** Activity that showcases a challenge in deaf scenario.. */
 public class AuditoryChallengeDeafActivity extends AppCompatActivity {
   private static final String SUBTITLE_LANGUAGE = "en";
+  private static final String SUBTITLES_PATH =
+      "file:///android_asset/deaf_challenge_subtitles.cues";
   private SimpleExoPlayer player;
+  private PlaybackStateViewModel playbackState;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_auditory_challenge_deaf);
+    playbackState = new ViewModelProvider(this).get(PlaybackStateViewModel.class);
     getWindow()
         .setFlags(
             WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
@@ -44,19 +53,39 @@ public class AuditoryChallengeDeafActivity extends AppCompatActivity {
 
     TextView deafInstructions = findViewById(R.id.auditoryChallengeDeafDescription);
     deafInstructions.setText(R.string.auditory_challenge_deaf_description);
-    player =
-        ExoPlayerFactory.createExoPlayer(
-            getApplicationContext(),
-            "file:///android_asset/deaf_challenge_subtitles.srt",
-            R.raw.deaf_challenge_video);
-
     setUpAccessibleSwitch();
+    setUpCaptionStyleSwitches();
+    setUpHearingLossSwitch();
 
-    player.setRepeatMode(Player.REPEAT_MODE_ALL);
     StyledPlayerView playerView = findViewById(R.id.playerView);
-    playerView.setPlayer(player);
     playerView.setUseController(false);
     playerView.setKeepScreenOn(true);
+    // Captions are drawn by the caption view instead.
+    playerView.getSubtitleView().setVisibility(View.GONE);
+  }
+
+  @Override
+  public void onStart() {
+    super.onStart();
+    // Usually the story's player, switched over to the challenge video, or after a rotation
+    // the same player as before.
+    PlaybackSessionHost host = PlaybackSessionHost.getInstance(getApplicationContext());
+    boolean playerKept = host.isOwner(playbackState);
+    player =
+        host.acquire(
+            playbackState, SUBTITLES_PATH, R.raw.deaf_challenge_video, /* preparedPlayer= */ null);
+    if (!playerKept) {
+      player.setRepeatMode(Player.REPEAT_MODE_ALL);
+      ExoPlayerFactory.setHearingLossProfile(player, playbackState.getHearingLossProfile());
+      switchSubtitles(playbackState.isSubtitlesEnabled());
+      if (playbackState.getPositionMs() != C.TIME_UNSET) {
+        player.seekTo(playbackState.getPositionMs());
+      }
+    }
+    StyledPlayerView playerView = findViewById(R.id.playerView);
+    playerView.setPlayer(player);
+    CaptionView captionView = findViewById(R.id.auditoryChallengeDeafCaptionView);
+    captionView.setPlayer(player, SUBTITLES_PATH);
   }
 
   private void setUpBackButtons() {
@@ -67,8 +96,38 @@ public class AuditoryChallengeDeafActivity extends AppCompatActivity {
   private void setUpAccessibleSwitch() {
     SwitchMaterial accessibleSwitch = findViewById(R.id.auditoryChallengeDeafAccessibleSwitch);
 
+    // Set before the listener, so restoring the view state doesn't count as a change.
+    accessibleSwitch.setChecked(playbackState.isSubtitlesEnabled());
     accessibleSwitch.setOnCheckedChangeListener(
-        (CompoundButton v, boolean isChecked) -> switchSubtitles(isChecked));
+        (CompoundButton v, boolean isChecked) -> {
+          playbackState.setSubtitlesEnabled(isChecked);
+          switchSubtitles(isChecked);
+        });
+  }
+
+  private void setUpCaptionStyleSwitches() {
+    CaptionView captionView = findViewById(R.id.auditoryChallengeDeafCaptionView);
+    SwitchMaterial largeCaptionsSwitch =
+        findViewById(R.id.auditoryChallengeDeafLargeCaptionsSwitch);
+    largeCaptionsSwitch.setOnCheckedChangeListener(
+        (CompoundButton v, boolean isChecked) -> captionView.setLargeText(isChecked));
+    SwitchMaterial highContrastCaptionsSwitch =
+        findViewById(R.id.auditoryChallengeDeafHighContrastCaptionsSwitch);
+    highContrastCaptionsSwitch.setOnCheckedChangeListener(
+        (CompoundButton v, boolean isChecked) -> captionView.setHighContrast(isChecked));
+  }
+
+  private void setUpHearingLossSwitch() {
+    SwitchMaterial hearingLossSwitch = findViewById(R.id.auditoryChallengeDeafHearingLossSwitch);
+    hearingLossSwitch.setChecked(playbackState.getHearingLossProfile() != HearingLossProfile.NONE);
+    hearingLossSwitch.setOnCheckedChangeListener(
+        (CompoundButton v, boolean isChecked) -> {
+          // Severe enough that the speech is barely intelligible, so the captions carry it.
+          HearingLossProfile profile =
+              isChecked ? HearingLossProfile.SEVERE : HearingLossProfile.NONE;
+          playbackState.setHearingLossProfile(profile);
+          ExoPlayerFactory.setHearingLossProfile(player, profile);
+        });
   }
 
   private void switchSubtitles(boolean showSubtitles) {
@@ -99,11 +158,17 @@ public class AuditoryChallengeDeafActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     player.pause();
+    playbackState.setPositionMs(player.getCurrentPosition());
   }
 
   @Override
-  public void onDestroy() {
-    super.onDestroy();
-    player.release();
+  public void onStop() {
+    super.onStop();
+    // Detach the view's own listeners; the previous screen may take the player back.
+    StyledPlayerView playerView = findViewById(R.id.playerView);
+    playerView.setPlayer(null);
+    CaptionView captionView = findViewById(R.id.auditoryChallengeDeafCaptionView);
+    captionView.setPlayer(null, /* subtitlesPath= */ null);
+    PlaybackSessionHost.getInstance(getApplicationContext()).park(playbackState);
   }
 }
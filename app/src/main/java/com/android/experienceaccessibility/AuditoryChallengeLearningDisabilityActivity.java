@@ -17,31 +17,21 @@ package com.android.experienceaccessibility;
 import android.content.Intent;
 import android.graphics.Color;
 import android.os.Bundle;
-import android.speech.tts.TextToSpeech;
-import android.speech.tts.UtteranceProgressListener;
-import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
 import android.text.Html;
-import android.text.Spannable;
 import android.text.SpannableString;
-import android.text.Spanned;
-import android.text.style.BackgroundColorSpan;
 import android.view.WindowManager;
 import android.widget.CompoundButton;
 import android.widget.TextView;
 import android.widget.TextView.BufferType;
+import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
 /** Activity that showcases a challenge in learning disability scenario. */
 public class AuditoryChallengeLearningDisabilityActivity extends AppCompatActivity {
-  private static final String TAG = "AuditoryChallengeLearningDisabilityActivity";
-  private static final BackgroundColorSpan HIGHLIGHT_COLOUR = new BackgroundColorSpan(Color.YELLOW);
-
-  private TextToSpeech textToSpeech;
-  private boolean enableHighlight = false;
-  private String currentUtteranceId;
-  private int utteranceCounter = 0;
+  private ReadingStateViewModel readingState;
+  private HighlightRenderer highlightRenderer;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
@@ -51,15 +41,16 @@ public class AuditoryChallengeLearningDisabilityActivity extends AppCompatActivi
         .setFlags(
             WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS,
             WindowManager.LayoutParams.FLAG_FULLSCREEN);
+    // Survives configuration changes, together with the speech in progress.
+    readingState = new ViewModelProvider(this).get(ReadingStateViewModel.class);
 
     TextView textTitle = findViewById(R.id.auditoryChallengeLearningDisabilityTitle);
-    TextView textBody = findViewById(R.id.auditoryChallengeLearningDisabilityText);
+    HighlightTextView textBody = findViewById(R.id.auditoryChallengeLearningDisabilityText);
     textTitle.setText(
         Html.fromHtml(getString(R.string.auditory_challenge_learning_disability_title), Html.FROM_HTML_MODE_LEGACY));
 
     textBody.setText(
-        new SpannableString(
-            getString(R.string.auditory_challenge_learning_disability_difficult_instruction)),
+        new SpannableString(getString(getInstructionResId(readingState.isEasyTextShown()))),
         BufferType.SPANNABLE);
 
     MaterialButton play = findViewById(R.id.auditoryChallengeLearningDisabilityPlay);
@@ -72,71 +63,20 @@ public class AuditoryChallengeLearningDisabilityActivity extends AppCompatActivi
     setUpAccessibleSwitch();
 
     // Setup listener to highlight spoken words
-    UtteranceProgressListener listener = createUtteranceListener(textBody);
-
-    textToSpeech = TextToSpeechFactory.createTextToSpeech(getApplicationContext());
-    textToSpeech.setOnUtteranceProgressListener(listener);
-
-    play.setOnClickListener(v -> speakText(textBody.getText()));
-    highlight.addOnCheckedChangeListener((v, checked) -> enableHighlight = checked);
+    highlightRenderer = new HighlightRenderer(textBody, Color.YELLOW);
+    readingState.setHighlightRenderer(highlightRenderer);
+
+    play.setOnClickListener(v -> readingState.speak(textBody.getText()));
+    // Set before the listener, so restoring the view state doesn't count as a change.
+    highlight.setChecked(readingState.isHighlightEnabled());
+    highlight.addOnCheckedChangeListener(
+        (v, checked) -> readingState.setHighlightEnabled(checked));
   }
 
-  private String nextUtteranceId() {
-    currentUtteranceId = "LearningDisabilityId-" + utteranceCounter;
-    utteranceCounter++;
-    return currentUtteranceId;
-  }
-
-  private UtteranceProgressListener createUtteranceListener(TextView textBody) {
-    return new UtteranceProgressListener() {
-
-      @Override
-      public void onStart(String utteranceId) {}
-
-      @Override
-      public void onDone(String utteranceId) {
-        runOnUiThread(() -> {
-          Spannable highlightedText = getSpannableTextBody();
-          highlightedText.removeSpan(HIGHLIGHT_COLOUR);
-        });
-      }
-
-      @Override
-      public void onError(String utteranceId) {
-        Log.v(TAG,"Utterance listener error! Utterance ID: "+ utteranceId);
-      }
-
-      @Override
-      public void onRangeStart(String utteranceId, int start, int end, int frame) {
-        if (!currentUtteranceId.equals(utteranceId)) {
-          return;
-        }
-        runOnUiThread(() -> {
-          Spannable highlightedText = getSpannableTextBody();
-          if (enableHighlight) {
-            highlightedText.setSpan(
-                HIGHLIGHT_COLOUR, start, end + 1, Spanned.SPAN_INCLUSIVE_INCLUSIVE);
-          } else {
-            highlightedText.removeSpan(HIGHLIGHT_COLOUR);
-          }
-          textBody.invalidate();
-        });
-      }
-
-      private Spannable getSpannableTextBody() {
-        return (Spannable) textBody.getText();
-      }
-    };
-  }
-
-  private void speakText(CharSequence text) {
-    // onRangeStart breaks on full stop, see https://issuetracker.google.com/issues/174605128
-    String noFullStopsText = text.toString().replace('.', ';');
-    int speechStatus =
-        textToSpeech.speak(noFullStopsText, TextToSpeech.QUEUE_FLUSH, null, nextUtteranceId());
-    if (speechStatus == TextToSpeech.ERROR) {
-      Log.v(TAG,"TTS error in converting Text to Speech!");
-    }
+  private static int getInstructionResId(boolean easy) {
+    return easy
+        ? R.string.auditory_challenge_learning_disability_easy_instruction
+        : R.string.auditory_challenge_learning_disability_difficult_instruction;
   }
 
   private void setUpBackButtons() {
@@ -149,17 +89,12 @@ public class AuditoryChallengeLearningDisabilityActivity extends AppCompatActivi
     TextView textBody = findViewById(R.id.auditoryChallengeLearningDisabilityText);
     SwitchMaterial accessibleSwitch =
         findViewById(R.id.auditoryChallengeLearningDisabilityAccessibleSwitch);
+    // Set before the listener, so restoring the view state doesn't stop the speech.
+    accessibleSwitch.setChecked(readingState.isEasyTextShown());
     accessibleSwitch.setOnCheckedChangeListener(
         (CompoundButton v, boolean isChecked) -> {
-          textToSpeech.stop();
-
-          if (isChecked) {
-            textBody.setText(
-                getString(R.string.auditory_challenge_learning_disability_easy_instruction));
-          } else {
-            textBody.setText(
-                getString(R.string.auditory_challenge_learning_disability_difficult_instruction));
-          }
+          readingState.setEasyTextShown(isChecked);
+          textBody.setText(getString(getInstructionResId(isChecked)), BufferType.SPANNABLE);
         });
   }
 
@@ -171,19 +106,18 @@ public class AuditoryChallengeLearningDisabilityActivity extends AppCompatActivi
   }
 
   @Override
-  public void onDestroy() {
-    super.onDestroy();
-    if (textToSpeech != null) {
-      textToSpeech.stop();
-      textToSpeech.shutdown();
+  public void onStop() {
+    super.onStop();
+    // Keep reading through a rotation, but not once the page is out of sight.
+    if (!isChangingConfigurations()) {
+      readingState.stop();
     }
   }
 
   @Override
-  protected void onPause() {
-    super.onPause();
-    if (textToSpeech != null) {
-      textToSpeech.stop();
-    }
+  public void onDestroy() {
+    super.onDestroy();
+    readingState.setHighlightRenderer(null);
+    highlightRenderer.release();
   }
 }
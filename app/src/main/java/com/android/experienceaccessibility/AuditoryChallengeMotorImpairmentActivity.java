@@ -14,41 +14,38 @@
 
 package com.android.experienceaccessibility;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
 import android.content.Intent;
 import android.graphics.Rect;
 import android.os.Bundle;
 import androidx.appcompat.app.AppCompatActivity;
-import android.view.TouchDelegate;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.view.animation.LinearInterpolator;
 import android.widget.CheckBox;
 import android.widget.CompoundButton;
 import android.widget.TextView;
+import com.android.experienceaccessibility.audit.AccessibilityAuditor;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.metrics.FrameMetricsRecorder;
+import com.android.experienceaccessibility.simulation.TremorEngine;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 /** Activity that showcases a challenge in motor impairment scenario. */
 public class AuditoryChallengeMotorImpairmentActivity extends AppCompatActivity {
   private static final int NUMBER_OF_CHECKBOXES = 6;
-
-  private final Random random = new Random();
+  private static final String TREMOR_INTERACTION = "tremor";
   private final List<ViewGroup> checkBoxParents = new ArrayList<>();
 
   // Separate text&checkbox to better simulate an inaccessible design.
   private final List<CheckBox> checkBoxes = new ArrayList<>();
   private final List<TextView> checkBoxTexts = new ArrayList<>();
 
-  private final AnimatorSet animation = new AnimatorSet();
+  private TremorEngine tremorEngine;
+  private Chip chipMotorImpairment;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
@@ -60,8 +57,13 @@ public class AuditoryChallengeMotorImpairmentActivity extends AppCompatActivity
             WindowManager.LayoutParams.FLAG_FULLSCREEN);
     setUpBackButtons();
     setUpCheckBoxes();
+    tremorEngine = new TremorEngine(checkBoxParents, System.nanoTime());
     setUpAccessibleSwitch();
     setUpChips();
+
+    if (Constants.ACCESSIBILITY_AUDIT_ENABLED) {
+      AccessibilityAuditor.install(this);
+    }
   }
 
   private void setUpBackButtons() {
@@ -115,20 +117,28 @@ public class AuditoryChallengeMotorImpairmentActivity extends AppCompatActivity
   }
 
   private void setUpChips() {
-    Chip chipMotorImpairment = findViewById(R.id.chipMotorImpairment);
+    chipMotorImpairment = findViewById(R.id.chipMotorImpairment);
     chipMotorImpairment.setOnCheckedChangeListener(
         (CompoundButton v, boolean isChecked) -> {
           if (isChecked) {
-            for (ViewGroup checkBoxParent : checkBoxParents) {
-              startCheckboxAnimation(checkBoxParent);
-            }
+            startTremor();
           } else {
-            stopCheckboxAnimation();
+            stopTremor();
           }
         });
     chipMotorImpairment.setChecked(true);
   }
 
+  private void startTremor() {
+    tremorEngine.start();
+    FrameMetricsRecorder.beginInteraction(TREMOR_INTERACTION);
+  }
+
+  private void stopTremor() {
+    tremorEngine.stop();
+    FrameMetricsRecorder.endInteraction(TREMOR_INTERACTION);
+  }
+
   private static void expandTouchArea(View parentView, View targetView, int extraPadding) {
     parentView.post(() -> {
           Rect rect = new Rect();
@@ -137,39 +147,10 @@ public class AuditoryChallengeMotorImpairmentActivity extends AppCompatActivity
           rect.left -= extraPadding;
           rect.right += extraPadding;
           rect.bottom += extraPadding;
-          parentView.setTouchDelegate(new TouchDelegate(rect, targetView));
+          AccessibilityAuditor.setTouchDelegate(parentView, rect, targetView);
         });
   }
 
-  private void startCheckboxAnimation(View view) {
-    ObjectAnimator animationX =
-        ObjectAnimator.ofFloat(view, "translationX", 150f * (random.nextFloat() * 2.0f - 1.0f));
-    ObjectAnimator animationY =
-        ObjectAnimator.ofFloat(view, "translationY", 50f * (random.nextFloat() * 2.0f - 1.0f));
-    animationX.setRepeatCount(1);
-    animationX.setRepeatMode(ObjectAnimator.REVERSE);
-    animationY.setRepeatCount(1);
-    animationY.setRepeatMode(ObjectAnimator.REVERSE);
-    animation.playTogether(animationX, animationY);
-    animation.setDuration(100);
-    animation.setInterpolator(new LinearInterpolator());
-    animation.addListener(
-        new AnimatorListenerAdapter() {
-          @Override
-          public void onAnimationEnd(Animator a) {
-            animationX.setFloatValues(150f * (random.nextFloat() * 2.0f - 1.0f));
-            animationY.setFloatValues(50f * (random.nextFloat() * 2.0f - 1.0f));
-            animation.playTogether(animationX, animationY);
-            animation.start();
-          }
-        });
-    animation.start();
-  }
-
-  private void stopCheckboxAnimation() {
-    animation.removeAllListeners();
-  }
-
   public void backToMenu() {
     Intent intent = new Intent(getApplicationContext(), MainActivity.class);
     intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
@@ -177,4 +158,17 @@ public class AuditoryChallengeMotorImpairmentActivity extends AppCompatActivity
     finish();
   }
 
+  @Override
+  public void onResume() {
+    super.onResume();
+    if (chipMotorImpairment.isChecked()) {
+      startTremor();
+    }
+  }
+
+  @Override
+  public void onPause() {
+    super.onPause();
+    stopTremor();
+  }
 }
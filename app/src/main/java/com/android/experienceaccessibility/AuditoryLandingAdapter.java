@@ -0,0 +1,127 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.RecyclerView;
+import com.android.experienceaccessibility.auditory.AuditoryLandingModel;
+import com.android.experienceaccessibility.auditory.CarouselImageLoader;
+import com.android.experienceaccessibility.common.Constants;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/** Recycler adapter for the auditory landing carousel. */
+public final class AuditoryLandingAdapter
+    extends RecyclerView.Adapter<AuditoryLandingAdapter.CardViewHolder> {
+  // The cards the carousel creates beyond the first screen, once the user starts swiping.
+  private static final int PREINFLATED_CARDS = 3;
+
+  /** Receives taps on a card. */
+  public interface OnCardClickListener {
+    void onCardClick(int position);
+  }
+
+  private final List<AuditoryLandingModel> models;
+  private final Context context;
+  private final CarouselImageLoader imageLoader;
+  private final OnCardClickListener clickListener;
+  // Cards inflated in the background, used before inflating any on the main thread.
+  private final ArrayDeque<View> preinflatedViews = new ArrayDeque<>();
+
+  public AuditoryLandingAdapter(
+      List<AuditoryLandingModel> models, Context context, OnCardClickListener clickListener) {
+    this.models = models;
+    this.context = context;
+    this.imageLoader = CarouselImageLoader.getInstance(context);
+    this.clickListener = clickListener;
+  }
+
+  /** Starts inflating cards in the background for the recycler view they will be shown in. */
+  public void preinflate(RecyclerView parent) {
+    AsyncLayoutInflater inflater = new AsyncLayoutInflater(context);
+    for (int i = 0; i < PREINFLATED_CARDS; i++) {
+      inflater.inflate(
+          R.layout.auditory_landing_item,
+          parent,
+          (view, resId, viewParent) -> preinflatedViews.push(view));
+    }
+  }
+
+  @NonNull
+  @Override
+  public CardViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+    View view = preinflatedViews.poll();
+    if (view == null) {
+      view =
+          LayoutInflater.from(context)
+              .inflate(R.layout.auditory_landing_item, parent, /* attachToRoot= */ false);
+    }
+    CardViewHolder holder = new CardViewHolder(view);
+    // Bound once per holder; the position is looked up when tapped.
+    view.setOnClickListener(
+        v -> {
+          int position = holder.getAdapterPosition();
+          if (position != RecyclerView.NO_POSITION) {
+            clickListener.onCardClick(position);
+          }
+        });
+    return holder;
+  }
+
+  @Override
+  public void onBindViewHolder(@NonNull CardViewHolder holder, int position) {
+    AuditoryLandingModel model = models.get(position);
+    // Set background.
+    int imageSrc = model.getImage();
+    if (imageSrc != Constants.BLACK_BACKGROUND) {
+      holder.image.setBackground(null);
+      imageLoader.load(imageSrc, holder.image);
+    } else {
+      holder.image.setTag(null);
+      holder.image.setImageDrawable(null);
+      holder.image.setBackgroundColor(Color.BLACK);
+    }
+    // Set text.
+    holder.title.setText(model.getTitle());
+    holder.body.setText(model.getText());
+  }
+
+  @Override
+  public int getItemCount() {
+    return models.size();
+  }
+
+  /** A card, with its views looked up once. */
+  static final class CardViewHolder extends RecyclerView.ViewHolder {
+    private final ImageView image;
+    private final TextView title;
+    private final TextView body;
+
+    CardViewHolder(View view) {
+      super(view);
+      image = view.findViewById(R.id.auditoryLandingBackgroundImage);
+      title = view.findViewById(R.id.auditoryLandingTitle);
+      body = view.findViewById(R.id.auditoryLandingBody);
+    }
+  }
+}
@@ -16,93 +16,97 @@ package com.android.experienceaccessibility;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.view.View;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.android.experienceaccessibility.auditory.AuditoryStoryMapModel;
+import com.android.experienceaccessibility.subtitles.CaptionView;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.Player.EventListener;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.ui.StyledPlayerView;
 import com.google.android.material.button.MaterialButton;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /** Activity that handles all four auditory story activities. */
 public class AuditoryStoryActivity extends AppCompatActivity {
   private SimpleExoPlayer player;
+  @Nullable private SimpleExoPlayer preloadedPlayer;
+  @Nullable private AudioDescriptionPlayer audioDescriptionPlayer;
+  private PlaybackStateViewModel playbackState;
   private AuditoryStoryMapModel storyModel;
-
-  private static final Map<String, AuditoryStoryMapModel> STORY_MODELS = new HashMap<>();
+  private final EventListener playerListener =
+      new EventListener() {
+        @Override
+        public void onPlaybackStateChanged(int state) {
+          if (state == SimpleExoPlayer.STATE_ENDED) {
+            startAuditoryChallengeActivity();
+          }
+        }
+      };
 
   public static final String STORY_KEY = "story";
-  public static final String STORY_BLINDNESS_ID = "blindness";
-  public static final String STORY_DEAFNESS_ID = "deafness";
-  public static final String STORY_MOTOR_IMPAIRMENT_ID = "motorImpairment";
-  public static final String STORY_LEARNING_DISABILITY_ID = "learningDisability";
-
-  static {
-    STORY_MODELS.put(
-        STORY_BLINDNESS_ID,
-        new AuditoryStoryMapModel(
-            "file:///android_asset/blind_story_subtitles.srt",
-            R.raw.blind_story_video,
-            AuditoryChallengeActivity.class));
-    STORY_MODELS.put(
-        STORY_DEAFNESS_ID,
-        new AuditoryStoryMapModel(
-            "file:///android_asset/deaf_story_subtitles.srt",
-            R.raw.deaf_story_video,
-            AuditoryChallengeDeafActivity.class));
-    STORY_MODELS.put(
-        STORY_MOTOR_IMPAIRMENT_ID,
-        new AuditoryStoryMapModel(
-            "file:///android_asset/motor_impairment_story_subtitles.srt",
-            R.raw.motor_impairment_story_video,
-            AuditoryChallengeMotorImpairmentActivity.class));
-    STORY_MODELS.put(
-        STORY_LEARNING_DISABILITY_ID,
-        new AuditoryStoryMapModel(
-            "file:///android_asset/learning_disability_story_subtitles.srt",
-            R.raw.learning_disability_story_video,
-            AuditoryChallengeLearningDisabilityActivity.class));
-  }
+  /** Optional position in the story video to start at, in milliseconds. */
+  public static final String START_POSITION_KEY = "startPositionMs";
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     String selectedStory = getIntent().getStringExtra(STORY_KEY);
-    storyModel = STORY_MODELS.get(selectedStory);
+    storyModel = StoryCatalog.getInstance(this).getStoryModel(selectedStory);
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_auditory_story_video);
+    playbackState = new ViewModelProvider(this).get(PlaybackStateViewModel.class);
+    if (savedInstanceState == null) {
+      // Set when opened from a caption search result, and then restored like any position.
+      playbackState.setPositionMs(getIntent().getLongExtra(START_POSITION_KEY, C.TIME_UNSET));
+    }
 
     setUpMuteButton();
     setUpBackAndNextButtons();
     setUpPlayPauseButton();
 
-    player =
-        ExoPlayerFactory.createExoPlayer(
-            getApplicationContext(),
-            storyModel.getSubtitlesPath(),
-            storyModel.getVideoResourceId());
-
-    setUpExoPlayerStateChangedListener();
+    preloadedPlayer = StoryPreloader.getInstance(getApplicationContext()).take(selectedStory);
+    if (storyModel.isAudioDescribed()) {
+      audioDescriptionPlayer = new AudioDescriptionPlayer(getApplicationContext());
+    }
 
     StyledPlayerView playerView = findViewById(R.id.playerView);
     playerView.setUseController(false);
-    playerView.setPlayer(player);
     playerView.setKeepScreenOn(true);
+    // Captions are drawn by the caption view instead.
+    playerView.getSubtitleView().setVisibility(View.GONE);
   }
 
-  private void setUpExoPlayerStateChangedListener() {
-    player.addListener(
-        new EventListener() {
-          @Override
-          public void onPlaybackStateChanged(int state) {
-            if (state == SimpleExoPlayer.STATE_ENDED) {
-              startAuditoryChallengeActivity();
-            }
-          }
-        });
+  @Override
+  public void onStart() {
+    super.onStart();
+    PlaybackSessionHost host = PlaybackSessionHost.getInstance(getApplicationContext());
+    boolean playerKept = host.isOwner(playbackState);
+    player =
+        host.acquire(
+            playbackState,
+            storyModel.getSubtitlesPath(),
+            storyModel.getVideoResourceId(),
+            preloadedPlayer);
+    preloadedPlayer = null;
+    if (!playerKept && playbackState.getPositionMs() != C.TIME_UNSET) {
+      // Coming back from the challenge, which switched the player to its own video, or starting
+      // at a caption search result.
+      player.seekTo(playbackState.getPositionMs());
+    }
+    player.addListener(playerListener);
+    if (audioDescriptionPlayer != null) {
+      audioDescriptionPlayer.attach(player, storyModel.getSubtitlesPath());
+    }
+    MaterialButton muteButton = findViewById(R.id.auditoryStoryMuteButton);
+    setVolume(muteButton.isChecked() ? 0 : 1);
+    StyledPlayerView playerView = findViewById(R.id.playerView);
+    playerView.setPlayer(player);
+    CaptionView captionView = findViewById(R.id.auditoryStoryCaptionView);
+    captionView.setPlayer(player, storyModel.getSubtitlesPath());
   }
 
   private void setUpMuteButton() {
@@ -110,13 +114,22 @@ public class AuditoryStoryActivity extends AppCompatActivity {
     muteButton.addOnCheckedChangeListener(
         (MaterialButton v, boolean isMuted) -> {
           if (isMuted) {
-            player.setVolume(0);
+            setVolume(0);
           } else {
-            player.setVolume(1);
+            setVolume(1);
           }
         });
   }
 
+  private void setVolume(float volume) {
+    if (audioDescriptionPlayer != null) {
+      // Keeps the video ducked while a description is spoken.
+      audioDescriptionPlayer.setVolume(volume);
+    } else {
+      player.setVolume(volume);
+    }
+  }
+
   private void setUpPlayPauseButton() {
     MaterialButton playPauseButton = findViewById(R.id.playPauseButton);
     playPauseButton.addOnCheckedChangeListener(
@@ -148,7 +161,9 @@ public class AuditoryStoryActivity extends AppCompatActivity {
   @Override
   public void onResume() {
     super.onResume();
-    player.seekToDefaultPosition();
+    if (player.getPlaybackState() == Player.STATE_ENDED) {
+      player.seekToDefaultPosition();
+    }
     player.play();
   }
 
@@ -156,11 +171,36 @@ public class AuditoryStoryActivity extends AppCompatActivity {
   public void onPause() {
     super.onPause();
     player.pause();
+    // A finished story starts over next time.
+    playbackState.setPositionMs(
+        player.getPlaybackState() == Player.STATE_ENDED
+            ? C.TIME_UNSET
+            : player.getCurrentPosition());
+  }
+
+  @Override
+  public void onStop() {
+    super.onStop();
+    // Detach the view's own listeners; the next screen may already be using the player.
+    StyledPlayerView playerView = findViewById(R.id.playerView);
+    playerView.setPlayer(null);
+    CaptionView captionView = findViewById(R.id.auditoryStoryCaptionView);
+    captionView.setPlayer(null, /* subtitlesPath= */ null);
+    player.removeListener(playerListener);
+    if (audioDescriptionPlayer != null) {
+      audioDescriptionPlayer.detach();
+    }
+    PlaybackSessionHost.getInstance(getApplicationContext()).park(playbackState);
   }
 
   @Override
   public void onDestroy() {
     super.onDestroy();
-    player.release();
+    if (preloadedPlayer != null) {
+      ExoPlayerFactory.releaseExoPlayer(getApplicationContext(), preloadedPlayer);
+    }
+    if (audioDescriptionPlayer != null) {
+      audioDescriptionPlayer.release();
+    }
   }
 }
@@ -0,0 +1,224 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.android.experienceaccessibility.auditory.AuditoryLandingModel;
+import com.android.experienceaccessibility.auditory.AuditoryStoryMapModel;
+import com.android.experienceaccessibility.subtitles.CaptionIndex;
+import com.android.experienceaccessibility.subtitles.SubtitleRepository;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds the moments in the stories where something is said, through a {@link CaptionIndex} over
+ * the captions of every story in the {@link StoryCatalog}.
+ *
+ * <p>The index is built on first use and stored in the cache directory. Later processes read it
+ * back as long as the app was not updated since, which is the only way captions can change.
+ */
+public final class CaptionSearch {
+  private static final String TAG = "CaptionSearch";
+  private static final String INDEX_FILE_NAME = "caption_index.bin";
+  private static final String TEMP_EXTENSION = ".tmp";
+  private static final int MAX_RESULTS = 50;
+
+  private static CaptionSearch instance;
+
+  private final Context context;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  // Only touched on the executor.
+  @Nullable private CaptionIndex index;
+
+  /** Receives the results of a search on the main thread. */
+  public interface Callback {
+    void onResults(String query, List<Result> results);
+  }
+
+  /** A caption matching a search, and where to find it. */
+  public static final class Result {
+    private final String storyId;
+    private final String storyTitle;
+    private final long startTimeMs;
+    private final String text;
+
+    private Result(String storyId, String storyTitle, long startTimeMs, String text) {
+      this.storyId = storyId;
+      this.storyTitle = storyTitle;
+      this.startTimeMs = startTimeMs;
+      this.text = text;
+    }
+
+    public String getStoryId() {
+      return storyId;
+    }
+
+    public String getStoryTitle() {
+      return storyTitle;
+    }
+
+    /** Returns when the caption starts, ready for {@code player.seekTo}. */
+    public long getStartTimeMs() {
+      return startTimeMs;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+
+  private CaptionSearch(Context context) {
+    this.context = context;
+  }
+
+  /** Returns the app wide search. */
+  public static synchronized CaptionSearch getInstance(Context context) {
+    if (instance == null) {
+      instance = new CaptionSearch(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Searches the captions in the background. Every word of the query has to start a word of the
+   * caption.
+   */
+  public void search(String query, Callback callback) {
+    executor.execute(
+        () -> {
+          List<Result> results = findResults(query);
+          mainHandler.post(() -> callback.onResults(query, results));
+        });
+  }
+
+  @WorkerThread
+  private List<Result> findResults(String query) {
+    CaptionIndex captionIndex = getIndex();
+    if (captionIndex == null) {
+      return Collections.emptyList();
+    }
+    StoryCatalog catalog = StoryCatalog.getInstance(context);
+    SubtitleRepository repository = SubtitleRepository.getInstance(context);
+    List<Result> results = new ArrayList<>();
+    for (CaptionIndex.Hit hit : captionIndex.search(query, MAX_RESULTS)) {
+      AuditoryLandingModel landingModel = catalog.getLandingModel(hit.getDocumentId());
+      AuditoryStoryMapModel storyModel = catalog.getStoryModel(hit.getDocumentId());
+      if (landingModel == null || storyModel == null) {
+        continue;
+      }
+      try {
+        String text =
+            repository.getCueTable(storyModel.getSubtitlesPath()).getText(hit.getCueIndex());
+        results.add(
+            new Result(
+                hit.getDocumentId(),
+                landingModel.getTitle(),
+                hit.getStartTimeUs() / 1000,
+                text.replace('\n', ' ')));
+      } catch (IOException e) {
+        Log.w(TAG, "Cannot load captions of " + hit.getDocumentId(), e);
+      }
+    }
+    return results;
+  }
+
+  @WorkerThread
+  @Nullable
+  private CaptionIndex getIndex() {
+    if (index != null) {
+      return index;
+    }
+    long sourceStamp = getSourceStamp();
+    File file = new File(context.getCacheDir(), INDEX_FILE_NAME);
+    if (file.exists()) {
+      try {
+        byte[] data = Files.toByteArray(file);
+        CaptionIndex storedIndex = CaptionIndex.read(data, data.length);
+        if (storedIndex.getSourceStamp() == sourceStamp) {
+          index = storedIndex;
+          return index;
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "Cannot read stored caption index, rebuilding it", e);
+      }
+    }
+    index = buildIndex(sourceStamp);
+    store(index, file);
+    return index;
+  }
+
+  private CaptionIndex buildIndex(long sourceStamp) {
+    StoryCatalog catalog = StoryCatalog.getInstance(context);
+    SubtitleRepository repository = SubtitleRepository.getInstance(context);
+    CaptionIndex.Builder builder = new CaptionIndex.Builder().setSourceStamp(sourceStamp);
+    for (String storyId : catalog.getStoryIds()) {
+      String path = catalog.getStoryModel(storyId).getSubtitlesPath();
+      try {
+        builder.add(storyId, repository.getCueTable(path));
+      } catch (IOException e) {
+        Log.w(TAG, "Cannot load " + path + ", leaving it out of the index", e);
+      }
+    }
+    CaptionIndex captionIndex = builder.build();
+    Log.d(
+        TAG,
+        "Indexed " + captionIndex.getCueCount() + " cues, " + captionIndex.getTermCount()
+            + " terms");
+    return captionIndex;
+  }
+
+  private static void store(CaptionIndex captionIndex, File file) {
+    // Written aside and renamed, so a killed process never leaves half an index behind.
+    File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+    try (OutputStream output = new FileOutputStream(tempFile)) {
+      captionIndex.write(output);
+    } catch (IOException e) {
+      Log.w(TAG, "Cannot store caption index", e);
+      tempFile.delete();
+      return;
+    }
+    if (!tempFile.renameTo(file)) {
+      Log.w(TAG, "Cannot store caption index");
+      tempFile.delete();
+    }
+  }
+
+  /** Captions ship in the APK, so they can only change when the app is updated. */
+  private long getSourceStamp() {
+    try {
+      return context
+          .getPackageManager()
+          .getPackageInfo(context.getPackageName(), /* flags= */ 0)
+          .lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
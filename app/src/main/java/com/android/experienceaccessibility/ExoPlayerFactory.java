@@ -18,29 +18,86 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.res.Resources;
 import android.net.Uri;
+import android.os.Looper;
+import com.android.experienceaccessibility.metrics.PlaybackTelemetry;
+import com.android.experienceaccessibility.simulation.HearingLossAudioProcessor;
+import com.android.experienceaccessibility.simulation.HearingLossProfile;
+import com.android.experienceaccessibility.subtitles.CompiledSubtitleDecoderFactory;
+import com.android.experienceaccessibility.subtitles.CueTable;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
 import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.Renderer;
 import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.audio.AudioCapabilities;
+import com.google.android.exoplayer2.audio.AudioSink;
+import com.google.android.exoplayer2.audio.DefaultAudioSink;
+import com.google.android.exoplayer2.text.TextOutput;
+import com.google.android.exoplayer2.text.TextRenderer;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /** ExoPlayer factory. */
 public class ExoPlayerFactory {
 
   private static final String SUBTITLE_LANGUAGE = "en";
+  private static final Map<SimpleExoPlayer, HearingLossAudioProcessor> hearingLossProcessors =
+      new WeakHashMap<>();
 
   private ExoPlayerFactory() {}
 
-  /** Creates ExoPlayer and sets given media items / subtitles to it. */
+  /**
+   * Takes a player from {@link ExoPlayerPool} and sets given media items / subtitles to it. The
+   * player must be handed back with {@link #releaseExoPlayer}, which also ends its {@link
+   * PlaybackTelemetry} session.
+   */
   public static SimpleExoPlayer createExoPlayer(Context context, String subPath, int resId) {
+    SimpleExoPlayer player = ExoPlayerPool.getInstance(context).acquire();
+    setMedia(context, player, subPath, resId);
+    return player;
+  }
+
+  /**
+   * Switches a player created by {@link #createExoPlayer} to other media / subtitles, keeping its
+   * renderers, track selector and playback thread.
+   */
+  public static void setMedia(Context context, SimpleExoPlayer player, String subPath, int resId) {
     MediaItem.Subtitle subtitle = createSubtitleMediaItem(subPath);
     MediaItem mediaItem = createMediaItem(context, resId, subtitle);
 
-    SimpleExoPlayer player = new SimpleExoPlayer.Builder(context).build();
-
     player.setMediaItem(mediaItem);
     player.prepare();
+    PlaybackTelemetry.getInstance(context)
+        .startSession(player, context.getResources().getResourceEntryName(resId), subPath);
+  }
+
+  /** Returns a player created by {@link #createExoPlayer} to the pool. */
+  public static void releaseExoPlayer(Context context, SimpleExoPlayer player) {
+    PlaybackTelemetry.getInstance(context).endSession(player);
+    ExoPlayerPool.getInstance(context).release(player);
+  }
+
+  /** Simulates the given hearing loss on the audio of a player built by this factory. */
+  public static void setHearingLossProfile(SimpleExoPlayer player, HearingLossProfile profile) {
+    hearingLossProcessors.get(player).setProfile(profile);
+  }
+
+  /** Returns the hearing loss simulated on the audio of a player built by this factory. */
+  public static HearingLossProfile getHearingLossProfile(SimpleExoPlayer player) {
+    return hearingLossProcessors.get(player).getProfile();
+  }
 
+  /** Builds a new, empty player. */
+  static SimpleExoPlayer buildExoPlayer(Context context) {
+    HearingLossAudioProcessor hearingLossProcessor = new HearingLossAudioProcessor();
+    SimpleExoPlayer player =
+        new SimpleExoPlayer.Builder(
+                context, new CompiledSubtitleRenderersFactory(context, hearingLossProcessor))
+            .build();
+    hearingLossProcessors.put(player, hearingLossProcessor);
     return player;
   }
 
@@ -53,8 +110,12 @@ public class ExoPlayerFactory {
   }
 
   private static MediaItem.Subtitle createSubtitleMediaItem(String path) {
+    String mimeType =
+        path.endsWith(CueTable.FILE_EXTENSION)
+            ? CompiledSubtitleDecoderFactory.MIME_TYPE
+            : MimeTypes.APPLICATION_SUBRIP;
     return new MediaItem.Subtitle(
-        Uri.parse(path), MimeTypes.APPLICATION_SUBRIP, SUBTITLE_LANGUAGE, C.SELECTION_FLAG_FORCED);
+        Uri.parse(path), mimeType, SUBTITLE_LANGUAGE, C.SELECTION_FLAG_FORCED);
   }
 
   private static Uri getResourceUri(int resId, Context context) {
@@ -66,4 +127,42 @@ public class ExoPlayerFactory {
         .appendPath(resources.getResourceEntryName(resId))
         .build();
   }
+
+  /**
+   * Renderers factory whose text renderer also decodes compiled cue tables, and whose audio goes
+   * through a hearing loss simulation.
+   */
+  private static final class CompiledSubtitleRenderersFactory extends DefaultRenderersFactory {
+    private final HearingLossAudioProcessor hearingLossProcessor;
+
+    private CompiledSubtitleRenderersFactory(
+        Context context, HearingLossAudioProcessor hearingLossProcessor) {
+      super(context);
+      this.hearingLossProcessor = hearingLossProcessor;
+    }
+
+    @Override
+    protected AudioSink buildAudioSink(
+        Context context,
+        boolean enableFloatOutput,
+        boolean enableAudioTrackPlaybackParams,
+        boolean enableOffload) {
+      return new DefaultAudioSink(
+          AudioCapabilities.getCapabilities(context),
+          new DefaultAudioSink.DefaultAudioProcessorChain(hearingLossProcessor),
+          enableFloatOutput,
+          enableAudioTrackPlaybackParams,
+          enableOffload);
+    }
+
+    @Override
+    protected void buildTextRenderers(
+        Context context,
+        TextOutput output,
+        Looper outputLooper,
+        @ExtensionRendererMode int extensionRendererMode,
+        ArrayList<Renderer> out) {
+      out.add(new TextRenderer(output, outputLooper, new CompiledSubtitleDecoderFactory()));
+    }
+  }
 }
@@ -0,0 +1,123 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.util.Log;
+import com.android.experienceaccessibility.simulation.HearingLossProfile;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Bounded pool of already built players, so that moving between screens does not pay for a new
+ * player with its own track selector, renderers and playback thread every time.
+ *
+ * <p>Must be used from the main thread, like the players it hands out. Borrowers must remove any
+ * listeners they added before giving a player back.
+ */
+public final class ExoPlayerPool {
+  private static final String TAG = "ExoPlayerPool";
+  private static final int MAX_IDLE_PLAYERS = 2;
+
+  private static ExoPlayerPool instance;
+
+  private final Context context;
+  private final ArrayDeque<SimpleExoPlayer> idlePlayers = new ArrayDeque<>();
+  private final Set<SimpleExoPlayer> borrowedPlayers = new HashSet<>();
+  private int hitCount = 0;
+  private int missCount = 0;
+
+  private ExoPlayerPool(Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  /** Returns the process wide pool. */
+  public static ExoPlayerPool getInstance(Context context) {
+    if (instance == null) {
+      instance = new ExoPlayerPool(context);
+    }
+    return instance;
+  }
+
+  /** Builds idle players until the pool holds {@code count} of them, up to its capacity. */
+  public void prewarm(int count) {
+    int target = Math.min(count, MAX_IDLE_PLAYERS);
+    while (idlePlayers.size() < target) {
+      idlePlayers.push(ExoPlayerFactory.buildExoPlayer(context));
+    }
+  }
+
+  /** Hands out an idle player, building a new one if the pool is empty. */
+  public SimpleExoPlayer acquire() {
+    SimpleExoPlayer player = idlePlayers.poll();
+    if (player != null) {
+      hitCount++;
+    } else {
+      missCount++;
+      player = ExoPlayerFactory.buildExoPlayer(context);
+    }
+    borrowedPlayers.add(player);
+    return player;
+  }
+
+  /**
+   * Takes a player back. It is reset to a clean state and kept for the next borrower, or released
+   * if the pool is already full.
+   */
+  public void release(SimpleExoPlayer player) {
+    if (!borrowedPlayers.remove(player)) {
+      throw new IllegalStateException("Player was not acquired from this pool.");
+    }
+    if (idlePlayers.size() >= MAX_IDLE_PLAYERS) {
+      player.release();
+    } else {
+      reset(player);
+      idlePlayers.push(player);
+    }
+    Log.d(TAG, "Pool hits: " + hitCount + ", misses: " + missCount);
+  }
+
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  public int getMissCount() {
+    return missCount;
+  }
+
+  private void reset(SimpleExoPlayer player) {
+    player.stop();
+    player.clearMediaItems();
+    player.clearVideoSurface();
+    resetSettings(player);
+  }
+
+  /** Undoes the settings a borrower may have changed, leaving the media as it is. */
+  void resetSettings(SimpleExoPlayer player) {
+    player.setPlayWhenReady(false);
+    player.setRepeatMode(Player.REPEAT_MODE_OFF);
+    player.setShuffleModeEnabled(false);
+    player.setPlaybackParameters(PlaybackParameters.DEFAULT);
+    player.setVolume(1);
+    ExoPlayerFactory.setHearingLossProfile(player, HearingLossProfile.NONE);
+    DefaultTrackSelector trackSelector = (DefaultTrackSelector) player.getTrackSelector();
+    trackSelector.setParameters(DefaultTrackSelector.Parameters.getDefaults(context));
+  }
+}
@@ -0,0 +1,31 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.app.Application;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.metrics.FrameMetricsRecorder;
+
+/** Application of the app; sets up process wide instrumentation. */
+public class ExperienceAccessibilityApplication extends Application {
+
+  @Override
+  public void onCreate() {
+    super.onCreate();
+    if (Constants.FRAME_METRICS_ENABLED) {
+      FrameMetricsRecorder.install(this, /* showOverlay= */ true);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.view.Choreographer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Highlights a range of a {@link HighlightTextView}. Ranges may be set from any thread at any
+ * rate; only the latest one is handed to the view, once per frame. The view draws the highlight
+ * itself, so the text's spans and layout never change. Nothing is allocated per update.
+ *
+ * <p>Must be created on the main thread.
+ */
+final class HighlightRenderer implements Choreographer.FrameCallback {
+  private static final long NO_HIGHLIGHT = -1;
+
+  private final HighlightTextView textView;
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private final AtomicBoolean frameScheduled = new AtomicBoolean();
+  // Start in the high and end in the low 32 bits, so both are published in one write.
+  private volatile long pendingRange = NO_HIGHLIGHT;
+
+  HighlightRenderer(HighlightTextView textView, int color) {
+    this.textView = textView;
+    textView.setRangeHighlightColor(color);
+  }
+
+  /** Highlights {@code [start, end)} from the next frame on. */
+  void setHighlight(int start, int end) {
+    pendingRange = ((long) start << 32) | end;
+    scheduleFrame();
+  }
+
+  /** Removes the highlight from the next frame on. */
+  void clearHighlight() {
+    pendingRange = NO_HIGHLIGHT;
+    scheduleFrame();
+  }
+
+  /** Drops a pending update. Must be called on the main thread. */
+  void release() {
+    choreographer.removeFrameCallback(this);
+    frameScheduled.set(false);
+  }
+
+  private void scheduleFrame() {
+    if (frameScheduled.compareAndSet(false, true)) {
+      // Safe from any thread, Choreographer hands the callback over to its own looper.
+      choreographer.postFrameCallback(this);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    // Cleared before reading, so a range set from now on schedules another frame.
+    frameScheduled.set(false);
+    long range = pendingRange;
+    if (range == NO_HIGHLIGHT) {
+      textView.setRangeHighlight(-1, -1);
+    } else {
+      textView.setRangeHighlight((int) (range >>> 32), (int) range);
+    }
+  }
+}
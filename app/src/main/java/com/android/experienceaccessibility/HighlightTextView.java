@@ -0,0 +1,102 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.util.AttributeSet;
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.AppCompatTextView;
+
+/**
+ * Text view that draws a highlight behind a range of its text itself, instead of through a span.
+ * Moving the highlight leaves the text and its layout alone, so it only redraws the view.
+ *
+ * <p>Draws one rectangle per line, for left to right text that starts at the top of the view, which
+ * is how all of the app's text is laid out.
+ */
+public class HighlightTextView extends AppCompatTextView {
+  private final Paint rangeHighlightPaint = new Paint();
+  private int rangeHighlightStart = -1;
+  private int rangeHighlightEnd = -1;
+
+  public HighlightTextView(Context context) {
+    this(context, null);
+  }
+
+  public HighlightTextView(Context context, @Nullable AttributeSet attrs) {
+    this(context, attrs, android.R.attr.textViewStyle);
+  }
+
+  public HighlightTextView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+    super(context, attrs, defStyleAttr);
+  }
+
+  /** Sets the color drawn behind the highlighted range. */
+  public void setRangeHighlightColor(int color) {
+    rangeHighlightPaint.setColor(color);
+    invalidate();
+  }
+
+  /**
+   * Highlights {@code [start, end)} of the text, or nothing if {@code start} is negative. A range
+   * past the end of the text is not drawn.
+   */
+  public void setRangeHighlight(int start, int end) {
+    if (start == rangeHighlightStart && end == rangeHighlightEnd) {
+      return;
+    }
+    rangeHighlightStart = start;
+    rangeHighlightEnd = end;
+    invalidate();
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    Layout layout = getLayout();
+    if (rangeHighlightStart >= 0
+        && rangeHighlightStart < rangeHighlightEnd
+        && rangeHighlightEnd <= getText().length()
+        && layout != null) {
+      drawRangeHighlight(canvas, layout);
+    }
+    super.onDraw(canvas);
+  }
+
+  private void drawRangeHighlight(Canvas canvas, Layout layout) {
+    int left = getCompoundPaddingLeft();
+    int top = getExtendedPaddingTop();
+    int firstLine = layout.getLineForOffset(rangeHighlightStart);
+    int lastLine = layout.getLineForOffset(rangeHighlightEnd);
+    for (int line = firstLine; line <= lastLine; line++) {
+      float from =
+          line == firstLine
+              ? layout.getPrimaryHorizontal(rangeHighlightStart)
+              : layout.getLineLeft(line);
+      float to =
+          line == lastLine
+              ? layout.getPrimaryHorizontal(rangeHighlightEnd)
+              : layout.getLineRight(line);
+      canvas.drawRect(
+          left + from,
+          top + layout.getLineTop(line),
+          left + to,
+          top + layout.getLineBottom(line),
+          rangeHighlightPaint);
+    }
+  }
+}
@@ -16,94 +16,167 @@ package com.android.experienceaccessibility;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.format.DateUtils;
 import androidx.appcompat.app.AppCompatActivity;
-import android.view.View;
-import androidx.viewpager.widget.ViewPager;
+import androidx.appcompat.widget.SearchView;
+import android.widget.Toast;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
 import com.android.experienceaccessibility.auditory.AuditoryLandingModel;
+import com.android.experienceaccessibility.auditory.CarouselDotIndicator;
+import com.android.experienceaccessibility.auditory.CarouselImageLoader;
 import com.android.experienceaccessibility.auditory.CarouselTransformer;
-import com.google.android.material.tabs.TabLayout;
-import java.util.ArrayList;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.metrics.FrameMetricsRecorder;
+import com.google.android.exoplayer2.C;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import java.util.List;
 
 /** Main activity for MovingButtons App. */
 public class MainActivity extends AppCompatActivity {
-  private ViewPager viewPager;
+  private static final String CAROUSEL_SWIPE_INTERACTION = "carouselSwipe";
+  // Laid out cards plus the few just swiped out, whatever the size of the catalog.
+  private static final int MAX_RECYCLED_CARDS = 4;
+  private static final int PREFETCHED_CARDS = 2;
+  private ViewPager2 viewPager;
   private List<AuditoryLandingModel> auditoryLandingModels;
+  private StoryPreloader storyPreloader;
 
   @Override
   public void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
 
-    initializeAuditoryLandingModels();
-    AuditoryLandingPagerAdapter adapter =
-        new AuditoryLandingPagerAdapter(auditoryLandingModels, this);
+    auditoryLandingModels = StoryCatalog.getInstance(this).getLandingModels();
+    storyPreloader = StoryPreloader.getInstance(getApplicationContext());
+    AuditoryLandingAdapter adapter =
+        new AuditoryLandingAdapter(auditoryLandingModels, this, this::onCardClick);
     viewPager = findViewById(R.id.auditoryLandingViewPager);
+    RecyclerView pageContainer = (RecyclerView) viewPager.getChildAt(0);
+    // Neighbouring cards peek in from the sides.
+    int peek = getResources().getDimensionPixelSize(R.dimen.carousel_card_peek);
+    pageContainer.setPadding(peek, 0, peek, 0);
+    pageContainer.setClipToPadding(false);
+    RecyclerView.RecycledViewPool cardPool = new RecyclerView.RecycledViewPool();
+    cardPool.setMaxRecycledViews(/* viewType= */ 0, MAX_RECYCLED_CARDS);
+    pageContainer.setRecycledViewPool(cardPool);
+    viewPager.setOffscreenPageLimit(1);
     viewPager.setAdapter(adapter);
-    viewPager.setPageTransformer(false, new CarouselTransformer(this));
-    TabLayout dotIndicator = findViewById(R.id.auditoryLandingDotIndicator);
-    dotIndicator.setupWithViewPager(viewPager, true);
-    setTabLabelVisibility(dotIndicator);
-    ViewPager.OnPageChangeListener onPageChangeListener =
-        new ViewPager.OnPageChangeListener() {
+    adapter.preinflate(pageContainer);
+    new CarouselTransformer(this, /* frameBudgeted= */ true).attachTo(viewPager);
+    CarouselDotIndicator dotIndicator = findViewById(R.id.auditoryLandingDotIndicator);
+    dotIndicator.attachTo(viewPager);
+    viewPager.registerOnPageChangeCallback(
+        new ViewPager2.OnPageChangeCallback() {
           @Override
-          public void onPageScrolled(
-              int position, float positionOffset, int positionOffsetPixels) {}
+          public void onPageSelected(int position) {
+            storyPreloader.schedule(auditoryLandingModels.get(position).getStoryId());
+            prefetchImages(position);
+          }
 
           @Override
-          public void onPageSelected(int position) {
-            View view = viewPager.findViewWithTag("auditory_landing_" + viewPager.getCurrentItem());
-            view.setOnClickListener(
-                v -> startAuditoryActivity(auditoryLandingModels.get(position).getStoryId()));
+          public void onPageScrollStateChanged(int state) {
+            if (state == ViewPager2.SCROLL_STATE_IDLE) {
+              FrameMetricsRecorder.endInteraction(CAROUSEL_SWIPE_INTERACTION);
+            } else {
+              FrameMetricsRecorder.beginInteraction(CAROUSEL_SWIPE_INTERACTION);
+            }
           }
+        });
+
+    setUpCaptionSearch();
+  }
+
+  @Override
+  public void onStart() {
+    super.onStart();
+    storyPreloader.schedule(auditoryLandingModels.get(viewPager.getCurrentItem()).getStoryId());
+  }
+
+  @Override
+  public void onStop() {
+    super.onStop();
+    // The story screen has already taken the preloaded player if a card was tapped.
+    storyPreloader.cancel();
+  }
+
+  private void onCardClick(int position) {
+    startAuditoryActivity(auditoryLandingModels.get(position).getStoryId());
+  }
+
+  /** Decodes the images of the cards the user is likely to swipe to next. */
+  private void prefetchImages(int position) {
+    CarouselImageLoader imageLoader = CarouselImageLoader.getInstance(this);
+    int first = Math.max(0, position - PREFETCHED_CARDS);
+    int last = Math.min(auditoryLandingModels.size() - 1, position + PREFETCHED_CARDS);
+    for (int i = first; i <= last; i++) {
+      int image = auditoryLandingModels.get(i).getImage();
+      if (image != Constants.BLACK_BACKGROUND) {
+        imageLoader.prefetch(image);
+      }
+    }
+  }
 
+  private void setUpCaptionSearch() {
+    SearchView searchView = findViewById(R.id.auditoryLandingCaptionSearch);
+    searchView.setOnQueryTextListener(
+        new SearchView.OnQueryTextListener() {
           @Override
-          public void onPageScrollStateChanged(int state) {}
-        };
-    viewPager.addOnPageChangeListener(onPageChangeListener);
+          public boolean onQueryTextSubmit(String query) {
+            searchView.clearFocus();
+            CaptionSearch.getInstance(getApplicationContext())
+                .search(query, MainActivity.this::showCaptionSearchResults);
+            return true;
+          }
 
-    // Run onPageSelected on first page.
-    viewPager.post(
-        () -> onPageChangeListener.onPageSelected(viewPager.getCurrentItem()));
+          @Override
+          public boolean onQueryTextChange(String newText) {
+            return false;
+          }
+        });
   }
 
-  private void setTabLabelVisibility(TabLayout tablayout) {
-    for (int i = 0; i < tablayout.getTabCount(); i++) {
-      tablayout.getTabAt(i).setTabLabelVisibility(TabLayout.TAB_LABEL_VISIBILITY_UNLABELED);
-    }}
-
-  /** Initialize auditoryLandingModels for all card views. */
-  private void initializeAuditoryLandingModels() {
-    auditoryLandingModels = new ArrayList<>();
-    auditoryLandingModels.add(
-        new AuditoryLandingModel(
-            getString(R.string.auditory_landing_title_blind),
-            getString(R.string.auditory_story_description),
-            R.drawable.blindness,
-            AuditoryStoryActivity.STORY_BLINDNESS_ID));
-    auditoryLandingModels.add(
-        new AuditoryLandingModel(
-            getString(R.string.auditory_landing_title_deaf),
-            getString(R.string.auditory_story_deaf_description),
-            R.drawable.deafness,
-            AuditoryStoryActivity.STORY_DEAFNESS_ID));
-    auditoryLandingModels.add(
-        new AuditoryLandingModel(
-            getString(R.string.auditory_landing_title_motor_impairment),
-            getString(R.string.auditory_story_motor_description),
-            R.drawable.motor_impairment,
-            AuditoryStoryActivity.STORY_MOTOR_IMPAIRMENT_ID));
-    auditoryLandingModels.add(
-        new AuditoryLandingModel(
-            getString(R.string.auditory_landing_title_learning_disabilities),
-            getString(R.string.auditory_story_learning_description),
-            R.drawable.learning_disability,
-            AuditoryStoryActivity.STORY_LEARNING_DISABILITY_ID));
+  private void showCaptionSearchResults(String query, List<CaptionSearch.Result> results) {
+    if (isFinishing() || isDestroyed()) {
+      return;
+    }
+    if (results.isEmpty()) {
+      Toast.makeText(
+              this, getString(R.string.caption_search_no_results, query), Toast.LENGTH_SHORT)
+          .show();
+      return;
+    }
+    CharSequence[] items = new CharSequence[results.size()];
+    for (int i = 0; i < items.length; i++) {
+      CaptionSearch.Result result = results.get(i);
+      items[i] =
+          getString(
+              R.string.caption_search_result,
+              result.getStoryTitle(),
+              DateUtils.formatElapsedTime(result.getStartTimeMs() / 1000),
+              result.getText());
+    }
+    new MaterialAlertDialogBuilder(this)
+        .setTitle(getString(R.string.caption_search_results_title, query))
+        .setItems(
+            items,
+            (dialog, which) ->
+                startAuditoryActivity(
+                    results.get(which).getStoryId(), results.get(which).getStartTimeMs()))
+        .show();
   }
 
   public void startAuditoryActivity(String storyId) {
+    startAuditoryActivity(storyId, C.TIME_UNSET);
+  }
+
+  /** Opens the story, starting its video at the given position unless it is unset. */
+  public void startAuditoryActivity(String storyId, long startPositionMs) {
     Intent intent = new Intent(this, AuditoryStoryActivity.class);
     intent.putExtra(AuditoryStoryActivity.STORY_KEY, storyId);
+    if (startPositionMs != C.TIME_UNSET) {
+      intent.putExtra(AuditoryStoryActivity.START_POSITION_KEY, startPositionMs);
+    }
     startActivity(intent);
   }
 }
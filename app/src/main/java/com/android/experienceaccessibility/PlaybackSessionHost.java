@@ -0,0 +1,120 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+/**
+ * Process wide holder of the player the video screens share. When one screen hands over to the
+ * next, the next one gets the same player switched to its own media, instead of a cold player
+ * with new renderers, track selector and playback thread.
+ *
+ * <p>A screen takes the player with {@link #acquire} when it starts and parks it with {@link
+ * #park} when it stops. The last screen to acquire it owns it. A parked player that nobody
+ * acquires is given back to the pool after a while. Must be used from the main thread.
+ */
+public final class PlaybackSessionHost {
+  // Long enough for going back and forth between screens, short enough not to hold codecs.
+  private static final long PARKED_TIMEOUT_MS = 10_000;
+
+  private static PlaybackSessionHost instance;
+
+  private final Context context;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable releaseRunnable = this::releasePlayer;
+  @Nullable private SimpleExoPlayer player;
+  @Nullable private Object owner;
+  @Nullable private String subtitlesPath;
+  private int videoResId;
+
+  private PlaybackSessionHost(Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  /** Returns the process wide host. */
+  public static PlaybackSessionHost getInstance(Context context) {
+    if (instance == null) {
+      instance = new PlaybackSessionHost(context);
+    }
+    return instance;
+  }
+
+  /**
+   * Makes {@code owner} the owner of the shared player, playing the given media, and returns it.
+   * The player is switched in place if it has other media, and settings of its previous owner,
+   * like repeat mode or subtitle selection, are reset.
+   *
+   * @param preparedPlayer a player from {@link ExoPlayerFactory#createExoPlayer} already prepared
+   *     with this media, like a preloaded one, which then replaces the shared player
+   */
+  public SimpleExoPlayer acquire(
+      Object owner,
+      String subtitlesPath,
+      int videoResId,
+      @Nullable SimpleExoPlayer preparedPlayer) {
+    handler.removeCallbacks(releaseRunnable);
+    if (preparedPlayer != null && preparedPlayer != player) {
+      releasePlayer();
+      player = preparedPlayer;
+    } else if (player == null) {
+      player = ExoPlayerFactory.createExoPlayer(context, subtitlesPath, videoResId);
+    } else {
+      if (this.owner != owner) {
+        ExoPlayerPool.getInstance(context).resetSettings(player);
+      }
+      if (videoResId != this.videoResId || !subtitlesPath.equals(this.subtitlesPath)) {
+        ExoPlayerFactory.setMedia(context, player, subtitlesPath, videoResId);
+      }
+    }
+    this.owner = owner;
+    this.subtitlesPath = subtitlesPath;
+    this.videoResId = videoResId;
+    return player;
+  }
+
+  /**
+   * Whether {@code owner} acquired the player and no one took it over since, even if it is
+   * parked. Acquiring it again then returns it exactly as it was left.
+   */
+  public boolean isOwner(Object owner) {
+    return player != null && this.owner == owner;
+  }
+
+  /**
+   * Pauses the player if {@code owner} still owns it, and keeps it prepared for the next screen
+   * until the timeout.
+   */
+  public void park(Object owner) {
+    if (!isOwner(owner)) {
+      return;
+    }
+    player.pause();
+    handler.removeCallbacks(releaseRunnable);
+    handler.postDelayed(releaseRunnable, PARKED_TIMEOUT_MS);
+  }
+
+  private void releasePlayer() {
+    if (player != null) {
+      ExoPlayerFactory.releaseExoPlayer(context, player);
+      player = null;
+      owner = null;
+      subtitlesPath = null;
+    }
+  }
+}
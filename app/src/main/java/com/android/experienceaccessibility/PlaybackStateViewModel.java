@@ -0,0 +1,59 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import androidx.lifecycle.ViewModel;
+import com.android.experienceaccessibility.simulation.HearingLossProfile;
+import com.google.android.exoplayer2.C;
+
+/**
+ * Playback state of a video screen that outlives configuration changes. It is also the owner the
+ * screen acquires the shared player from {@link PlaybackSessionHost} with, so a recreated screen
+ * gets the same player back as it was, prepared and with its settings.
+ */
+public class PlaybackStateViewModel extends ViewModel {
+  private long positionMs = C.TIME_UNSET;
+  private boolean subtitlesEnabled = false;
+  private HearingLossProfile hearingLossProfile = HearingLossProfile.NONE;
+
+  /**
+   * Returns where to continue when the player had been switched to another screen's media in the
+   * meantime, or {@link C#TIME_UNSET} to start from the beginning.
+   */
+  public long getPositionMs() {
+    return positionMs;
+  }
+
+  public void setPositionMs(long positionMs) {
+    this.positionMs = positionMs;
+  }
+
+  public boolean isSubtitlesEnabled() {
+    return subtitlesEnabled;
+  }
+
+  public void setSubtitlesEnabled(boolean subtitlesEnabled) {
+    this.subtitlesEnabled = subtitlesEnabled;
+  }
+
+  /** Returns the hearing loss the screen lets the user hear the video with. */
+  public HearingLossProfile getHearingLossProfile() {
+    return hearingLossProfile;
+  }
+
+  public void setHearingLossProfile(HearingLossProfile hearingLossProfile) {
+    this.hearingLossProfile = hearingLossProfile;
+  }
+}
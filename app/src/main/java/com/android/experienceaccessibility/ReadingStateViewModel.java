@@ -0,0 +1,188 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.app.Application;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import com.android.experienceaccessibility.SentenceUtterances.Sentence;
+import com.android.experienceaccessibility.metrics.FrameMetricsRecorder;
+
+/**
+ * Read-aloud state of the learning disability challenge. It outlives configuration changes, so
+ * speech keeps going, and keeps highlighting the current word in the new activity's text view,
+ * instead of being stopped and synthesized again.
+ */
+public class ReadingStateViewModel extends AndroidViewModel {
+  private static final String TAG = "ReadingStateViewModel";
+  private static final String HIGHLIGHT_INTERACTION = "readingHighlight";
+  private static final int NO_WORD = -1;
+
+  private final SpeechService speechService;
+  private final SpeechCache speechCache;
+  private final UtteranceProgressListener utteranceListener = new ReadingListener();
+  @Nullable private volatile HighlightRenderer highlightRenderer;
+  @Nullable private volatile SentenceUtterances currentSentences;
+  private volatile boolean highlightEnabled = false;
+  // Start and end of the word being spoken, or NO_WORD.
+  private volatile int wordStart = NO_WORD;
+  private volatile int wordEnd = NO_WORD;
+  private boolean easyTextShown = false;
+  private int utteranceCounter = 0;
+
+  public ReadingStateViewModel(@NonNull Application application) {
+    super(application);
+    speechService = SpeechService.getInstance(application);
+    speechCache = SpeechCache.getInstance(application);
+    speechService.addUtteranceProgressListener(utteranceListener);
+  }
+
+  /**
+   * Sets the renderer of the current activity's text view, or null when it goes away. A new
+   * renderer immediately shows the word being spoken.
+   */
+  void setHighlightRenderer(@Nullable HighlightRenderer renderer) {
+    highlightRenderer = renderer;
+    if (renderer != null && highlightEnabled && wordStart != NO_WORD) {
+      renderer.setHighlight(wordStart, wordEnd);
+    }
+  }
+
+  boolean isHighlightEnabled() {
+    return highlightEnabled;
+  }
+
+  void setHighlightEnabled(boolean highlightEnabled) {
+    this.highlightEnabled = highlightEnabled;
+  }
+
+  boolean isEasyTextShown() {
+    return easyTextShown;
+  }
+
+  /** Switches between the easy and difficult text, stopping any speech of the old one. */
+  void setEasyTextShown(boolean easyTextShown) {
+    this.easyTextShown = easyTextShown;
+    stop();
+  }
+
+  /** Reads the text aloud, sentence by sentence with word highlight if enabled. */
+  void speak(CharSequence text) {
+    if (!highlightEnabled) {
+      // Without highlighting no word ranges are needed, so a cached recording will do.
+      if (speechCache.speak(text.toString(), nextUtteranceId()) == TextToSpeech.ERROR) {
+        Log.v(TAG, "TTS error in converting Text to Speech!");
+      }
+      return;
+    }
+    speechCache.stop();
+    // Queue every sentence up front, so the engine always has the next one ready.
+    SentenceUtterances sentences =
+        SentenceUtterances.create(text, nextUtteranceId(), speechService.getLocale());
+    currentSentences = sentences;
+    FrameMetricsRecorder.beginInteraction(HIGHLIGHT_INTERACTION);
+    for (int i = 0; i < sentences.size(); i++) {
+      Sentence sentence = sentences.get(i);
+      int speechStatus =
+          speechService.speak(
+              sentence.speechText,
+              i == 0 ? TextToSpeech.QUEUE_FLUSH : TextToSpeech.QUEUE_ADD,
+              null,
+              sentence.utteranceId);
+      if (speechStatus == TextToSpeech.ERROR) {
+        Log.v(TAG, "TTS error in converting Text to Speech!");
+      }
+    }
+  }
+
+  /** Stops reading and removes the highlight. */
+  void stop() {
+    currentSentences = null;
+    speechService.stop();
+    speechCache.stop();
+    clearHighlight();
+  }
+
+  @Override
+  protected void onCleared() {
+    speechService.removeUtteranceProgressListener(utteranceListener);
+    stop();
+  }
+
+  private String nextUtteranceId() {
+    return "LearningDisabilityId-" + utteranceCounter++;
+  }
+
+  private void clearHighlight() {
+    wordStart = NO_WORD;
+    HighlightRenderer renderer = highlightRenderer;
+    if (renderer != null) {
+      renderer.clearHighlight();
+    }
+    FrameMetricsRecorder.endInteraction(HIGHLIGHT_INTERACTION);
+  }
+
+  /** Follows the spoken sentences; called on a speech engine thread. */
+  private final class ReadingListener extends UtteranceProgressListener {
+
+    @Override
+    public void onStart(String utteranceId) {}
+
+    @Override
+    public void onDone(String utteranceId) {
+      SentenceUtterances sentences = currentSentences;
+      Sentence sentence = sentences == null ? null : sentences.find(utteranceId);
+      if (sentence == null || sentence.index != sentences.size() - 1) {
+        return;
+      }
+      clearHighlight();
+    }
+
+    @Override
+    public void onError(String utteranceId) {
+      Log.v(TAG, "Utterance listener error! Utterance ID: " + utteranceId);
+    }
+
+    @Override
+    public void onRangeStart(String utteranceId, int start, int end, int frame) {
+      SentenceUtterances sentences = currentSentences;
+      Sentence sentence = sentences == null ? null : sentences.find(utteranceId);
+      if (sentence == null) {
+        return;
+      }
+      int word = sentence.findWord(start);
+      if (word < 0) {
+        return;
+      }
+      HighlightRenderer renderer = highlightRenderer;
+      if (!highlightEnabled) {
+        wordStart = NO_WORD;
+        if (renderer != null) {
+          renderer.clearHighlight();
+        }
+        return;
+      }
+      wordEnd = sentence.getWordEnd(word);
+      wordStart = sentence.getWordStart(word);
+      if (renderer != null) {
+        renderer.setHighlight(wordStart, wordEnd);
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import androidx.annotation.Nullable;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Text split into one utterance per sentence, so speech starts once the first sentence is
+ * synthesized rather than the whole passage. Each sentence carries an index of its word
+ * boundaries to map the engine's ranges back to offsets in the full text.
+ */
+final class SentenceUtterances {
+  private final List<Sentence> sentences;
+  private final Map<String, Sentence> sentencesById;
+
+  private SentenceUtterances(List<Sentence> sentences) {
+    this.sentences = sentences;
+    sentencesById = new HashMap<>();
+    for (Sentence sentence : sentences) {
+      sentencesById.put(sentence.utteranceId, sentence);
+    }
+  }
+
+  /** Splits the text into sentences with ids {@code utteranceIdPrefix + "-" + index}. */
+  static SentenceUtterances create(CharSequence text, String utteranceIdPrefix, Locale locale) {
+    String fullText = text.toString();
+    BreakIterator sentenceIterator = BreakIterator.getSentenceInstance(locale);
+    BreakIterator wordIterator = BreakIterator.getWordInstance(locale);
+    sentenceIterator.setText(fullText);
+    List<Sentence> sentences = new ArrayList<>();
+    int start = sentenceIterator.first();
+    for (int end = sentenceIterator.next();
+        end != BreakIterator.DONE;
+        start = end, end = sentenceIterator.next()) {
+      String sentenceText = fullText.substring(start, end);
+      if (sentenceText.trim().isEmpty()) {
+        continue;
+      }
+      sentences.add(
+          new Sentence(
+              utteranceIdPrefix + "-" + sentences.size(),
+              sentences.size(),
+              start,
+              sentenceText,
+              wordIterator));
+    }
+    return new SentenceUtterances(sentences);
+  }
+
+  int size() {
+    return sentences.size();
+  }
+
+  Sentence get(int index) {
+    return sentences.get(index);
+  }
+
+  /** Returns the sentence spoken by the given utterance, or null if it is not one of these. */
+  @Nullable
+  Sentence find(String utteranceId) {
+    return sentencesById.get(utteranceId);
+  }
+
+  /** A sentence utterance and its word boundaries, as offsets in the full text. */
+  static final class Sentence {
+    final String utteranceId;
+    final int index;
+    /** Offset of the sentence in the full text. */
+    final int start;
+    /** Text to hand to the engine, with the same length as the sentence. */
+    final String speechText;
+
+    private final int[] wordStarts;
+    private final int[] wordEnds;
+
+    private Sentence(
+        String utteranceId, int index, int start, String text, BreakIterator wordIterator) {
+      this.utteranceId = utteranceId;
+      this.index = index;
+      this.start = start;
+      this.speechText = toSpeechText(text);
+
+      wordIterator.setText(text);
+      int[] starts = new int[text.length()];
+      int[] ends = new int[text.length()];
+      int wordCount = 0;
+      int wordStart = wordIterator.first();
+      for (int wordEnd = wordIterator.next();
+          wordEnd != BreakIterator.DONE;
+          wordStart = wordEnd, wordEnd = wordIterator.next()) {
+        if (Character.isLetterOrDigit(text.codePointAt(wordStart))) {
+          starts[wordCount] = start + wordStart;
+          ends[wordCount] = start + wordEnd;
+          wordCount++;
+        }
+      }
+      wordStarts = Arrays.copyOf(starts, wordCount);
+      wordEnds = Arrays.copyOf(ends, wordCount);
+    }
+
+    /**
+     * Returns the index of the word containing, or else preceding, the given offset within this
+     * sentence, or -1 if there is none.
+     */
+    int findWord(int offsetInSentence) {
+      int index = Arrays.binarySearch(wordStarts, start + offsetInSentence);
+      return index >= 0 ? index : -index - 2;
+    }
+
+    /** Start of the word in the full text. */
+    int getWordStart(int wordIndex) {
+      return wordStarts[wordIndex];
+    }
+
+    /** End of the word in the full text, exclusive. */
+    int getWordEnd(int wordIndex) {
+      return wordEnds[wordIndex];
+    }
+
+    // onRangeStart stops after a full stop, see https://issuetracker.google.com/issues/174605128.
+    // Only the sentence's own trailing full stop is kept, for prosody.
+    private static String toSpeechText(String text) {
+      int last = text.length() - 1;
+      while (last > 0 && Character.isWhitespace(text.charAt(last))) {
+        last--;
+      }
+      char[] chars = text.toCharArray();
+      for (int i = 0; i < last; i++) {
+        if (chars[i] == '.') {
+          chars[i] = ';';
+        }
+      }
+      return new String(chars);
+    }
+  }
+}
@@ -0,0 +1,318 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Disk cache of synthesized speech for fixed UI strings. A cached string is played back by a
+ * local media player instead of the engine; a missing one is spoken live and synthesized to the
+ * cache in the background for next time.
+ *
+ * <p>Entries are keyed by text, locale, voice and speech rate, and the least recently used ones
+ * are evicted once the cache grows over its size budget.
+ */
+public final class SpeechCache
+    implements MediaPlayer.OnPreparedListener, MediaPlayer.OnErrorListener {
+  private static final String TAG = "SpeechCache";
+  private static final String DIRECTORY_NAME = "speech";
+  private static final String AUDIO_EXTENSION = ".wav";
+  private static final String TEMP_EXTENSION = ".tmp";
+  private static final String UTTERANCE_ID_PREFIX = "SpeechCache-";
+  private static final long MAX_CACHE_BYTES = 4 * 1024 * 1024;
+
+  private static SpeechCache instance;
+
+  private final SpeechService speechService;
+  private final File directory;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private MediaPlayer mediaPlayer;
+  // A cached file is loading, and starts once prepared unless stopped first. Main thread only.
+  private boolean preparing = false;
+  @Nullable private File preparingFile;
+  @Nullable private String preparingText;
+  @Nullable private String preparingUtteranceId;
+
+  // In access order, least recently used first. Guarded by this.
+  private final LinkedHashMap<String, File> entries =
+      new LinkedHashMap<>(
+          /* initialCapacity= */ 16, /* loadFactor= */ 0.75f, /* accessOrder= */ true);
+  private final Set<String> pendingKeys = new HashSet<>();
+  private long totalBytes = 0;
+
+  private SpeechCache(Context context) {
+    speechService = SpeechService.getInstance(context);
+    directory = new File(context.getCacheDir(), DIRECTORY_NAME);
+    speechService.addUtteranceProgressListener(new SynthesisListener());
+    speechService.whenSynthesisReady();
+    executor.execute(this::loadIndex);
+  }
+
+  /** Returns the app wide cache. */
+  public static synchronized SpeechCache getInstance(Context context) {
+    if (instance == null) {
+      instance = new SpeechCache(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Speaks the text, from the cache when possible. Anything already being spoken is stopped, as
+   * with {@link TextToSpeech#QUEUE_FLUSH}. Must be called from the main thread.
+   */
+  public int speak(String text, String utteranceId) {
+    // The key depends on the synthesis voice, which is only known once its engine is ready.
+    File file = null;
+    if (speechService.isSynthesisReady()) {
+      String key = createKey(text);
+      synchronized (this) {
+        file = entries.get(key);
+      }
+    }
+    if (file != null) {
+      speechService.stop();
+      File cachedFile = file;
+      if (play(cachedFile, text, utteranceId)) {
+        executor.execute(() -> cachedFile.setLastModified(System.currentTimeMillis()));
+        return TextToSpeech.SUCCESS;
+      }
+    }
+    stopPlayback();
+    return speakLive(text, utteranceId);
+  }
+
+  /** Stops cached playback. Live speech is stopped through {@link SpeechService#stop()}. */
+  public void stop() {
+    stopPlayback();
+  }
+
+  /** Speaks the text with the engine, and caches it for next time. */
+  private int speakLive(String text, String utteranceId) {
+    int status =
+        speechService.speak(text, TextToSpeech.QUEUE_FLUSH, /* params= */ null, utteranceId);
+    executor.execute(() -> synthesize(text));
+    return status;
+  }
+
+  /**
+   * Starts loading the cached file, off the main thread, and returns whether it could be opened.
+   * It plays once prepared; if preparing fails, the text is spoken live instead.
+   */
+  private boolean play(File file, String text, String utteranceId) {
+    if (mediaPlayer == null) {
+      mediaPlayer = new MediaPlayer();
+      mediaPlayer.setAudioAttributes(
+          new AudioAttributes.Builder()
+              .setUsage(AudioAttributes.USAGE_ASSISTANCE_ACCESSIBILITY)
+              .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+              .build());
+      mediaPlayer.setOnPreparedListener(this);
+      mediaPlayer.setOnErrorListener(this);
+    }
+    try {
+      mediaPlayer.reset();
+      mediaPlayer.setDataSource(file.getPath());
+    } catch (IOException e) {
+      Log.w(TAG, "Cannot play cached speech " + file, e);
+      preparing = false;
+      remove(file);
+      return false;
+    }
+    mediaPlayer.prepareAsync();
+    preparing = true;
+    preparingFile = file;
+    preparingText = text;
+    preparingUtteranceId = utteranceId;
+    return true;
+  }
+
+  private void stopPlayback() {
+    if (mediaPlayer == null) {
+      return;
+    }
+    if (preparing) {
+      mediaPlayer.reset();
+      preparing = false;
+    } else if (mediaPlayer.isPlaying()) {
+      mediaPlayer.stop();
+    }
+  }
+
+  @Override
+  public void onPrepared(MediaPlayer mediaPlayer) {
+    if (!preparing) {
+      return;
+    }
+    preparing = false;
+    mediaPlayer.start();
+  }
+
+  @Override
+  public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+    // Back to idle, so that the next playback can reuse the player.
+    mediaPlayer.reset();
+    if (!preparing) {
+      return true;
+    }
+    preparing = false;
+    Log.w(TAG, "Cannot play cached speech " + preparingFile + ", error " + what + "/" + extra);
+    remove(preparingFile);
+    speakLive(preparingText, preparingUtteranceId);
+    return true;
+  }
+
+  private String createKey(String text) {
+    String spec =
+        text
+            + '\n' + speechService.getLocale()
+            + '\n' + speechService.getVoiceName()
+            + '\n' + speechService.getSpeechRate();
+    return Hashing.sha256().hashString(spec, StandardCharsets.UTF_8).toString();
+  }
+
+  /** Runs on the executor. */
+  private void loadIndex() {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Log.w(TAG, "Cannot create " + directory);
+      return;
+    }
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+    synchronized (this) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!name.endsWith(AUDIO_EXTENSION)) {
+          // Left over from an interrupted synthesis.
+          file.delete();
+          continue;
+        }
+        entries.put(name.substring(0, name.length() - AUDIO_EXTENSION.length()), file);
+        totalBytes += file.length();
+      }
+    }
+    evict();
+  }
+
+  /** Runs on the executor. */
+  private void synthesize(String text) {
+    try {
+      speechService.whenSynthesisReady().get();
+    } catch (ExecutionException | InterruptedException e) {
+      return;
+    }
+    String key = createKey(text);
+    synchronized (this) {
+      if (entries.containsKey(key) || !pendingKeys.add(key)) {
+        return;
+      }
+    }
+    File tempFile = new File(directory, key + TEMP_EXTENSION);
+    int status =
+        speechService.synthesizeToFile(
+            text, /* params= */ null, tempFile, UTTERANCE_ID_PREFIX + key);
+    if (status == TextToSpeech.ERROR) {
+      onSynthesisFinished(key, /* success= */ false);
+    }
+  }
+
+  private void onSynthesisFinished(String key, boolean success) {
+    File tempFile = new File(directory, key + TEMP_EXTENSION);
+    File file = new File(directory, key + AUDIO_EXTENSION);
+    if (!success || !tempFile.renameTo(file)) {
+      tempFile.delete();
+      synchronized (this) {
+        pendingKeys.remove(key);
+      }
+      return;
+    }
+    synchronized (this) {
+      pendingKeys.remove(key);
+      entries.put(key, file);
+      totalBytes += file.length();
+    }
+    evict();
+  }
+
+  private synchronized void remove(File file) {
+    Iterator<Map.Entry<String, File>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().getValue().equals(file)) {
+        iterator.remove();
+        totalBytes -= file.length();
+        file.delete();
+        return;
+      }
+    }
+  }
+
+  private synchronized void evict() {
+    Iterator<File> iterator = entries.values().iterator();
+    while (totalBytes > MAX_CACHE_BYTES && iterator.hasNext()) {
+      File file = iterator.next();
+      iterator.remove();
+      totalBytes -= file.length();
+      file.delete();
+    }
+  }
+
+  /** Completes the background syntheses issued by this cache. */
+  private final class SynthesisListener extends UtteranceProgressListener {
+    @Override
+    public void onStart(String utteranceId) {}
+
+    @Override
+    public void onDone(String utteranceId) {
+      if (utteranceId.startsWith(UTTERANCE_ID_PREFIX)) {
+        String key = utteranceId.substring(UTTERANCE_ID_PREFIX.length());
+        executor.execute(() -> onSynthesisFinished(key, /* success= */ true));
+      }
+    }
+
+    @Override
+    public void onError(String utteranceId) {
+      if (utteranceId.startsWith(UTTERANCE_ID_PREFIX)) {
+        String key = utteranceId.substring(UTTERANCE_ID_PREFIX.length());
+        executor.execute(() -> onSynthesisFinished(key, /* success= */ false));
+      }
+    }
+
+    @Override
+    public void onStop(String utteranceId, boolean interrupted) {
+      onError(utteranceId);
+    }
+  }
+}
@@ -0,0 +1,344 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.speech.tts.Voice;
+import android.util.Log;
+import android.widget.Toast;
+import androidx.annotation.Nullable;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * App wide text to speech engine. The engine is bound once and shared by every screen, and
+ * utterances issued before it is ready are queued and spoken once it is. If the engine fails to
+ * initialise, speech is refused and the next {@link #getInstance(Context)} binds it again.
+ *
+ * <p>Synthesis to files runs on a second instance of the engine, bound on first use and again
+ * after it failed to initialise, so that flushing or stopping live speech never drops syntheses
+ * still in its queue.
+ */
+public final class SpeechService {
+  private static final String TAG = "SpeechService";
+  private static final Locale LOCALE = Locale.US;
+
+  private static SpeechService instance;
+
+  private final Context context;
+  private final List<UtteranceProgressListener> listeners = new CopyOnWriteArrayList<>();
+  private volatile long initLatencyMs = -1;
+  private volatile float speechRate = 1.0f;
+  private volatile boolean synthesisReady = false;
+
+  // Guarded by this.
+  private TextToSpeech textToSpeech;
+  private SettableFuture<TextToSpeech> readyFuture;
+  private long bindStartTimeMs;
+  private final List<PendingUtterance> pendingUtterances = new ArrayList<>();
+  private boolean ready = false;
+  private boolean failed = false;
+  @Nullable private TextToSpeech synthesisEngine;
+  private SettableFuture<TextToSpeech> synthesisReadyFuture;
+  private boolean synthesisFailed = false;
+
+  private SpeechService(Context context) {
+    this.context = context.getApplicationContext();
+    bind();
+  }
+
+  /**
+   * Returns the app wide service, binding the engine on first use and again if it failed to
+   * initialise.
+   */
+  public static synchronized SpeechService getInstance(Context context) {
+    if (instance == null) {
+      instance = new SpeechService(context);
+    } else {
+      instance.rebindIfFailed();
+    }
+    return instance;
+  }
+
+  /** Completes with the engine once it is initialised, or fails if initialisation failed. */
+  public synchronized ListenableFuture<TextToSpeech> whenReady() {
+    return readyFuture;
+  }
+
+  /** Returns how long the engine took to initialise, or -1 if it has not yet. */
+  public long getInitLatencyMs() {
+    return initLatencyMs;
+  }
+
+  /**
+   * Same as {@link TextToSpeech#speak(CharSequence, int, Bundle, String)}, except that it is
+   * queued rather than lost while the engine is still initialising. Returns {@link
+   * TextToSpeech#ERROR} if initialisation failed.
+   */
+  public int speak(
+      CharSequence text, int queueMode, @Nullable Bundle params, String utteranceId) {
+    TextToSpeech engine;
+    synchronized (this) {
+      if (failed) {
+        return TextToSpeech.ERROR;
+      }
+      if (!ready) {
+        if (queueMode == TextToSpeech.QUEUE_FLUSH) {
+          pendingUtterances.clear();
+        }
+        pendingUtterances.add(new PendingUtterance(text, queueMode, params, utteranceId));
+        return TextToSpeech.SUCCESS;
+      }
+      engine = textToSpeech;
+    }
+    return engine.speak(text, queueMode, params, utteranceId);
+  }
+
+  /**
+   * Completes with the engine used by {@link #synthesizeToFile} once it is initialised, or fails
+   * if initialisation failed. Binds the engine on the first call, and again on the next call after
+   * it failed.
+   */
+  public synchronized ListenableFuture<TextToSpeech> whenSynthesisReady() {
+    if (synthesisEngine == null) {
+      bindSynthesis();
+    } else if (synthesisFailed) {
+      Log.i(TAG, "Binding the synthesis engine again after it failed");
+      synthesisEngine.shutdown();
+      bindSynthesis();
+    }
+    return synthesisReadyFuture;
+  }
+
+  /** Whether the synthesis engine is ready, so that its voice is known. */
+  public boolean isSynthesisReady() {
+    return synthesisReady;
+  }
+
+  /**
+   * Same as {@link TextToSpeech#synthesizeToFile(CharSequence, Bundle, File, String)}, on the
+   * synthesis engine. Must only be called once {@link #whenSynthesisReady()} has completed.
+   */
+  public int synthesizeToFile(
+      CharSequence text, @Nullable Bundle params, File file, String utteranceId) {
+    return getSynthesisEngine().synthesizeToFile(text, params, file, utteranceId);
+  }
+
+  public void setSpeechRate(float speechRate) {
+    this.speechRate = speechRate;
+    getEngine().setSpeechRate(speechRate);
+    TextToSpeech engine = getSynthesisEngine();
+    if (engine != null) {
+      engine.setSpeechRate(speechRate);
+    }
+  }
+
+  public float getSpeechRate() {
+    return speechRate;
+  }
+
+  public Locale getLocale() {
+    return LOCALE;
+  }
+
+  /**
+   * Returns the name of the synthesis engine's voice, which files synthesized now are spoken
+   * with, or "default" before it is ready.
+   */
+  public String getVoiceName() {
+    Voice voice = isSynthesisReady() ? getSynthesisEngine().getVoice() : null;
+    return voice != null ? voice.getName() : "default";
+  }
+
+  /** Stops the current utterance and drops everything queued. */
+  public void stop() {
+    TextToSpeech engine;
+    synchronized (this) {
+      pendingUtterances.clear();
+      if (!ready) {
+        return;
+      }
+      engine = textToSpeech;
+    }
+    engine.stop();
+  }
+
+  /** Listeners receive progress of every utterance, so should filter by utterance id. */
+  public void addUtteranceProgressListener(UtteranceProgressListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeUtteranceProgressListener(UtteranceProgressListener listener) {
+    listeners.remove(listener);
+  }
+
+  private synchronized void bind() {
+    bindStartTimeMs = SystemClock.elapsedRealtime();
+    readyFuture = SettableFuture.create();
+    failed = false;
+    textToSpeech = new TextToSpeech(context, this::onInit);
+    textToSpeech.setOnUtteranceProgressListener(new ListenerDispatcher());
+  }
+
+  private synchronized void rebindIfFailed() {
+    if (failed) {
+      Log.i(TAG, "Binding text to speech again after it failed");
+      textToSpeech.shutdown();
+      bind();
+    }
+  }
+
+  private synchronized void bindSynthesis() {
+    synthesisReadyFuture = SettableFuture.create();
+    synthesisFailed = false;
+    synthesisReady = false;
+    synthesisEngine = new TextToSpeech(context, this::onSynthesisInit);
+    synthesisEngine.setOnUtteranceProgressListener(new ListenerDispatcher());
+  }
+
+  private synchronized TextToSpeech getEngine() {
+    return textToSpeech;
+  }
+
+  private void onInit(int status) {
+    TextToSpeech engine;
+    SettableFuture<TextToSpeech> future;
+    synchronized (this) {
+      engine = textToSpeech;
+      future = readyFuture;
+      initLatencyMs = SystemClock.elapsedRealtime() - bindStartTimeMs;
+    }
+    Log.i(TAG, "Text to speech initialised in " + initLatencyMs + " ms, status " + status);
+    if (status != TextToSpeech.SUCCESS) {
+      Toast.makeText(context, "Text To Speech failed!", Toast.LENGTH_SHORT).show();
+      synchronized (this) {
+        failed = true;
+        pendingUtterances.clear();
+      }
+      future.setException(new IllegalStateException("Text to speech failed: " + status));
+      return;
+    }
+    int language = engine.setLanguage(LOCALE);
+    if (language == TextToSpeech.LANG_MISSING_DATA
+        || language == TextToSpeech.LANG_NOT_SUPPORTED) {
+      Toast.makeText(context, "Text To Speech language is not supported!", Toast.LENGTH_SHORT)
+          .show();
+    }
+    synchronized (this) {
+      ready = true;
+      for (PendingUtterance utterance : pendingUtterances) {
+        engine.speak(
+            utterance.text, utterance.queueMode, utterance.params, utterance.utteranceId);
+      }
+      pendingUtterances.clear();
+    }
+    future.set(engine);
+  }
+
+  private void onSynthesisInit(int status) {
+    TextToSpeech engine;
+    SettableFuture<TextToSpeech> future;
+    synchronized (this) {
+      engine = synthesisEngine;
+      future = synthesisReadyFuture;
+    }
+    if (status != TextToSpeech.SUCCESS) {
+      Log.w(TAG, "Synthesis engine failed to initialise, status " + status);
+      synchronized (this) {
+        synthesisFailed = true;
+      }
+      future.setException(new IllegalStateException("Text to speech failed: " + status));
+      return;
+    }
+    engine.setLanguage(LOCALE);
+    engine.setSpeechRate(speechRate);
+    synthesisReady = true;
+    future.set(engine);
+  }
+
+  @Nullable
+  private synchronized TextToSpeech getSynthesisEngine() {
+    return synthesisEngine;
+  }
+
+  private static final class PendingUtterance {
+    private final CharSequence text;
+    private final int queueMode;
+    @Nullable private final Bundle params;
+    private final String utteranceId;
+
+    private PendingUtterance(
+        CharSequence text, int queueMode, @Nullable Bundle params, String utteranceId) {
+      this.text = text;
+      this.queueMode = queueMode;
+      this.params = params;
+      this.utteranceId = utteranceId;
+    }
+  }
+
+  /** Forwards the engine's single progress listener to every registered listener. */
+  private final class ListenerDispatcher extends UtteranceProgressListener {
+    @Override
+    public void onStart(String utteranceId) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onStart(utteranceId);
+      }
+    }
+
+    @Override
+    public void onDone(String utteranceId) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onDone(utteranceId);
+      }
+    }
+
+    @Override
+    public void onError(String utteranceId) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onError(utteranceId);
+      }
+    }
+
+    @Override
+    public void onError(String utteranceId, int errorCode) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onError(utteranceId, errorCode);
+      }
+    }
+
+    @Override
+    public void onStop(String utteranceId, boolean interrupted) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onStop(utteranceId, interrupted);
+      }
+    }
+
+    @Override
+    public void onRangeStart(String utteranceId, int start, int end, int frame) {
+      for (UtteranceProgressListener listener : listeners) {
+        listener.onRangeStart(utteranceId, start, end, frame);
+      }
+    }
+  }
+}
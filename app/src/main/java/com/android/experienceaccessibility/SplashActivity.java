@@ -17,23 +17,62 @@ package com.android.experienceaccessibility;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import com.android.experienceaccessibility.common.Constants;
 
-/** Main activity for MovingButtons App. */
+/**
+ * Main activity for MovingButtons App. Warms up the app while shown, and moves on as soon as the
+ * carousel can be drawn.
+ *
+ * <p>The warm-up is owned by a {@link SplashViewModel}, so a recreated splash screen neither
+ * starts it again nor launches the main activity a second time.
+ */
 public class SplashActivity extends AppCompatActivity {
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private SplashViewModel splashState;
+
   @Override
   public void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_splash);
 
-    new Handler()
-        .postDelayed(
-            () -> {
-              Intent intent = new Intent(getApplicationContext(), MainActivity.class);
-              startActivity(intent);
-              finish();
-            },
-            Constants.SPLASH_SCREEN_TIME_OUT);
+    splashState = new ViewModelProvider(this).get(SplashViewModel.class);
+    handler.postDelayed(
+        this::startMainActivity, getRemainingTimeMs(Constants.SPLASH_SCREEN_TIME_OUT));
+    splashState.setOnCriticalTasksFinished(this::onCriticalTasksFinished);
+  }
+
+  private long getRemainingTimeMs(long durationMs) {
+    long elapsedTimeMs = SystemClock.elapsedRealtime() - splashState.getStartTimeMs();
+    return Math.max(0, durationMs - elapsedTimeMs);
+  }
+
+  private void onCriticalTasksFinished() {
+    if (isDestroyed()) {
+      return;
+    }
+    handler.removeCallbacksAndMessages(null);
+    handler.postDelayed(
+        this::startMainActivity, getRemainingTimeMs(Constants.SPLASH_SCREEN_MIN_TIME));
+  }
+
+  private void startMainActivity() {
+    if (isFinishing() || isDestroyed() || !splashState.markMainActivityStarted()) {
+      return;
+    }
+    handler.removeCallbacksAndMessages(null);
+    Intent intent = new Intent(getApplicationContext(), MainActivity.class);
+    startActivity(intent);
+    finish();
+  }
+
+  @Override
+  public void onDestroy() {
+    super.onDestroy();
+    splashState.setOnCriticalTasksFinished(null);
+    handler.removeCallbacksAndMessages(null);
   }
 }
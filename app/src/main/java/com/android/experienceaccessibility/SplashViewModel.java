@@ -0,0 +1,122 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.AndroidViewModel;
+import com.android.experienceaccessibility.auditory.AuditoryLandingModel;
+import com.android.experienceaccessibility.auditory.CarouselImageLoader;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.common.StartupOrchestrator;
+import java.util.List;
+
+/**
+ * Warm-up of the splash screen. It outlives configuration changes, so the warm-up is started once
+ * and a recreated splash screen waits for the same tasks instead of starting them again.
+ */
+public class SplashViewModel extends AndroidViewModel {
+  private static final int PREWARMED_PLAYERS = 2;
+  // The first card and its neighbours; the rest are loaded as the carousel reaches them.
+  private static final int PRELOADED_STORIES = 3;
+
+  private final long startTimeMs = SystemClock.elapsedRealtime();
+  @Nullable private Runnable onCriticalTasksFinished;
+  private boolean criticalTasksFinished = false;
+  private boolean mainActivityStarted = false;
+
+  public SplashViewModel(@NonNull Application application) {
+    super(application);
+    createStartupOrchestrator(application).start(this::onCriticalTasksFinished);
+  }
+
+  /** Returns when the warm-up started, in {@link SystemClock#elapsedRealtime()} time. */
+  long getStartTimeMs() {
+    return startTimeMs;
+  }
+
+  /**
+   * Sets what to run once the critical tasks are done, or null when the screen goes away. Runs it
+   * right away if they already are.
+   */
+  void setOnCriticalTasksFinished(@Nullable Runnable onCriticalTasksFinished) {
+    this.onCriticalTasksFinished = onCriticalTasksFinished;
+    if (onCriticalTasksFinished != null && criticalTasksFinished) {
+      onCriticalTasksFinished.run();
+    }
+  }
+
+  /** Returns false if the main activity was already started, and true the first time. */
+  boolean markMainActivityStarted() {
+    if (mainActivityStarted) {
+      return false;
+    }
+    mainActivityStarted = true;
+    return true;
+  }
+
+  @Override
+  protected void onCleared() {
+    onCriticalTasksFinished = null;
+  }
+
+  private void onCriticalTasksFinished() {
+    criticalTasksFinished = true;
+    if (onCriticalTasksFinished != null) {
+      onCriticalTasksFinished.run();
+    }
+  }
+
+  private static StartupOrchestrator createStartupOrchestrator(Context context) {
+    StoryCatalog catalog = StoryCatalog.getInstance(context);
+    List<AuditoryLandingModel> landingModels =
+        catalog
+            .getLandingModels()
+            .subList(0, Math.min(PRELOADED_STORIES, catalog.getStoryCount()));
+    String firstStoryId = landingModels.get(0).getStoryId();
+    return new StartupOrchestrator()
+        .addTask(
+            "carouselImages",
+            /* critical= */ true,
+            /* onMainThread= */ false,
+            () -> {
+              CarouselImageLoader imageLoader = CarouselImageLoader.getInstance(context);
+              for (AuditoryLandingModel model : landingModels) {
+                if (model.getImage() != Constants.BLACK_BACKGROUND) {
+                  imageLoader.preload(model.getImage());
+                }
+              }
+            })
+        .addTask(
+            "speech",
+            /* critical= */ false,
+            /* onMainThread= */ true,
+            () -> SpeechService.getInstance(context))
+        .addTask(
+            "playerPool",
+            /* critical= */ false,
+            /* onMainThread= */ true,
+            () -> ExoPlayerPool.getInstance(context).prewarm(PREWARMED_PLAYERS))
+        .addTask(
+            "storyPreload",
+            /* critical= */ false,
+            /* onMainThread= */ true,
+            () -> StoryPreloader.getInstance(context).schedule(firstStoryId),
+            "playerPool");
+  }
+}
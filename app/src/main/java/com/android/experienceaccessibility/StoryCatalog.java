@@ -0,0 +1,278 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.JsonReader;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import com.android.experienceaccessibility.auditory.AuditoryLandingModel;
+import com.android.experienceaccessibility.auditory.AuditoryStoryMapModel;
+import com.android.experienceaccessibility.common.Constants;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stories shown in the carousel, read from {@code assets/story_catalog.json}.
+ *
+ * <p>Loading resolves the resources and challenge screen each entry refers to, so that a broken
+ * entry fails right away with its story id rather than when its card is shown or tapped. Strings
+ * and models are only read the first time a story's models are asked for. Entries look like:
+ *
+ * <pre>{@code
+ * {
+ *   "id": "deafness",
+ *   "title": "auditory_landing_title_deaf",            // string resource
+ *   "description": "auditory_story_deaf_description",  // string resource, optional
+ *   "image": "deafness",                               // drawable, optional
+ *   "video": "deaf_story_video",                       // raw resource
+ *   "subtitles": "deaf_story_subtitles.cues",          // asset
+ *   "challenge": "AuditoryChallengeDeafActivity",      // activity in this package
+ *   "audioDescription": false                          // speak the subtitles, optional
+ * }
+ * }</pre>
+ */
+public final class StoryCatalog {
+  private static final String TAG = "StoryCatalog";
+  private static final String CATALOG_ASSET = "story_catalog.json";
+  private static final String ASSET_URI_PREFIX = "file:///android_asset/";
+
+  private static StoryCatalog instance;
+
+  private final Context context;
+  private final List<Entry> entries;
+  private final Map<String, Entry> entriesById;
+  private final List<AuditoryLandingModel> landingModels =
+      new AbstractList<AuditoryLandingModel>() {
+        @Override
+        public AuditoryLandingModel get(int index) {
+          return entries.get(index).getLandingModel();
+        }
+
+        @Override
+        public int size() {
+          return entries.size();
+        }
+      };
+
+  private StoryCatalog(Context context) {
+    this.context = context.getApplicationContext();
+    entries = readEntries(this.context);
+    if (entries.isEmpty()) {
+      // Every screen starts from the first story.
+      throw new IllegalStateException(CATALOG_ASSET + " has no stories");
+    }
+    entriesById = new HashMap<>(entries.size() * 2);
+    for (Entry entry : entries) {
+      entriesById.put(entry.id, entry);
+    }
+  }
+
+  /**
+   * Returns the process wide catalog, reading it on first use. Throws {@link
+   * IllegalStateException} if the catalog is empty or an entry is incomplete or refers to missing
+   * resources.
+   */
+  public static synchronized StoryCatalog getInstance(Context context) {
+    if (instance == null) {
+      instance = new StoryCatalog(context);
+    }
+    return instance;
+  }
+
+  public int getStoryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the carousel card models in catalog order. The list is read only, and each model is
+   * only built when it is first fetched.
+   */
+  public List<AuditoryLandingModel> getLandingModels() {
+    return landingModels;
+  }
+
+  /** Returns the ids of all stories in catalog order, without resolving any of them. */
+  public List<String> getStoryIds() {
+    List<String> storyIds = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      storyIds.add(entry.id);
+    }
+    return storyIds;
+  }
+
+  /** Returns the card model of the given story, or null if the catalog doesn't have it. */
+  @Nullable
+  public AuditoryLandingModel getLandingModel(String storyId) {
+    Entry entry = entriesById.get(storyId);
+    return entry == null ? null : entry.getLandingModel();
+  }
+
+  /** Returns the video model of the given story, or null if the catalog doesn't have it. */
+  @Nullable
+  public AuditoryStoryMapModel getStoryModel(String storyId) {
+    Entry entry = entriesById.get(storyId);
+    return entry == null ? null : entry.getStoryModel();
+  }
+
+  private static List<Entry> readEntries(Context context) {
+    List<Entry> entries = new ArrayList<>();
+    try (JsonReader reader =
+        new JsonReader(
+            new InputStreamReader(
+                context.getAssets().open(CATALOG_ASSET), StandardCharsets.UTF_8))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        entries.add(readEntry(context, reader));
+      }
+      reader.endArray();
+    } catch (IOException | IllegalStateException e) {
+      // Keep what was read before the error rather than showing no stories at all.
+      Log.e(TAG, "Cannot read " + CATALOG_ASSET, e);
+    }
+    // Outside the try, so that a broken entry is not taken for a read error.
+    for (Entry entry : entries) {
+      entry.resolve();
+    }
+    return Collections.unmodifiableList(entries);
+  }
+
+  private static Entry readEntry(Context context, JsonReader reader) throws IOException {
+    Entry entry = new Entry(context);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id":
+          entry.id = reader.nextString();
+          break;
+        case "title":
+          entry.title = reader.nextString();
+          break;
+        case "description":
+          entry.description = reader.nextString();
+          break;
+        case "image":
+          entry.image = reader.nextString();
+          break;
+        case "video":
+          entry.video = reader.nextString();
+          break;
+        case "subtitles":
+          entry.subtitles = reader.nextString();
+          break;
+        case "challenge":
+          entry.challenge = reader.nextString();
+          break;
+        case "audioDescription":
+          entry.audioDescription = reader.nextBoolean();
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return entry;
+  }
+
+  /** One story as read from the catalog, with its models built on demand. */
+  private static final class Entry {
+    private final Context context;
+    String id;
+    String title;
+    @Nullable String description;
+    @Nullable String image;
+    String video;
+    String subtitles;
+    String challenge;
+    boolean audioDescription;
+    // Resolved by resolve().
+    private int titleId;
+    private int descriptionId;
+    private int imageId;
+    private int videoId;
+    private Class<? extends AppCompatActivity> challengeClass;
+    @Nullable private volatile AuditoryLandingModel landingModel;
+    @Nullable private volatile AuditoryStoryMapModel storyModel;
+
+    Entry(Context context) {
+      this.context = context;
+    }
+
+    /** Looks up what the entry refers to, throwing if anything is missing. */
+    void resolve() {
+      if (id == null || title == null || video == null || subtitles == null || challenge == null) {
+        throw new IllegalStateException("Story " + id + " is missing a required field");
+      }
+      titleId = getResourceId(title, "string");
+      descriptionId = description == null ? 0 : getResourceId(description, "string");
+      imageId = image == null ? Constants.BLACK_BACKGROUND : getResourceId(image, "drawable");
+      videoId = getResourceId(video, "raw");
+      challengeClass = getChallengeClass();
+    }
+
+    AuditoryLandingModel getLandingModel() {
+      AuditoryLandingModel model = landingModel;
+      if (model == null) {
+        Resources resources = context.getResources();
+        model =
+            new AuditoryLandingModel(
+                resources.getString(titleId),
+                descriptionId == 0 ? "" : resources.getString(descriptionId),
+                imageId,
+                id);
+        landingModel = model;
+      }
+      return model;
+    }
+
+    AuditoryStoryMapModel getStoryModel() {
+      AuditoryStoryMapModel model = storyModel;
+      if (model == null) {
+        model =
+            new AuditoryStoryMapModel(
+                ASSET_URI_PREFIX + subtitles, videoId, challengeClass, audioDescription);
+        storyModel = model;
+      }
+      return model;
+    }
+
+    private int getResourceId(String name, String type) {
+      int resId = context.getResources().getIdentifier(name, type, context.getPackageName());
+      if (resId == 0) {
+        throw new IllegalStateException("Story " + id + " refers to missing " + type + " " + name);
+      }
+      return resId;
+    }
+
+    private Class<? extends AppCompatActivity> getChallengeClass() {
+      String className = StoryCatalog.class.getPackage().getName() + "." + challenge;
+      try {
+        return Class.forName(className).asSubclass(AppCompatActivity.class);
+      } catch (ClassNotFoundException | ClassCastException e) {
+        throw new IllegalStateException(
+            "Story " + id + " refers to missing screen " + challenge, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,107 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.android.experienceaccessibility.auditory.AuditoryStoryMapModel;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+
+/**
+ * Starts buffering the story video of the focused carousel card, so the story screen can start
+ * playback right away when the card is tapped.
+ *
+ * <p>At most one story is preloaded at a time. Must be used from the main thread.
+ */
+public final class StoryPreloader {
+  // Don't start buffering for cards the user is only swiping past.
+  private static final long PRELOAD_DELAY_MS = 300;
+
+  private static StoryPreloader instance;
+
+  private final Context context;
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable preloadRunnable = this::preloadScheduledStory;
+  @Nullable private String scheduledStoryId;
+  @Nullable private String preloadedStoryId;
+  @Nullable private SimpleExoPlayer preloadedPlayer;
+
+  private StoryPreloader(Context context) {
+    this.context = context.getApplicationContext();
+  }
+
+  /** Returns the process wide preloader. */
+  public static StoryPreloader getInstance(Context context) {
+    if (instance == null) {
+      instance = new StoryPreloader(context);
+    }
+    return instance;
+  }
+
+  /** Schedules a preload of the given story, cancelling any other pending or finished preload. */
+  public void schedule(String storyId) {
+    if (storyId.equals(preloadedStoryId)) {
+      handler.removeCallbacks(preloadRunnable);
+      scheduledStoryId = null;
+      return;
+    }
+    cancel();
+    scheduledStoryId = storyId;
+    handler.postDelayed(preloadRunnable, PRELOAD_DELAY_MS);
+  }
+
+  /** Cancels the pending preload and gives a prepared but unclaimed player back to the pool. */
+  public void cancel() {
+    handler.removeCallbacks(preloadRunnable);
+    scheduledStoryId = null;
+    if (preloadedPlayer != null) {
+      ExoPlayerFactory.releaseExoPlayer(context, preloadedPlayer);
+      preloadedPlayer = null;
+      preloadedStoryId = null;
+    }
+  }
+
+  /**
+   * Hands over the prepared player for the given story, or returns null if that story was not
+   * preloaded. The caller owns the returned player.
+   */
+  @Nullable
+  public SimpleExoPlayer take(String storyId) {
+    if (preloadedPlayer == null || !storyId.equals(preloadedStoryId)) {
+      cancel();
+      return null;
+    }
+    SimpleExoPlayer player = preloadedPlayer;
+    preloadedPlayer = null;
+    preloadedStoryId = null;
+    return player;
+  }
+
+  private void preloadScheduledStory() {
+    AuditoryStoryMapModel storyModel =
+        StoryCatalog.getInstance(context).getStoryModel(scheduledStoryId);
+    preloadedPlayer =
+        ExoPlayerFactory.createExoPlayer(
+            context, storyModel.getSubtitlesPath(), storyModel.getVideoResourceId());
+    preloadedStoryId = scheduledStoryId;
+    scheduledStoryId = null;
+    if (storyModel.isAudioDescribed()) {
+      // Synthesis takes much longer than buffering, so start it while the card is only focused.
+      AudioDescriptionCache.getInstance(context).prepare(storyModel.getSubtitlesPath());
+    }
+  }
+}
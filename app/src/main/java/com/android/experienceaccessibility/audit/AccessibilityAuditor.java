@@ -0,0 +1,432 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.audit;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.graphics.Typeface;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.TouchDelegate;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.TextView;
+import androidx.annotation.Nullable;
+import com.android.experienceaccessibility.R;
+import com.google.android.material.shape.MaterialShapeDrawable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Checks the views of a window for low text contrast, small touch targets and missing or
+ * generic labels, and outlines the problems in an overlay.
+ *
+ * <p>The audit is incremental: only views that were laid out again, or explicitly marked with
+ * {@link #markDirty}, are checked again, together with their descendants. Must be used from the
+ * main thread.
+ */
+public final class AccessibilityAuditor
+    implements ViewTreeObserver.OnGlobalLayoutListener, View.OnLayoutChangeListener {
+  private static final String TAG = "AccessibilityAuditor";
+  private static final int MIN_TOUCH_TARGET_DP = 48;
+  private static final float LARGE_TEXT_SP = 18;
+  private static final float LARGE_BOLD_TEXT_SP = 14;
+
+  private final View rootView;
+  private final float density;
+  private final float scaledDensity;
+  private final int windowBackgroundColor;
+  private final Set<String> genericLabels = new HashSet<>();
+  private final ContrastChecker contrastChecker = new ContrastChecker();
+  private final Map<View, List<AuditIssue>> issuesByView = new WeakHashMap<>();
+  private final Set<View> observedViews = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<View> dirtyViews = new HashSet<>();
+  private final List<AuditIssue> issues = new ArrayList<>();
+  private final AuditOverlayDrawable overlay;
+  private final Runnable auditRunnable = this::auditDirtyViews;
+  private final Rect targetBounds = new Rect();
+  private final Rect delegateBounds = new Rect();
+  private final int[] location = new int[2];
+  private boolean auditScheduled = false;
+
+  private AccessibilityAuditor(View rootView) {
+    this.rootView = rootView;
+    Context context = rootView.getContext();
+    density = context.getResources().getDisplayMetrics().density;
+    scaledDensity = context.getResources().getDisplayMetrics().scaledDensity;
+    TypedValue background = new TypedValue();
+    context.getTheme().resolveAttribute(android.R.attr.colorBackground, background, true);
+    windowBackgroundColor = background.data;
+    genericLabels.add(normalize(context.getString(R.string.button_description)));
+    genericLabels.add("button");
+    genericLabels.add("image");
+    genericLabels.add("icon");
+    overlay = new AuditOverlayDrawable(context);
+  }
+
+  /** Starts auditing the window of the given activity, showing the results over it. */
+  public static AccessibilityAuditor install(Activity activity) {
+    View rootView = activity.getWindow().getDecorView();
+    AccessibilityAuditor auditor = new AccessibilityAuditor(rootView);
+    rootView.setTag(R.id.accessibility_auditor, auditor);
+    rootView.getOverlay().add(auditor.overlay);
+    ViewTreeObserver observer = rootView.getViewTreeObserver();
+    observer.addOnGlobalLayoutListener(auditor);
+    observer.addOnScrollChangedListener(auditor.overlay::invalidateSelf);
+    auditor.markDirtyInternal(rootView);
+    return auditor;
+  }
+
+  /**
+   * Marks a view whose accessibility relevant state changed without a layout pass, like its
+   * alpha or content description. Does nothing if its window is not audited.
+   */
+  public static void markDirty(View view) {
+    Object auditor = view.getRootView().getTag(R.id.accessibility_auditor);
+    if (auditor instanceof AccessibilityAuditor) {
+      ((AccessibilityAuditor) auditor).markDirtyInternal(view);
+    }
+  }
+
+  /**
+   * Sets a touch delegate on {@code delegateOwner} that extends the touch area of {@code target}
+   * to {@code bounds}, in the owner's coordinates. Before Android Q the bounds of a touch delegate
+   * can't be read back, so use this to let the auditor know about it.
+   */
+  public static void setTouchDelegate(View delegateOwner, Rect bounds, View target) {
+    target.setTag(R.id.touch_delegate_bounds, new Rect(bounds));
+    delegateOwner.setTouchDelegate(new TouchDelegate(bounds, target));
+    markDirty(target);
+  }
+
+  /** Returns the problems found by the last audit. */
+  public List<AuditIssue> getIssues() {
+    return Collections.unmodifiableList(issues);
+  }
+
+  @Override
+  public void onGlobalLayout() {
+    auditDirtyViews();
+  }
+
+  @Override
+  public void onLayoutChange(
+      View view,
+      int left,
+      int top,
+      int right,
+      int bottom,
+      int oldLeft,
+      int oldTop,
+      int oldRight,
+      int oldBottom) {
+    dirtyViews.add(view);
+  }
+
+  private void markDirtyInternal(View view) {
+    dirtyViews.add(view);
+    if (!auditScheduled) {
+      auditScheduled = true;
+      rootView.post(auditRunnable);
+    }
+  }
+
+  private void auditDirtyViews() {
+    auditScheduled = false;
+    rootView.removeCallbacks(auditRunnable);
+    if (dirtyViews.isEmpty()) {
+      return;
+    }
+    long startTimeNs = System.nanoTime();
+    int auditedCount = 0;
+    for (View view : dirtyViews) {
+      if (!hasDirtyAncestor(view) && view.isAttachedToWindow()) {
+        auditedCount += auditSubtree(view);
+      }
+    }
+    dirtyViews.clear();
+
+    issues.clear();
+    for (List<AuditIssue> viewIssues : issuesByView.values()) {
+      for (AuditIssue issue : viewIssues) {
+        if (issue.getView().isAttachedToWindow()) {
+          issues.add(issue);
+        }
+      }
+    }
+    overlay.setIssues(issues);
+    overlay.setBounds(0, 0, rootView.getWidth(), rootView.getHeight());
+    Log.d(
+        TAG,
+        "Audited "
+            + auditedCount
+            + " views in "
+            + (System.nanoTime() - startTimeNs) / 1000
+            + " us, "
+            + issues.size()
+            + " issues, luminance cache hits: "
+            + contrastChecker.getHitCount()
+            + ", misses: "
+            + contrastChecker.getMissCount());
+  }
+
+  private boolean hasDirtyAncestor(View view) {
+    for (ViewParent parent = view.getParent();
+        parent instanceof View;
+        parent = parent.getParent()) {
+      if (dirtyViews.contains(parent)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Checks a view and its descendants again, and returns how many views were checked. */
+  private int auditSubtree(View view) {
+    if (observedViews.add(view)) {
+      view.addOnLayoutChangeListener(this);
+    }
+    issuesByView.remove(view);
+    if (view.getVisibility() != View.VISIBLE) {
+      clearSubtree(view);
+      return 1;
+    }
+    List<AuditIssue> viewIssues = new ArrayList<>(0);
+    if (view != rootView) {
+      checkLabel(view, viewIssues);
+      checkTouchTarget(view, viewIssues);
+      checkContrast(view, viewIssues);
+    }
+    if (!viewIssues.isEmpty()) {
+      issuesByView.put(view, viewIssues);
+    }
+    int count = 1;
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = 0; i < group.getChildCount(); i++) {
+        count += auditSubtree(group.getChildAt(i));
+      }
+    }
+    return count;
+  }
+
+  private void clearSubtree(View view) {
+    issuesByView.remove(view);
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = 0; i < group.getChildCount(); i++) {
+        clearSubtree(group.getChildAt(i));
+      }
+    }
+  }
+
+  private static boolean isActionable(View view) {
+    return view.isEnabled()
+        && (view.isClickable() || view.isLongClickable())
+        && view.getImportantForAccessibility() != View.IMPORTANT_FOR_ACCESSIBILITY_NO
+        && view.getImportantForAccessibility()
+            != View.IMPORTANT_FOR_ACCESSIBILITY_NO_HIDE_DESCENDANTS;
+  }
+
+  private void checkLabel(View view, List<AuditIssue> out) {
+    if (!isActionable(view)) {
+      return;
+    }
+    CharSequence label = findLabel(view);
+    if (label == null) {
+      out.add(new AuditIssue(AuditIssue.Type.MISSING_LABEL, view, "No text or description"));
+    } else if (genericLabels.contains(normalize(label))) {
+      out.add(new AuditIssue(AuditIssue.Type.GENERIC_LABEL, view, "Label \"" + label + "\""));
+    }
+  }
+
+  /** Returns what a screen reader would announce for the view, or null for nothing. */
+  @Nullable
+  private static CharSequence findLabel(View view) {
+    if (view.getImportantForAccessibility()
+        == View.IMPORTANT_FOR_ACCESSIBILITY_NO_HIDE_DESCENDANTS) {
+      return null;
+    }
+    CharSequence description = view.getContentDescription();
+    if (description != null && description.length() > 0) {
+      return description;
+    }
+    if (view instanceof TextView) {
+      CharSequence text = ((TextView) view).getText();
+      if (text != null && text.length() > 0) {
+        return text;
+      }
+    }
+    if (view instanceof ViewGroup) {
+      ViewGroup group = (ViewGroup) view;
+      for (int i = 0; i < group.getChildCount(); i++) {
+        View child = group.getChildAt(i);
+        CharSequence childLabel =
+            child.getVisibility() == View.VISIBLE && !isActionable(child) ? findLabel(child) : null;
+        if (childLabel != null) {
+          return childLabel;
+        }
+      }
+    }
+    return null;
+  }
+
+  private void checkTouchTarget(View view, List<AuditIssue> out) {
+    if (!isActionable(view)) {
+      return;
+    }
+    view.getLocationInWindow(location);
+    targetBounds.set(
+        location[0], location[1], location[0] + view.getWidth(), location[1] + view.getHeight());
+    for (ViewParent parent = view.getParent();
+        parent instanceof View;
+        parent = parent.getParent()) {
+      View owner = (View) parent;
+      TouchDelegate touchDelegate = owner.getTouchDelegate();
+      if (touchDelegate != null && getDelegateBounds(owner, touchDelegate, view)) {
+        owner.getLocationInWindow(location);
+        delegateBounds.offset(location[0], location[1]);
+        targetBounds.union(delegateBounds);
+      }
+    }
+    int minSizePx = (int) (MIN_TOUCH_TARGET_DP * density);
+    if (targetBounds.width() < minSizePx || targetBounds.height() < minSizePx) {
+      out.add(
+          new AuditIssue(
+              AuditIssue.Type.SMALL_TOUCH_TARGET,
+              view,
+              Math.round(targetBounds.width() / density)
+                  + " x "
+                  + Math.round(targetBounds.height() / density)
+                  + " dp"));
+    }
+  }
+
+  /**
+   * Puts the area of {@code touchDelegate} that forwards to {@code target}, in the owner's
+   * coordinates, into {@link #delegateBounds}. Returns false if it doesn't forward to the target.
+   */
+  private boolean getDelegateBounds(View owner, TouchDelegate touchDelegate, View target) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+      AccessibilityNodeInfo.TouchDelegateInfo info = touchDelegate.getTouchDelegateInfo();
+      for (int i = 0; i < info.getRegionCount(); i++) {
+        Region region = info.getRegionAt(i);
+        if (info.getTargetForRegion(region) == target) {
+          delegateBounds.set(region.getBounds());
+          return true;
+        }
+      }
+      return false;
+    }
+    Object bounds = target.getTag(R.id.touch_delegate_bounds);
+    if (bounds instanceof Rect && target.getParent() == owner) {
+      delegateBounds.set((Rect) bounds);
+      return true;
+    }
+    return false;
+  }
+
+  private void checkContrast(View view, List<AuditIssue> out) {
+    if (!(view instanceof TextView)) {
+      return;
+    }
+    TextView textView = (TextView) view;
+    if (textView.getText() == null || textView.getText().length() == 0) {
+      return;
+    }
+    Integer background = findBackgroundColor(view);
+    if (background == null) {
+      return;
+    }
+    float alpha = 1;
+    for (View current = view; ; current = (View) current.getParent()) {
+      alpha *= current.getAlpha();
+      if (!(current.getParent() instanceof View)) {
+        break;
+      }
+    }
+    double ratio =
+        contrastChecker.getContrastRatio(textView.getCurrentTextColor(), alpha, background);
+    double minRatio =
+        isLargeText(textView)
+            ? ContrastChecker.MIN_RATIO_LARGE_TEXT
+            : ContrastChecker.MIN_RATIO_NORMAL_TEXT;
+    if (ratio < minRatio) {
+      out.add(
+          new AuditIssue(
+              AuditIssue.Type.LOW_CONTRAST,
+              view,
+              String.format(Locale.US, "Contrast %.2f:1, needs %.1f:1", ratio, minRatio)));
+    }
+  }
+
+  private boolean isLargeText(TextView textView) {
+    float sizeSp = textView.getTextSize() / scaledDensity;
+    Typeface typeface = textView.getTypeface();
+    boolean bold = typeface != null && typeface.isBold();
+    return sizeSp >= LARGE_TEXT_SP || (bold && sizeSp >= LARGE_BOLD_TEXT_SP);
+  }
+
+  /**
+   * Returns the opaque color the view is drawn over, or null if the nearest background is not a
+   * plain color.
+   */
+  @Nullable
+  private Integer findBackgroundColor(View view) {
+    for (View current = view; ; current = (View) current.getParent()) {
+      Drawable background = current.getBackground();
+      if (background instanceof ColorDrawable) {
+        int color = ((ColorDrawable) background).getColor();
+        if ((color >>> 24) == 0xFF) {
+          return color;
+        }
+      } else if (background != null) {
+        // Shapes and ripples are usually a single tinted color; anything else can't be checked.
+        ColorStateList tint =
+            background instanceof MaterialShapeDrawable
+                ? ((MaterialShapeDrawable) background).getFillColor()
+                : current.getBackgroundTintList();
+        int color =
+            tint == null
+                ? Color.TRANSPARENT
+                : tint.getColorForState(current.getDrawableState(), Color.TRANSPARENT);
+        return (color >>> 24) == 0xFF ? color : null;
+      }
+      if (!(current.getParent() instanceof View)) {
+        return windowBackgroundColor | 0xFF000000;
+      }
+    }
+  }
+
+  private static String normalize(CharSequence label) {
+    return label.toString().trim().toLowerCase(Locale.US);
+  }
+}
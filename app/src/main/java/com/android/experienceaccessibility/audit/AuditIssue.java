@@ -0,0 +1,59 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.audit;
+
+import android.view.View;
+
+/** A single accessibility problem found on a view. */
+public final class AuditIssue {
+  /** Kinds of problems the auditor looks for. */
+  public enum Type {
+    /** Text contrast below WCAG 2.1 level AA. */
+    LOW_CONTRAST,
+    /** Actionable area smaller than 48 x 48 dp, even with a touch delegate. */
+    SMALL_TOUCH_TARGET,
+    /** Actionable view with no text or content description. */
+    MISSING_LABEL,
+    /** Label that doesn't tell the user what the view does, like "button". */
+    GENERIC_LABEL
+  }
+
+  private final Type type;
+  private final View view;
+  private final String message;
+
+  AuditIssue(Type type, View view, String message) {
+    this.type = type;
+    this.view = view;
+    this.message = message;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public View getView() {
+    return view;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return type + " on " + view.getClass().getSimpleName() + ": " + message;
+  }
+}
@@ -0,0 +1,104 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.audit;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Outlines the views with accessibility issues, colored by type, over the whole window. */
+final class AuditOverlayDrawable extends Drawable {
+  private static final float STROKE_WIDTH_DP = 2;
+  private static final float TEXT_SIZE_SP = 12;
+  private static final int[] TYPE_COLORS = {
+    Color.MAGENTA, // LOW_CONTRAST
+    Color.rgb(0xFF, 0x8F, 0x00), // SMALL_TOUCH_TARGET
+    Color.RED, // MISSING_LABEL
+    Color.rgb(0xD5, 0x00, 0xF9), // GENERIC_LABEL
+  };
+
+  private final List<AuditIssue> issues = new ArrayList<>();
+  private final Paint outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final int[] location = new int[2];
+  private final float strokeWidth;
+  private int alpha = 0xFF;
+
+  AuditOverlayDrawable(Context context) {
+    float density = context.getResources().getDisplayMetrics().density;
+    strokeWidth = STROKE_WIDTH_DP * density;
+    outlinePaint.setStyle(Paint.Style.STROKE);
+    outlinePaint.setStrokeWidth(strokeWidth);
+    labelPaint.setTextSize(TEXT_SIZE_SP * context.getResources().getDisplayMetrics().scaledDensity);
+  }
+
+  void setIssues(List<AuditIssue> newIssues) {
+    issues.clear();
+    issues.addAll(newIssues);
+    invalidateSelf();
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas) {
+    for (int i = 0; i < issues.size(); i++) {
+      AuditIssue issue = issues.get(i);
+      View view = issue.getView();
+      if (!view.isShown()) {
+        continue;
+      }
+      int color = TYPE_COLORS[issue.getType().ordinal()];
+      outlinePaint.setColor(color);
+      outlinePaint.setAlpha(alpha);
+      labelPaint.setColor(color);
+      labelPaint.setAlpha(alpha);
+      view.getLocationInWindow(location);
+      float left = location[0] + strokeWidth / 2;
+      float top = location[1] + strokeWidth / 2;
+      canvas.drawRect(
+          left,
+          top,
+          location[0] + view.getWidth() - strokeWidth / 2,
+          location[1] + view.getHeight() - strokeWidth / 2,
+          outlinePaint);
+      canvas.drawText(issue.getMessage(), left, top - labelPaint.descent(), labelPaint);
+    }
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    this.alpha = alpha;
+    invalidateSelf();
+  }
+
+  @Override
+  public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    outlinePaint.setColorFilter(colorFilter);
+    labelPaint.setColorFilter(colorFilter);
+  }
+
+  @Override
+  public int getOpacity() {
+    return PixelFormat.TRANSLUCENT;
+  }
+}
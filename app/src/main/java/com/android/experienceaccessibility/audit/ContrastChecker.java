@@ -0,0 +1,101 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.audit;
+
+import android.graphics.Color;
+import java.util.Arrays;
+
+/**
+ * Computes WCAG 2.1 contrast ratios. Relative luminances are kept in a small direct mapped cache,
+ * since a screen only uses a handful of colors.
+ *
+ * <p>Not thread safe.
+ */
+final class ContrastChecker {
+  /** Minimum ratio for normal text at level AA. */
+  static final double MIN_RATIO_NORMAL_TEXT = 4.5;
+  /** Minimum ratio for large text at level AA. */
+  static final double MIN_RATIO_LARGE_TEXT = 3;
+
+  private static final int CACHE_SIZE = 256;
+  private static final double[] CHANNEL_TO_LINEAR = new double[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      double value = i / 255.0;
+      CHANNEL_TO_LINEAR[i] =
+          value <= 0.03928 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+    }
+  }
+
+  private final int[] cachedColors = new int[CACHE_SIZE];
+  private final double[] cachedLuminances = new double[CACHE_SIZE];
+  private int hitCount = 0;
+  private int missCount = 0;
+
+  ContrastChecker() {
+    // Only opaque colors are looked up, so transparent marks an empty slot.
+    Arrays.fill(cachedColors, Color.TRANSPARENT);
+  }
+
+  /**
+   * Returns the contrast ratio of {@code foreground}, drawn with its own alpha times {@code
+   * alpha}, over the opaque {@code background}.
+   */
+  double getContrastRatio(int foreground, float alpha, int background) {
+    int blended = blend(foreground, Color.alpha(foreground) / 255f * alpha, background);
+    double foregroundLuminance = getLuminance(blended);
+    double backgroundLuminance = getLuminance(background | 0xFF000000);
+    double lighter = Math.max(foregroundLuminance, backgroundLuminance);
+    double darker = Math.min(foregroundLuminance, backgroundLuminance);
+    return (lighter + 0.05) / (darker + 0.05);
+  }
+
+  /** Returns the relative luminance of an opaque color. */
+  double getLuminance(int color) {
+    int slot = (color ^ (color >>> 8) ^ (color >>> 16)) & (CACHE_SIZE - 1);
+    if (cachedColors[slot] == color) {
+      hitCount++;
+      return cachedLuminances[slot];
+    }
+    missCount++;
+    double luminance =
+        0.2126 * CHANNEL_TO_LINEAR[Color.red(color)]
+            + 0.7152 * CHANNEL_TO_LINEAR[Color.green(color)]
+            + 0.0722 * CHANNEL_TO_LINEAR[Color.blue(color)];
+    cachedColors[slot] = color;
+    cachedLuminances[slot] = luminance;
+    return luminance;
+  }
+
+  int getHitCount() {
+    return hitCount;
+  }
+
+  int getMissCount() {
+    return missCount;
+  }
+
+  private static int blend(int foreground, float alpha, int background) {
+    return Color.rgb(
+        blendChannel(Color.red(foreground), Color.red(background), alpha),
+        blendChannel(Color.green(foreground), Color.green(background), alpha),
+        blendChannel(Color.blue(foreground), Color.blue(background), alpha));
+  }
+
+  private static int blendChannel(int foreground, int background, float alpha) {
+    return Math.round(foreground * alpha + background * (1 - alpha));
+  }
+}
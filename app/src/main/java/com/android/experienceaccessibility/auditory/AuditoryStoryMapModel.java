@@ -21,12 +21,17 @@ public final class AuditoryStoryMapModel {
   private final String subtitlesPath;
   private final int videoResourceId;
   private final Class<? extends AppCompatActivity> clazz;
+  private final boolean audioDescribed;
 
   public AuditoryStoryMapModel(
-      String subtitlesPath, int videoResourceId, Class<? extends AppCompatActivity> clazz) {
+      String subtitlesPath,
+      int videoResourceId,
+      Class<? extends AppCompatActivity> clazz,
+      boolean audioDescribed) {
     this.subtitlesPath = subtitlesPath;
     this.videoResourceId = videoResourceId;
     this.clazz = clazz;
+    this.audioDescribed = audioDescribed;
   }
 
   public String getSubtitlesPath() {
@@ -40,4 +45,9 @@ public final class AuditoryStoryMapModel {
   public Class<? extends AppCompatActivity> getClazz() {
     return clazz;
   }
+
+  /** Whether the subtitles are also spoken over the video, for viewers who cannot read them. */
+  public boolean isAudioDescribed() {
+    return audioDescribed;
+  }
 }
@@ -0,0 +1,130 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.auditory;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.View;
+import androidx.annotation.Nullable;
+import androidx.appcompat.content.res.AppCompatResources;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+import com.android.experienceaccessibility.R;
+
+/**
+ * Row of dots under the carousel, the current page's highlighted. All dots are drawn by this one
+ * view, and at most {@link #MAX_DOTS} of them around the current page, so its cost doesn't grow
+ * with the number of pages.
+ */
+public final class CarouselDotIndicator extends View {
+  private static final int MAX_DOTS = 9;
+  private static final float DOT_SIZE_DP = 12;
+  private static final float DOT_SPACING_DP = 40;
+  private static final float HEIGHT_DP = 48;
+  private static final int[] SELECTED_STATE = {android.R.attr.state_selected};
+  private static final int[] DEFAULT_STATE = {};
+
+  private final Drawable dot;
+  private final int dotSize;
+  private final int dotSpacing;
+  private final int preferredHeight;
+  private int pageCount;
+  private int currentPage;
+
+  public CarouselDotIndicator(Context context) {
+    this(context, null);
+  }
+
+  public CarouselDotIndicator(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+    dot = AppCompatResources.getDrawable(context, R.drawable.selector_tab_indicator_dot);
+    float density = getResources().getDisplayMetrics().density;
+    dotSize = Math.round(DOT_SIZE_DP * density);
+    dotSpacing = Math.round(DOT_SPACING_DP * density);
+    preferredHeight = Math.round(HEIGHT_DP * density);
+  }
+
+  /** Follows the pager's current page and its adapter's page count. */
+  public void attachTo(ViewPager2 viewPager) {
+    RecyclerView.Adapter<?> adapter = viewPager.getAdapter();
+    adapter.registerAdapterDataObserver(
+        new RecyclerView.AdapterDataObserver() {
+          @Override
+          public void onChanged() {
+            setPages(adapter.getItemCount(), viewPager.getCurrentItem());
+          }
+
+          @Override
+          public void onItemRangeInserted(int positionStart, int itemCount) {
+            onChanged();
+          }
+
+          @Override
+          public void onItemRangeRemoved(int positionStart, int itemCount) {
+            onChanged();
+          }
+        });
+    viewPager.registerOnPageChangeCallback(
+        new ViewPager2.OnPageChangeCallback() {
+          @Override
+          public void onPageSelected(int position) {
+            setPages(pageCount, position);
+          }
+        });
+    setPages(adapter.getItemCount(), viewPager.getCurrentItem());
+  }
+
+  private void setPages(int pageCount, int currentPage) {
+    if (pageCount == this.pageCount && currentPage == this.currentPage) {
+      return;
+    }
+    this.pageCount = pageCount;
+    this.currentPage = currentPage;
+    setContentDescription(
+        pageCount == 0
+            ? null
+            : getResources()
+                .getString(
+                    R.string.carousel_dot_indicator_description, currentPage + 1, pageCount));
+    invalidate();
+  }
+
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    setMeasuredDimension(
+        resolveSize(MAX_DOTS * dotSpacing, widthMeasureSpec),
+        resolveSize(preferredHeight, heightMeasureSpec));
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    int dotCount = Math.min(pageCount, MAX_DOTS);
+    if (dotCount == 0) {
+      return;
+    }
+    // The window of dots keeps the current page in its middle, except near either end.
+    int firstPage = Math.max(0, Math.min(currentPage - dotCount / 2, pageCount - dotCount));
+    int left = (getWidth() - dotCount * dotSpacing + dotSpacing - dotSize) / 2;
+    int top = (getHeight() - dotSize) / 2;
+    for (int i = 0; i < dotCount; i++) {
+      dot.setState(firstPage + i == currentPage ? SELECTED_STATE : DEFAULT_STATE);
+      dot.setBounds(left, top, left + dotSize, top + dotSize);
+      dot.draw(canvas);
+      left += dotSpacing;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.auditory;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes carousel card images in the background, downsampled to roughly the card size, and keeps
+ * them in a memory bounded cache that shrinks when the system is low on memory.
+ */
+public final class CarouselImageLoader implements ComponentCallbacks2 {
+  private static final String TAG = "CarouselImageLoader";
+  // Horizontal and vertical padding of the landing ViewPager around each card.
+  private static final int CARD_HORIZONTAL_INSET_DP = 72;
+  private static final int CARD_VERTICAL_INSET_DP = 208;
+  private static final int DECODE_THREADS = 2;
+
+  private static CarouselImageLoader instance;
+
+  private final Resources resources;
+  private final LruCache<Integer, Bitmap> cache;
+  private final ExecutorService executor = Executors.newFixedThreadPool(DECODE_THREADS);
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final int targetWidth;
+  private final int targetHeight;
+
+  private CarouselImageLoader(Context context) {
+    resources = context.getResources();
+    DisplayMetrics metrics = resources.getDisplayMetrics();
+    targetWidth = metrics.widthPixels - (int) (CARD_HORIZONTAL_INSET_DP * metrics.density);
+    targetHeight = metrics.heightPixels - (int) (CARD_VERTICAL_INSET_DP * metrics.density);
+
+    ActivityManager activityManager =
+        (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+    // An eighth of the app's heap, in kilobytes.
+    int maxSizeKb = activityManager.getMemoryClass() * 1024 / 8;
+    cache =
+        new LruCache<Integer, Bitmap>(maxSizeKb) {
+          @Override
+          protected int sizeOf(Integer key, Bitmap bitmap) {
+            return bitmap.getAllocationByteCount() / 1024;
+          }
+        };
+    context.registerComponentCallbacks(this);
+  }
+
+  /** Returns the app wide loader. */
+  public static synchronized CarouselImageLoader getInstance(Context context) {
+    if (instance == null) {
+      instance = new CarouselImageLoader(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Shows the image in the view, right away if it is cached and otherwise once it is decoded.
+   * Must be called from the main thread.
+   */
+  public void load(@DrawableRes int resId, ImageView imageView) {
+    imageView.setTag(resId);
+    Bitmap cached = cache.get(resId);
+    if (cached != null) {
+      imageView.setImageBitmap(cached);
+      return;
+    }
+    imageView.setImageDrawable(null);
+    executor.execute(
+        () -> {
+          Bitmap bitmap = decode(resId);
+          mainHandler.post(
+              () -> {
+                // The view may have been recycled for another card in the meantime.
+                if (Integer.valueOf(resId).equals(imageView.getTag())) {
+                  imageView.setImageBitmap(bitmap);
+                }
+              });
+        });
+  }
+
+  /** Decodes the image into the cache in the background, for a card about to be shown. */
+  public void prefetch(@DrawableRes int resId) {
+    if (cache.get(resId) == null) {
+      executor.execute(() -> preload(resId));
+    }
+  }
+
+  /** Decodes the image into the cache if it is not there yet. */
+  @WorkerThread
+  public void preload(@DrawableRes int resId) {
+    if (cache.get(resId) == null) {
+      decode(resId);
+    }
+  }
+
+  /** Returns the decoded image, or null if it could not be decoded. */
+  @Nullable
+  private Bitmap decode(@DrawableRes int resId) {
+    BitmapFactory.Options options = new BitmapFactory.Options();
+    // Density scaling would only scale the hdpi images up again.
+    options.inScaled = false;
+    options.inJustDecodeBounds = true;
+    BitmapFactory.decodeResource(resources, resId, options);
+    options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight);
+    options.inJustDecodeBounds = false;
+    Bitmap bitmap = BitmapFactory.decodeResource(resources, resId, options);
+    if (bitmap == null) {
+      Log.w(TAG, "Cannot decode " + resources.getResourceEntryName(resId));
+      return null;
+    }
+    cache.put(resId, bitmap);
+    return bitmap;
+  }
+
+  /** Largest power of two that keeps the image at least as large as the card. */
+  private int calculateSampleSize(int width, int height) {
+    int sampleSize = 1;
+    while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+      sampleSize *= 2;
+    }
+    return sampleSize;
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_BACKGROUND) {
+      cache.evictAll();
+    } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      cache.trimToSize(cache.maxSize() / 2);
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    cache.evictAll();
+  }
+
+  @Override
+  public void onConfigurationChanged(@NonNull Configuration newConfig) {}
+}
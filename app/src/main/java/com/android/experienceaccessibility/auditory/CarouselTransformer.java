@@ -17,38 +17,173 @@ package com.android.experienceaccessibility.auditory;
 import android.content.Context;
 import androidx.core.view.ViewCompat;
 import android.view.View;
-import androidx.viewpager.widget.ViewPager;
-import androidx.viewpager.widget.ViewPager.PageTransformer;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
+import androidx.viewpager2.widget.ViewPager2.PageTransformer;
+import com.android.experienceaccessibility.R;
 
-/** Provides the pan-zoom effect when swiping to new page. */
+/**
+ * Provides the pan-zoom effect when swiping to new page.
+ *
+ * <p>In frame budgeted mode, pages are drawn from hardware layers while the carousel moves, the
+ * pager's dimensions are only read again after it is laid out, properties are only written when
+ * they change, and the elevation that puts the centre page on top is only updated when the
+ * carousel comes to rest.
+ */
 public final class CarouselTransformer implements PageTransformer {
 
   public static final int MAX_TRANSLATE_OFFSET_X_DIP = 180;
+  private static final float OFFSET_RATE_FACTOR = 0.38f;
+  // Changes smaller than these can't be seen, so aren't worth a property write.
+  private static final float MIN_SCALE_CHANGE = 0.0005f;
+  private static final float MIN_TRANSLATION_CHANGE_PX = 0.5f;
+
   private final int maxTranslateOffsetX;
-  private ViewPager viewPager;
+  private final boolean frameBudgeted;
+  // The pager's own recycler view, which holds the pages and the side padding.
+  private RecyclerView pageContainer;
+  private int pagerWidth = 0;
+  private int pagerClientWidth = 0;
+  private int scrollState = ViewPager2.SCROLL_STATE_IDLE;
+  private long propertyWriteCount = 0;
 
   public CarouselTransformer(Context context) {
+    this(context, /* frameBudgeted= */ false);
+  }
+
+  public CarouselTransformer(Context context, boolean frameBudgeted) {
     this.maxTranslateOffsetX = dp2px(context, MAX_TRANSLATE_OFFSET_X_DIP);
+    this.frameBudgeted = frameBudgeted;
+  }
+
+  /**
+   * Sets this as the pager's transformer. In frame budgeted mode, also follows the pager's scroll
+   * state and layout.
+   */
+  public void attachTo(ViewPager2 viewPager) {
+    pageContainer = (RecyclerView) viewPager.getChildAt(0);
+    viewPager.setPageTransformer(this);
+    pageContainer.addOnLayoutChangeListener(
+        (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+          pagerWidth = 0;
+          pagerClientWidth = 0;
+        });
+    if (!frameBudgeted) {
+      return;
+    }
+    viewPager.registerOnPageChangeCallback(
+        new ViewPager2.OnPageChangeCallback() {
+          @Override
+          public void onPageScrollStateChanged(int state) {
+            int previousState = scrollState;
+            scrollState = state;
+            if (state == ViewPager2.SCROLL_STATE_IDLE) {
+              onSettled();
+            } else if (previousState == ViewPager2.SCROLL_STATE_IDLE) {
+              setPageLayers(View.LAYER_TYPE_HARDWARE);
+            }
+          }
+        });
+  }
+
+  /** Returns how many page properties were written, for measuring the cost of a swipe. */
+  public long getPropertyWriteCount() {
+    return propertyWriteCount;
   }
 
   @Override
   public void transformPage(View view, float position) {
-    if (viewPager == null) {
-      viewPager = (ViewPager) view.getParent();
+    if (pagerWidth == 0) {
+      pagerWidth = pageContainer.getWidth();
+      pagerClientWidth =
+          pagerWidth - pageContainer.getPaddingLeft() - pageContainer.getPaddingRight();
+      if (pagerWidth == 0) {
+        return;
+      }
     }
-
-    int leftInScreen = view.getLeft() - viewPager.getScrollX();
-    int centerXInViewPager = leftInScreen + view.getMeasuredWidth() / 2;
-    int offsetX = centerXInViewPager - viewPager.getMeasuredWidth() / 2;
-    float offsetRate = (float) offsetX * 0.38f / viewPager.getMeasuredWidth();
+    // The side padding is symmetric, so a page's centre is this far from the pager's centre.
+    float offsetRate = position * pagerClientWidth * OFFSET_RATE_FACTOR / pagerWidth;
     float scaleFactor = 1 - Math.abs(offsetRate);
+    float translationX = -maxTranslateOffsetX * offsetRate;
+
+    if (!frameBudgeted) {
+      if (scaleFactor > 0) {
+        view.setScaleX(scaleFactor);
+        view.setScaleY(scaleFactor);
+        view.setTranslationX(translationX);
+        propertyWriteCount += 3;
+      }
+      ViewCompat.setElevation(view, scaleFactor);
+      propertyWriteCount++;
+      return;
+    }
 
+    PageState state = getPageState(view);
+    // Pages added to the pager while it moves, or recycled since, have the wrong layer.
+    int layerType =
+        scrollState == ViewPager2.SCROLL_STATE_IDLE
+            ? View.LAYER_TYPE_NONE
+            : View.LAYER_TYPE_HARDWARE;
+    if (view.getLayerType() != layerType) {
+      view.setLayerType(layerType, /* paint= */ null);
+    }
     if (scaleFactor > 0) {
-      view.setScaleX(scaleFactor);
-      view.setScaleY(scaleFactor);
-      view.setTranslationX(-maxTranslateOffsetX * offsetRate);
+      if (Math.abs(scaleFactor - state.scale) >= MIN_SCALE_CHANGE) {
+        view.setScaleX(scaleFactor);
+        view.setScaleY(scaleFactor);
+        state.scale = scaleFactor;
+        propertyWriteCount += 2;
+      }
+      if (Math.abs(translationX - state.translationX) >= MIN_TRANSLATION_CHANGE_PX) {
+        view.setTranslationX(translationX);
+        state.translationX = translationX;
+        propertyWriteCount++;
+      }
+    }
+    if (scrollState == ViewPager2.SCROLL_STATE_IDLE) {
+      // Pages laid out while the carousel rests.
+      setElevation(view, state, scaleFactor);
+    }
+  }
+
+  /** Drops the layers and puts the page closest to the centre on top. */
+  private void onSettled() {
+    setPageLayers(View.LAYER_TYPE_NONE);
+    if (pagerWidth == 0) {
+      return;
+    }
+    for (int i = 0; i < pageContainer.getChildCount(); i++) {
+      View page = pageContainer.getChildAt(i);
+      int offsetX = page.getLeft() + page.getWidth() / 2 - pagerWidth / 2;
+      float scaleFactor = 1 - Math.abs((float) offsetX * OFFSET_RATE_FACTOR / pagerWidth);
+      setElevation(page, getPageState(page), scaleFactor);
+    }
+  }
+
+  private void setPageLayers(int layerType) {
+    for (int i = 0; i < pageContainer.getChildCount(); i++) {
+      View page = pageContainer.getChildAt(i);
+      if (page.getLayerType() != layerType) {
+        page.setLayerType(layerType, /* paint= */ null);
+      }
+    }
+  }
+
+  private void setElevation(View view, PageState state, float elevation) {
+    if (elevation != state.elevation) {
+      ViewCompat.setElevation(view, elevation);
+      state.elevation = elevation;
+      propertyWriteCount++;
     }
-    ViewCompat.setElevation(view, scaleFactor);
+  }
+
+  private static PageState getPageState(View view) {
+    PageState state = (PageState) view.getTag(R.id.carousel_page_state);
+    if (state == null) {
+      state = new PageState(view);
+      view.setTag(R.id.carousel_page_state, state);
+    }
+    return state;
   }
 
   /** Dp to pixel conversion */
@@ -56,4 +191,17 @@ public final class CarouselTransformer implements PageTransformer {
     float m = context.getResources().getDisplayMetrics().density;
     return (int) (dipValue * m + 0.5f);
   }
+
+  /** What was last written to a page, so unchanged values aren't written again. */
+  private static final class PageState {
+    private float scale;
+    private float translationX;
+    private float elevation;
+
+    private PageState(View view) {
+      scale = view.getScaleX();
+      translationX = view.getTranslationX();
+      elevation = ViewCompat.getElevation(view);
+    }
+  }
 }
@@ -14,10 +14,21 @@
 
 package com.android.experienceaccessibility.common;
 
+import com.android.experienceaccessibility.BuildConfig;
+
 /** Common project constants. */
 public final class Constants {
+  /** Shortest time the splash screen is shown, even if warm-up finishes earlier. */
+  public static final int SPLASH_SCREEN_MIN_TIME = 500;
+  /** Longest time the splash screen waits for warm-up to finish. */
   public static final int SPLASH_SCREEN_TIME_OUT = 2000;
   public static final int BLACK_BACKGROUND = -1;
+  /** Whether the challenge screens show the live accessibility audit overlay. */
+  public static final boolean ACCESSIBILITY_AUDIT_ENABLED = BuildConfig.DEBUG;
+  /** Whether frame times are recorded, and shown over every screen. */
+  public static final boolean FRAME_METRICS_ENABLED = BuildConfig.DEBUG;
+  /** Whether playback sessions are written to a file; their totals are logged either way. */
+  public static final boolean PLAYBACK_METRICS_FILE_ENABLED = BuildConfig.DEBUG;
 
   private Constants() {}
 }
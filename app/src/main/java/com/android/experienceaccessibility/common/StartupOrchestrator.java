@@ -0,0 +1,150 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.common;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a dependency graph of warm-up tasks, in parallel on a background pool or on the main thread
+ * where a task needs it, and reports when all critical tasks are done. Every task's duration is
+ * logged.
+ *
+ * <p>Tasks that throw are logged and count as finished, so a failed warm-up never blocks startup.
+ */
+public final class StartupOrchestrator {
+  private static final String TAG = "StartupOrchestrator";
+
+  private final Map<String, Task> tasks = new LinkedHashMap<>();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final AtomicInteger remainingTasks = new AtomicInteger();
+  private final AtomicInteger remainingCriticalTasks = new AtomicInteger();
+  private ExecutorService executor;
+  private Runnable onCriticalTasksFinished;
+  private long startTimeMs;
+
+  /**
+   * Adds a task. Its dependencies must have been added before it.
+   *
+   * @param critical whether the app has to wait for this task before moving on
+   * @param onMainThread whether the task has to run on the main thread
+   */
+  public StartupOrchestrator addTask(
+      String name, boolean critical, boolean onMainThread, Runnable work, String... dependencies) {
+    Task task = new Task(name, critical, onMainThread, work, dependencies.length);
+    for (String dependency : dependencies) {
+      Task dependencyTask = tasks.get(dependency);
+      if (dependencyTask == null) {
+        throw new IllegalArgumentException(name + " depends on unknown task " + dependency);
+      }
+      dependencyTask.dependents.add(task);
+    }
+    tasks.put(name, task);
+    return this;
+  }
+
+  /**
+   * Starts every task whose dependencies are met. {@code onCriticalTasksFinished} is posted to
+   * the main thread once all critical tasks have finished. Must be called from the main thread.
+   */
+  public void start(Runnable onCriticalTasksFinished) {
+    this.onCriticalTasksFinished = onCriticalTasksFinished;
+    startTimeMs = SystemClock.elapsedRealtime();
+    executor =
+        Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+    remainingTasks.set(tasks.size());
+    int criticalTasks = 0;
+    List<Task> readyTasks = new ArrayList<>();
+    for (Task task : tasks.values()) {
+      if (task.critical) {
+        criticalTasks++;
+      }
+      if (task.remainingDependencies.get() == 0) {
+        readyTasks.add(task);
+      }
+    }
+    remainingCriticalTasks.set(criticalTasks);
+    if (criticalTasks == 0) {
+      mainHandler.post(onCriticalTasksFinished);
+    }
+    for (Task task : readyTasks) {
+      submit(task);
+    }
+  }
+
+  private void submit(Task task) {
+    if (task.onMainThread) {
+      mainHandler.post(() -> run(task));
+    } else {
+      executor.execute(() -> run(task));
+    }
+  }
+
+  private void run(Task task) {
+    long taskStartTimeMs = SystemClock.elapsedRealtime();
+    try {
+      task.work.run();
+    } catch (RuntimeException e) {
+      Log.w(TAG, "Startup task " + task.name + " failed", e);
+    }
+    long finishTimeMs = SystemClock.elapsedRealtime();
+    Log.d(
+        TAG,
+        task.name
+            + " took " + (finishTimeMs - taskStartTimeMs) + " ms on "
+            + Thread.currentThread().getName()
+            + ", finished at " + (finishTimeMs - startTimeMs) + " ms");
+
+    for (Task dependent : task.dependents) {
+      if (dependent.remainingDependencies.decrementAndGet() == 0) {
+        submit(dependent);
+      }
+    }
+    if (task.critical && remainingCriticalTasks.decrementAndGet() == 0) {
+      Log.d(TAG, "Critical tasks finished at " + (finishTimeMs - startTimeMs) + " ms");
+      mainHandler.post(onCriticalTasksFinished);
+    }
+    if (remainingTasks.decrementAndGet() == 0) {
+      executor.shutdown();
+    }
+  }
+
+  private static final class Task {
+    private final String name;
+    private final boolean critical;
+    private final boolean onMainThread;
+    private final Runnable work;
+    private final AtomicInteger remainingDependencies;
+    private final List<Task> dependents = new ArrayList<>();
+
+    private Task(
+        String name, boolean critical, boolean onMainThread, Runnable work, int dependencies) {
+      this.name = name;
+      this.critical = critical;
+      this.onMainThread = onMainThread;
+      this.work = work;
+      this.remainingDependencies = new AtomicInteger(dependencies);
+    }
+  }
+}
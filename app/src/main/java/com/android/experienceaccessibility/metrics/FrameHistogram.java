@@ -0,0 +1,85 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of frame durations in half millisecond buckets. Recording is a couple of
+ * atomic increments, so frames can be recorded from any thread while others read.
+ */
+final class FrameHistogram {
+  static final int BUCKET_WIDTH_US = 500;
+  /** The last bucket counts every frame of 100 ms or longer. */
+  static final int BUCKET_COUNT = 201;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong jankCount = new AtomicLong();
+  private final String name;
+
+  FrameHistogram(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /** Counts a frame, and whether it missed its deadline. */
+  void record(long durationNs, boolean janky) {
+    long bucket = durationNs / (BUCKET_WIDTH_US * 1000L);
+    buckets.incrementAndGet((int) Math.min(bucket, BUCKET_COUNT - 1));
+    if (janky) {
+      jankCount.incrementAndGet();
+    }
+  }
+
+  long getJankCount() {
+    return jankCount.get();
+  }
+
+  /**
+   * Copies the bucket counts into {@code counts}, which must hold {@link #BUCKET_COUNT} values, and
+   * returns the number of frames.
+   */
+  long snapshot(long[] counts) {
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    return total;
+  }
+
+  /**
+   * Returns the upper edge, in milliseconds, of the bucket holding the given percentile of a
+   * snapshot, or 0 if it is empty.
+   */
+  static float percentileMs(long[] counts, long total, double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return (i + 1) * BUCKET_WIDTH_US / 1000f;
+      }
+    }
+    return BUCKET_COUNT * BUCKET_WIDTH_US / 1000f;
+  }
+}
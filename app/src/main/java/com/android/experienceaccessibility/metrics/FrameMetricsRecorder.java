@@ -0,0 +1,263 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.metrics;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.Window;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Records the duration of every frame of every activity, and of every interaction in progress,
+ * into {@link FrameHistogram}s. Summaries of the frames since the previous batch are appended to a
+ * CSV file in the app's files directory every so often while an activity is started, and the
+ * totals are optionally shown over each activity.
+ *
+ * <p>Nothing is registered unless {@link #install} is called, and the static interaction methods
+ * return right away in that case.
+ */
+public final class FrameMetricsRecorder
+    implements Application.ActivityLifecycleCallbacks, Window.OnFrameMetricsAvailableListener {
+  private static final String TAG = "FrameMetricsRecorder";
+  private static final String FILE_NAME = "frame_metrics.csv";
+  private static final long FLUSH_INTERVAL_MS = 30_000;
+  private static final long OVERLAY_UPDATE_INTERVAL_MS = 500;
+  private static final float DEFAULT_REFRESH_RATE = 60;
+
+  private static volatile FrameMetricsRecorder instance;
+
+  private final File file;
+  private final boolean showOverlay;
+  // Frame metrics arrive and batches are written on this thread.
+  private final Handler metricsHandler;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Map<String, FrameHistogram> histograms = new ConcurrentHashMap<>();
+  private final AtomicReference<FrameHistogram> interaction = new AtomicReference<>();
+  private final Map<Activity, FrameStatsOverlayDrawable> overlays = new WeakHashMap<>();
+  private final long[] flushCounts = new long[FrameHistogram.BUCKET_COUNT];
+  // What each histogram held at the previous flush. Only used on the metrics thread.
+  private final Map<String, FlushedTotals> flushedTotals = new HashMap<>();
+  private final Runnable flushRunnable = this::flush;
+  private final Runnable overlayUpdater = this::updateOverlays;
+  @Nullable private volatile FrameHistogram activityHistogram;
+  // Only written on the main thread.
+  private volatile int startedActivityCount = 0;
+  private volatile long frameIntervalNs = (long) (1e9 / DEFAULT_REFRESH_RATE);
+
+  private FrameMetricsRecorder(Application application, boolean showOverlay) {
+    this.file = new File(application.getFilesDir(), FILE_NAME);
+    this.showOverlay = showOverlay;
+    HandlerThread thread = new HandlerThread(TAG);
+    thread.start();
+    metricsHandler = new Handler(thread.getLooper());
+  }
+
+  /** Starts recording the frames of every activity of the application. Call once. */
+  public static void install(Application application, boolean showOverlay) {
+    FrameMetricsRecorder recorder = new FrameMetricsRecorder(application, showOverlay);
+    application.registerActivityLifecycleCallbacks(recorder);
+    instance = recorder;
+  }
+
+  /**
+   * Attributes the following frames to the named interaction too, until {@link #endInteraction}.
+   * Can be called from any thread.
+   */
+  public static void beginInteraction(String name) {
+    FrameMetricsRecorder recorder = instance;
+    if (recorder != null) {
+      recorder.interaction.set(recorder.getHistogram("interaction:" + name));
+    }
+  }
+
+  /** Ends the named interaction, if it is still the current one. Can be called from any thread. */
+  public static void endInteraction(String name) {
+    FrameMetricsRecorder recorder = instance;
+    if (recorder != null) {
+      FrameHistogram current = recorder.interaction.get();
+      if (current != null && current.getName().equals("interaction:" + name)) {
+        recorder.interaction.compareAndSet(current, null);
+      }
+    }
+  }
+
+  private FrameHistogram getHistogram(String name) {
+    FrameHistogram histogram = histograms.get(name);
+    if (histogram == null) {
+      histogram = new FrameHistogram(name);
+      FrameHistogram existing = histograms.putIfAbsent(name, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    return histogram;
+  }
+
+  @Override
+  public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCount) {
+    if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) {
+      return;
+    }
+    long durationNs = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+    boolean janky = durationNs > frameIntervalNs;
+    FrameHistogram activity = activityHistogram;
+    if (activity != null) {
+      activity.record(durationNs, janky);
+    }
+    FrameHistogram current = interaction.get();
+    if (current != null) {
+      current.record(durationNs, janky);
+    }
+  }
+
+  @Override
+  public void onActivityResumed(@NonNull Activity activity) {
+    FrameHistogram histogram = getHistogram("activity:" + activity.getClass().getSimpleName());
+    activityHistogram = histogram;
+    Display display =
+        Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+            ? activity.getDisplay()
+            : activity.getWindowManager().getDefaultDisplay();
+    float refreshRate = display == null ? DEFAULT_REFRESH_RATE : display.getRefreshRate();
+    frameIntervalNs = (long) (1e9 / refreshRate);
+    activity.getWindow().addOnFrameMetricsAvailableListener(this, metricsHandler);
+
+    if (showOverlay) {
+      if (!overlays.containsKey(activity)) {
+        FrameStatsOverlayDrawable overlay = new FrameStatsOverlayDrawable(activity, histogram);
+        overlays.put(activity, overlay);
+        activity.getWindow().getDecorView().getOverlay().add(overlay);
+      }
+      mainHandler.removeCallbacks(overlayUpdater);
+      mainHandler.post(overlayUpdater);
+    }
+  }
+
+  @Override
+  public void onActivityPaused(@NonNull Activity activity) {
+    activity.getWindow().removeOnFrameMetricsAvailableListener(this);
+    mainHandler.removeCallbacks(overlayUpdater);
+    // Write what we have, the process may not come back to the foreground.
+    metricsHandler.removeCallbacks(flushRunnable);
+    metricsHandler.post(flushRunnable);
+  }
+
+  @Override
+  public void onActivityDestroyed(@NonNull Activity activity) {
+    overlays.remove(activity);
+  }
+
+  @Override
+  public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {}
+
+  @Override
+  public void onActivityStarted(@NonNull Activity activity) {
+    if (startedActivityCount++ == 0) {
+      metricsHandler.removeCallbacks(flushRunnable);
+      metricsHandler.postDelayed(flushRunnable, FLUSH_INTERVAL_MS);
+    }
+  }
+
+  @Override
+  public void onActivityStopped(@NonNull Activity activity) {
+    if (--startedActivityCount == 0) {
+      // A last batch, after which flushing stops until an activity is started again.
+      metricsHandler.removeCallbacks(flushRunnable);
+      metricsHandler.post(flushRunnable);
+    }
+  }
+
+  @Override
+  public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {}
+
+  private void updateOverlays() {
+    for (FrameStatsOverlayDrawable overlay : overlays.values()) {
+      overlay.update();
+    }
+    mainHandler.postDelayed(overlayUpdater, OVERLAY_UPDATE_INTERVAL_MS);
+  }
+
+  /**
+   * Appends one line per histogram that recorded frames since the previous flush, with the count,
+   * jank count and percentiles of those frames only.
+   */
+  private void flush() {
+    long timeMs = System.currentTimeMillis();
+    try (Writer writer = new FileWriter(file, /* append= */ true)) {
+      for (FrameHistogram histogram : histograms.values()) {
+        FlushedTotals flushed = flushedTotals.get(histogram.getName());
+        if (flushed == null) {
+          flushed = new FlushedTotals();
+          flushedTotals.put(histogram.getName(), flushed);
+        }
+        histogram.snapshot(flushCounts);
+        long total = 0;
+        for (int i = 0; i < FrameHistogram.BUCKET_COUNT; i++) {
+          long count = flushCounts[i];
+          flushCounts[i] = count - flushed.counts[i];
+          flushed.counts[i] = count;
+          total += flushCounts[i];
+        }
+        long jankCount = histogram.getJankCount();
+        long intervalJankCount = jankCount - flushed.jankCount;
+        flushed.jankCount = jankCount;
+        if (total == 0) {
+          continue;
+        }
+        writer.write(
+            String.format(
+                Locale.US,
+                "%d,%s,%d,%d,%.1f,%.1f,%.1f\n",
+                timeMs,
+                histogram.getName(),
+                total,
+                intervalJankCount,
+                FrameHistogram.percentileMs(flushCounts, total, 50),
+                FrameHistogram.percentileMs(flushCounts, total, 95),
+                FrameHistogram.percentileMs(flushCounts, total, 99)));
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write frame metrics.", e);
+    }
+    if (startedActivityCount > 0) {
+      metricsHandler.postDelayed(flushRunnable, FLUSH_INTERVAL_MS);
+    }
+  }
+
+  /** A histogram's totals as of the previous flush. */
+  private static final class FlushedTotals {
+    private final long[] counts = new long[FrameHistogram.BUCKET_COUNT];
+    private long jankCount;
+  }
+}
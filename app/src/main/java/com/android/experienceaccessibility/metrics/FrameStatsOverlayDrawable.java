@@ -0,0 +1,97 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.metrics;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Locale;
+
+/** Shows the frame time percentiles of one histogram in the top corner of a window. */
+final class FrameStatsOverlayDrawable extends Drawable {
+  private static final float TEXT_SIZE_SP = 11;
+  private static final float PADDING_DP = 4;
+  // Below the status bar, which the full screen activities draw under.
+  private static final float TOP_DP = 32;
+
+  private final FrameHistogram histogram;
+  private final long[] counts = new long[FrameHistogram.BUCKET_COUNT];
+  private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Paint backgroundPaint = new Paint();
+  private final float padding;
+  private final float top;
+  private String text = "";
+
+  FrameStatsOverlayDrawable(Context context, FrameHistogram histogram) {
+    this.histogram = histogram;
+    float density = context.getResources().getDisplayMetrics().density;
+    padding = PADDING_DP * density;
+    top = TOP_DP * density;
+    textPaint.setColor(Color.WHITE);
+    textPaint.setTextSize(TEXT_SIZE_SP * context.getResources().getDisplayMetrics().scaledDensity);
+    backgroundPaint.setColor(0xB0000000);
+  }
+
+  /** Reads the histogram again. Called a couple of times per second, not per frame. */
+  void update() {
+    long total = histogram.snapshot(counts);
+    text =
+        String.format(
+            Locale.US,
+            "p50 %.1f  p95 %.1f  p99 %.1f ms  jank %d/%d",
+            FrameHistogram.percentileMs(counts, total, 50),
+            FrameHistogram.percentileMs(counts, total, 95),
+            FrameHistogram.percentileMs(counts, total, 99),
+            histogram.getJankCount(),
+            total);
+    float width = textPaint.measureText(text);
+    float height = textPaint.descent() - textPaint.ascent();
+    setBounds(
+        (int) padding,
+        (int) top,
+        (int) Math.ceil(width + 3 * padding),
+        (int) Math.ceil(top + height + 2 * padding));
+    invalidateSelf();
+  }
+
+  @Override
+  public void draw(@NonNull Canvas canvas) {
+    canvas.drawRect(getBounds(), backgroundPaint);
+    canvas.drawText(
+        text, getBounds().left + padding, getBounds().top + padding - textPaint.ascent(), textPaint);
+  }
+
+  @Override
+  public void setAlpha(int alpha) {
+    textPaint.setAlpha(alpha);
+  }
+
+  @Override
+  public void setColorFilter(@Nullable ColorFilter colorFilter) {
+    textPaint.setColorFilter(colorFilter);
+    backgroundPaint.setColorFilter(colorFilter);
+  }
+
+  @Override
+  public int getOpacity() {
+    return PixelFormat.TRANSLUCENT;
+  }
+}
@@ -0,0 +1,355 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.metrics;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+import androidx.annotation.Nullable;
+import com.android.experienceaccessibility.common.Constants;
+import com.android.experienceaccessibility.subtitles.CueTable;
+import com.android.experienceaccessibility.subtitles.SubtitleRepository;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.analytics.AnalyticsListener;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.TextOutput;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the playback experience of every player handed out by the player factory: time to
+ * first frame, startup and rebuffering, dropped frames, decoder initialization and how late
+ * subtitles show up. Totals per video are kept in memory and logged. In debug builds, each session
+ * is also written as one CSV line on a background thread, to a file of bounded size.
+ *
+ * <p>Must be used from the main thread.
+ */
+public final class PlaybackTelemetry {
+  private static final String TAG = "PlaybackTelemetry";
+  private static final String FILE_NAME = "playback_metrics.csv";
+  // Once the file reaches this size it replaces the previous one, and a new file is started.
+  private static final long MAX_FILE_BYTES = 256 * 1024;
+  private static final String HEADER =
+      "time_ms,label,first_frame_ms,startup_ms,rebuffer_count,rebuffer_ms,dropped_frames,"
+          + "video_decoder_init_ms,audio_decoder_init_ms,subtitle_count,subtitle_latency_avg_ms,"
+          + "subtitle_latency_max_ms,played_ms\n";
+
+  private static PlaybackTelemetry instance;
+
+  private final Context context;
+  private final File file;
+  private final File previousFile;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final Map<SimpleExoPlayer, Session> sessions = new HashMap<>();
+  private final Map<String, Totals> totalsByLabel = new HashMap<>();
+
+  private PlaybackTelemetry(Context context) {
+    this.context = context.getApplicationContext();
+    file = new File(context.getFilesDir(), FILE_NAME);
+    previousFile = new File(context.getFilesDir(), FILE_NAME + ".1");
+  }
+
+  /** Returns the process wide telemetry. */
+  public static PlaybackTelemetry getInstance(Context context) {
+    if (instance == null) {
+      instance = new PlaybackTelemetry(context);
+    }
+    return instance;
+  }
+
+  /**
+   * Starts measuring a player that was just prepared with the media named {@code label}, whose
+   * subtitles are at {@code subtitlesPath}.
+   */
+  public void startSession(SimpleExoPlayer player, String label, String subtitlesPath) {
+    endSession(player);
+    Session session = new Session(player, label);
+    sessions.put(player, session);
+    player.addAnalyticsListener(session);
+    player.addTextOutput(session);
+    // Cue tables are usually cached by now, but may need to be read.
+    executor.execute(
+        () -> {
+          try {
+            session.cueTable = SubtitleRepository.getInstance(context).getCueTable(subtitlesPath);
+          } catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "No cue table for " + subtitlesPath, e);
+          }
+        });
+  }
+
+  /** Stops measuring the player, and records its session. */
+  public void endSession(SimpleExoPlayer player) {
+    Session session = sessions.remove(player);
+    if (session == null) {
+      return;
+    }
+    player.removeAnalyticsListener(session);
+    player.removeTextOutput(session);
+    String record = session.finish(SystemClock.elapsedRealtime());
+
+    Totals totals = totalsByLabel.get(session.label);
+    if (totals == null) {
+      totals = new Totals();
+      totalsByLabel.put(session.label, totals);
+    }
+    totals.add(session);
+    Log.d(TAG, session.label + ": " + totals);
+
+    if (Constants.PLAYBACK_METRICS_FILE_ENABLED) {
+      executor.execute(() -> append(record));
+    }
+  }
+
+  private void append(String record) {
+    if (file.length() >= MAX_FILE_BYTES && !file.renameTo(previousFile)) {
+      Log.w(TAG, "Failed to rotate playback metrics, starting over.");
+      file.delete();
+    }
+    boolean newFile = file.length() == 0;
+    try (Writer writer = new FileWriter(file, /* append= */ true)) {
+      if (newFile) {
+        writer.write(HEADER);
+      }
+      writer.write(record);
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to write playback metrics.", e);
+    }
+  }
+
+  /** Running totals of all sessions of one video. */
+  private static final class Totals {
+    private int sessionCount;
+    private long firstFrameMsSum;
+    private int rebufferCount;
+    private long rebufferMs;
+    private long droppedFrames;
+    private long playedMs;
+
+    void add(Session session) {
+      sessionCount++;
+      firstFrameMsSum += Math.max(0, session.firstFrameMs);
+      rebufferCount += session.rebufferCount;
+      rebufferMs += session.rebufferMs;
+      droppedFrames += session.droppedFrames;
+      playedMs += session.playedMs;
+    }
+
+    @Override
+    public String toString() {
+      return sessionCount
+          + " sessions, avg first frame "
+          + firstFrameMsSum / sessionCount
+          + " ms, "
+          + rebufferCount
+          + " rebuffers ("
+          + rebufferMs
+          + " ms), "
+          + droppedFrames
+          + " dropped frames in "
+          + playedMs
+          + " ms played";
+    }
+  }
+
+  /** Measurements of one player between {@link #startSession} and {@link #endSession}. */
+  private static final class Session implements AnalyticsListener, TextOutput {
+    private final SimpleExoPlayer player;
+    private final String label;
+    private final long startRealtimeMs = SystemClock.elapsedRealtime();
+    @Nullable private volatile CueTable cueTable;
+
+    private long firstFrameMs = -1;
+    // When the player last got a surface, or -1 if it already had one when the session started.
+    private long surfaceRealtimeMs = -1;
+    private boolean hasSurface;
+    private long playRequestRealtimeMs = -1;
+    private long startupMs = -1;
+    private boolean playWhenReady;
+    private boolean hasBeenReady;
+    private boolean seeking;
+    private long rebufferStartRealtimeMs = -1;
+    private int rebufferCount;
+    private long rebufferMs;
+    private long droppedFrames;
+    private long videoDecoderInitMs = -1;
+    private long audioDecoderInitMs = -1;
+    private long playingSinceRealtimeMs = -1;
+    private long playedMs;
+    private int subtitleCount;
+    private long subtitleLatencySumMs;
+    private long subtitleLatencyMaxMs;
+
+    Session(SimpleExoPlayer player, String label) {
+      this.player = player;
+      this.label = label;
+      playWhenReady = player.getPlayWhenReady();
+      if (playWhenReady) {
+        playRequestRealtimeMs = startRealtimeMs;
+      }
+    }
+
+    /**
+     * Tracks when the player gets a surface. A preloaded player has none until its screen shows,
+     * and can't render its first frame before then.
+     */
+    @Override
+    public void onSurfaceSizeChanged(EventTime eventTime, int width, int height) {
+      boolean hadSurface = hasSurface;
+      hasSurface = width > 0 && height > 0;
+      if (hasSurface && !hadSurface) {
+        surfaceRealtimeMs = eventTime.realtimeMs;
+      }
+    }
+
+    @Override
+    public void onRenderedFirstFrame(EventTime eventTime, @Nullable Surface surface) {
+      if (firstFrameMs < 0) {
+        firstFrameMs = eventTime.realtimeMs - Math.max(startRealtimeMs, surfaceRealtimeMs);
+      }
+    }
+
+    @Override
+    public void onPlayWhenReadyChanged(EventTime eventTime, boolean playWhenReady, int reason) {
+      this.playWhenReady = playWhenReady;
+      if (playWhenReady && playRequestRealtimeMs < 0) {
+        playRequestRealtimeMs = eventTime.realtimeMs;
+      }
+      if (!playWhenReady) {
+        endRebuffer(eventTime.realtimeMs);
+      }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(EventTime eventTime, int reason) {
+      if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+        // Buffering after a seek is expected, not a stall.
+        seeking = true;
+      }
+    }
+
+    @Override
+    public void onPlaybackStateChanged(EventTime eventTime, int state) {
+      if (state == Player.STATE_READY) {
+        hasBeenReady = true;
+        seeking = false;
+        endRebuffer(eventTime.realtimeMs);
+      } else if (state == Player.STATE_BUFFERING
+          && hasBeenReady
+          && playWhenReady
+          && !seeking
+          && rebufferStartRealtimeMs < 0) {
+        rebufferStartRealtimeMs = eventTime.realtimeMs;
+        rebufferCount++;
+      }
+    }
+
+    @Override
+    public void onIsPlayingChanged(EventTime eventTime, boolean isPlaying) {
+      if (isPlaying) {
+        if (startupMs < 0 && playRequestRealtimeMs >= 0) {
+          startupMs = eventTime.realtimeMs - playRequestRealtimeMs;
+        }
+        playingSinceRealtimeMs = eventTime.realtimeMs;
+      } else if (playingSinceRealtimeMs >= 0) {
+        playedMs += eventTime.realtimeMs - playingSinceRealtimeMs;
+        playingSinceRealtimeMs = -1;
+      }
+    }
+
+    @Override
+    public void onDroppedVideoFrames(EventTime eventTime, int droppedFrames, long elapsedMs) {
+      this.droppedFrames += droppedFrames;
+    }
+
+    @Override
+    public void onVideoDecoderInitialized(
+        EventTime eventTime,
+        String decoderName,
+        long initializedTimestampMs,
+        long initializationDurationMs) {
+      videoDecoderInitMs = initializationDurationMs;
+    }
+
+    @Override
+    public void onAudioDecoderInitialized(
+        EventTime eventTime,
+        String decoderName,
+        long initializedTimestampMs,
+        long initializationDurationMs) {
+      audioDecoderInitMs = initializationDurationMs;
+    }
+
+    /** Measures how long after its start time a newly shown cue reached the screen. */
+    @Override
+    public void onCues(List<Cue> cues) {
+      CueTable table = cueTable;
+      if (cues.isEmpty() || table == null) {
+        return;
+      }
+      long positionUs = player.getCurrentPosition() * 1000;
+      int index = table.activeIndex(positionUs);
+      if (index < 0) {
+        return;
+      }
+      long latencyMs = (positionUs - table.getStartTimeUs(index)) / 1000;
+      subtitleCount++;
+      subtitleLatencySumMs += latencyMs;
+      subtitleLatencyMaxMs = Math.max(subtitleLatencyMaxMs, latencyMs);
+    }
+
+    private void endRebuffer(long realtimeMs) {
+      if (rebufferStartRealtimeMs >= 0) {
+        rebufferMs += realtimeMs - rebufferStartRealtimeMs;
+        rebufferStartRealtimeMs = -1;
+      }
+    }
+
+    /** Closes open intervals and returns the session as a CSV line. */
+    String finish(long realtimeMs) {
+      endRebuffer(realtimeMs);
+      if (playingSinceRealtimeMs >= 0) {
+        playedMs += realtimeMs - playingSinceRealtimeMs;
+        playingSinceRealtimeMs = -1;
+      }
+      return String.format(
+          Locale.US,
+          "%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
+          System.currentTimeMillis(),
+          label,
+          firstFrameMs,
+          startupMs,
+          rebufferCount,
+          rebufferMs,
+          droppedFrames,
+          videoDecoderInitMs,
+          audioDecoderInitMs,
+          subtitleCount,
+          subtitleCount == 0 ? -1 : subtitleLatencySumMs / subtitleCount,
+          subtitleLatencyMaxMs,
+          playedMs);
+    }
+  }
+}
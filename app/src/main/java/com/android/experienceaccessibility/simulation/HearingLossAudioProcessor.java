@@ -0,0 +1,332 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.BaseAudioProcessor;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Makes 16-bit PCM audio sound like it does with a given {@link HearingLossProfile}.
+ *
+ * <p>The audiogram is approximated by a series of peaking biquads, one per band, followed by an
+ * optional low-pass roll-off and mixed with an optional tinnitus tone. Neighbouring bands overlap,
+ * so their gains are solved for together to make the bank's response follow the loss at and between
+ * the audiogram frequencies. Filters are designed when the format or profile changes; processing a
+ * buffer allocates nothing.
+ */
+public final class HearingLossAudioProcessor extends BaseAudioProcessor {
+  private static final int MAX_STAGES = HearingLossProfile.AUDIOGRAM_FREQUENCIES_HZ.length + 1;
+  // Bandwidth of about two octaves, so neighbouring audiogram bands blend without ripple between
+  // them. Narrower bands deepen into notches at the large cuts of severe losses.
+  private static final double PEAKING_Q = 0.5;
+  private static final double LOW_PASS_Q = 1 / Math.sqrt(2);
+  // Enough for the solved gains to settle within a fraction of a dB.
+  private static final int CORRECTION_ITERATIONS = 4;
+  private static final double NOMINAL_CUT_DB = 12;
+  private static final int SINE_TABLE_SIZE = 4096;
+  private static final float[] SINE_TABLE = new float[SINE_TABLE_SIZE];
+
+  static {
+    for (int i = 0; i < SINE_TABLE_SIZE; i++) {
+      SINE_TABLE[i] = (float) Math.sin(2 * Math.PI * i / SINE_TABLE_SIZE);
+    }
+  }
+
+  // Transposed direct form II coefficients, per stage.
+  private final float[] b0 = new float[MAX_STAGES];
+  private final float[] b1 = new float[MAX_STAGES];
+  private final float[] b2 = new float[MAX_STAGES];
+  private final float[] a1 = new float[MAX_STAGES];
+  private final float[] a2 = new float[MAX_STAGES];
+  // Per peaking stage, used while designing only.
+  private final float[] stageFrequencies = new float[MAX_STAGES];
+  private final double[] stageGainsDb = new double[MAX_STAGES];
+  // Per fitted frequency, used while designing only.
+  private final float[] fitFrequencies = new float[2 * MAX_STAGES];
+  private final double[] fitTargetsDb = new double[2 * MAX_STAGES];
+  private final double[][] interaction = new double[2 * MAX_STAGES][MAX_STAGES];
+  private final double[][] normal = new double[MAX_STAGES][MAX_STAGES];
+  // Filter state, per channel and stage.
+  private float[] z1 = new float[0];
+  private float[] z2 = new float[0];
+  private int stageCount;
+  private int fitCount;
+  private int channelCount;
+  private int sampleRate;
+
+  private volatile HearingLossProfile pendingProfile = HearingLossProfile.NONE;
+  private HearingLossProfile activeProfile;
+  private float tinnitusAmplitude;
+  private float tinnitusPhase;
+  private float tinnitusPhaseStep;
+
+  /** Switches to another profile from the next buffer on. Can be called from any thread. */
+  public void setProfile(HearingLossProfile profile) {
+    pendingProfile = profile;
+  }
+
+  public HearingLossProfile getProfile() {
+    return pendingProfile;
+  }
+
+  @Override
+  protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
+      throws UnhandledAudioFormatException {
+    if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT) {
+      throw new UnhandledAudioFormatException(inputAudioFormat);
+    }
+    // Always active, so a profile can be switched on without reconfiguring the audio sink.
+    return inputAudioFormat;
+  }
+
+  @Override
+  protected void onFlush() {
+    if (channelCount != inputAudioFormat.channelCount
+        || sampleRate != inputAudioFormat.sampleRate) {
+      channelCount = inputAudioFormat.channelCount;
+      sampleRate = inputAudioFormat.sampleRate;
+      z1 = new float[channelCount * MAX_STAGES];
+      z2 = new float[channelCount * MAX_STAGES];
+      activeProfile = null;
+    }
+    Arrays.fill(z1, 0);
+    Arrays.fill(z2, 0);
+  }
+
+  @Override
+  protected void onReset() {
+    channelCount = 0;
+    sampleRate = 0;
+    z1 = new float[0];
+    z2 = new float[0];
+    activeProfile = null;
+  }
+
+  @Override
+  public void queueInput(ByteBuffer inputBuffer) {
+    int remaining = inputBuffer.remaining();
+    if (remaining == 0) {
+      return;
+    }
+    HearingLossProfile profile = pendingProfile;
+    if (profile != activeProfile) {
+      design(profile);
+    }
+    ByteBuffer outputBuffer = replaceOutputBuffer(remaining);
+    if (profile == HearingLossProfile.NONE) {
+      outputBuffer.put(inputBuffer);
+      outputBuffer.flip();
+      return;
+    }
+    while (inputBuffer.remaining() >= 2 * channelCount) {
+      float tone = 0;
+      if (tinnitusAmplitude > 0) {
+        tone = tinnitusAmplitude * SINE_TABLE[(int) tinnitusPhase];
+        tinnitusPhase += tinnitusPhaseStep;
+        if (tinnitusPhase >= SINE_TABLE_SIZE) {
+          tinnitusPhase -= SINE_TABLE_SIZE;
+        }
+      }
+      for (int channel = 0; channel < channelCount; channel++) {
+        float sample = inputBuffer.getShort() / 32768f;
+        int state = channel * MAX_STAGES;
+        for (int stage = 0; stage < stageCount; stage++, state++) {
+          float filtered = b0[stage] * sample + z1[state];
+          z1[state] = b1[stage] * sample - a1[stage] * filtered + z2[state];
+          z2[state] = b2[stage] * sample - a2[stage] * filtered;
+          sample = filtered;
+        }
+        sample += tone;
+        outputBuffer.putShort((short) (Math.max(-1f, Math.min(1f, sample)) * 32767));
+      }
+    }
+    // Drop a trailing partial frame, which a well formed buffer never has.
+    inputBuffer.position(inputBuffer.limit());
+    outputBuffer.flip();
+  }
+
+  /** Recomputes the filter bank into the preallocated coefficient arrays. */
+  private void design(HearingLossProfile profile) {
+    activeProfile = profile;
+    stageCount = 0;
+    double nyquist = sampleRate / 2.0;
+    boolean hasLoss = false;
+    for (float lossDb : profile.audiogramLossDb) {
+      hasLoss |= lossDb > 0;
+    }
+    if (hasLoss) {
+      // Every band gets a stage, so bands without loss can be held at 0 dB against their
+      // neighbours.
+      for (int i = 0; i < HearingLossProfile.AUDIOGRAM_FREQUENCIES_HZ.length; i++) {
+        float frequency = HearingLossProfile.AUDIOGRAM_FREQUENCIES_HZ[i];
+        if (frequency < nyquist) {
+          stageFrequencies[stageCount] = frequency;
+          stageGainsDb[stageCount] = -profile.audiogramLossDb[i];
+          stageCount++;
+        }
+      }
+      // The response is fitted at every audiogram frequency and halfway between each pair, where
+      // the loss is interpolated, so it does not ripple between bands.
+      fitCount = 0;
+      for (int stage = 0; stage < stageCount; stage++) {
+        if (stage > 0) {
+          fitFrequencies[fitCount] =
+              (float) Math.sqrt(stageFrequencies[stage - 1] * stageFrequencies[stage]);
+          fitTargetsDb[fitCount] = (stageGainsDb[stage - 1] + stageGainsDb[stage]) / 2;
+          fitCount++;
+        }
+        fitFrequencies[fitCount] = stageFrequencies[stage];
+        fitTargetsDb[fitCount] = stageGainsDb[stage];
+        fitCount++;
+      }
+      designPeakingBank();
+    }
+    if (profile.lowPassHz > 0 && profile.lowPassHz < nyquist) {
+      designLowPass(stageCount++, profile.lowPassHz);
+    }
+    Arrays.fill(z1, 0);
+    Arrays.fill(z2, 0);
+
+    if (profile.tinnitusHz > 0 && profile.tinnitusHz < nyquist) {
+      tinnitusAmplitude = (float) Math.pow(10, profile.tinnitusDb / 20);
+      tinnitusPhaseStep = profile.tinnitusHz * SINE_TABLE_SIZE / sampleRate;
+    } else {
+      tinnitusAmplitude = 0;
+    }
+  }
+
+  /**
+   * Designs the peaking stages. Each stage's share of the response at every fitted frequency, per
+   * dB of its own gain, is measured at the current gains, and the gains whose shares add up closest
+   * to the targets are solved for. Shares depend a little on the gain, so this repeats.
+   */
+  private void designPeakingBank() {
+    for (int iteration = 0; ; iteration++) {
+      for (int stage = 0; stage < stageCount; stage++) {
+        designPeaking(stage, stageFrequencies[stage], stageGainsDb[stage]);
+      }
+      if (iteration == CORRECTION_ITERATIONS) {
+        return;
+      }
+      for (int stage = 0; stage < stageCount; stage++) {
+        // A stage with next to no gain has no shape to measure, so use a nominal cut instead.
+        double gainDb =
+            Math.abs(stageGainsDb[stage]) < 1 ? -NOMINAL_CUT_DB : stageGainsDb[stage];
+        designPeaking(stage, stageFrequencies[stage], gainDb);
+        for (int fit = 0; fit < fitCount; fit++) {
+          interaction[fit][stage] = getMagnitudeDb(stage, fitFrequencies[fit]) / gainDb;
+        }
+      }
+      solveLeastSquares();
+    }
+  }
+
+  /**
+   * Solves {@code interaction * gains = targets} for the gains in the least squares sense, into
+   * {@link #stageGainsDb}, through the normal equations and Gaussian elimination.
+   */
+  private void solveLeastSquares() {
+    for (int row = 0; row < stageCount; row++) {
+      for (int column = 0; column < stageCount; column++) {
+        double sum = 0;
+        for (int fit = 0; fit < fitCount; fit++) {
+          sum += interaction[fit][row] * interaction[fit][column];
+        }
+        normal[row][column] = sum;
+      }
+      double sum = 0;
+      for (int fit = 0; fit < fitCount; fit++) {
+        sum += interaction[fit][row] * fitTargetsDb[fit];
+      }
+      stageGainsDb[row] = sum;
+    }
+    // The normal matrix is symmetric positive definite, so needs no pivoting.
+    for (int column = 0; column < stageCount; column++) {
+      for (int row = column + 1; row < stageCount; row++) {
+        double factor = normal[row][column] / normal[column][column];
+        for (int i = column; i < stageCount; i++) {
+          normal[row][i] -= factor * normal[column][i];
+        }
+        stageGainsDb[row] -= factor * stageGainsDb[column];
+      }
+    }
+    for (int row = stageCount - 1; row >= 0; row--) {
+      double gainDb = stageGainsDb[row];
+      for (int i = row + 1; i < stageCount; i++) {
+        gainDb -= normal[row][i] * stageGainsDb[i];
+      }
+      stageGainsDb[row] = gainDb / normal[row][row];
+    }
+  }
+
+  /** Returns the gain of a designed stage at the given frequency, in dB. */
+  private double getMagnitudeDb(int stage, double frequency) {
+    double w = 2 * Math.PI * frequency / sampleRate;
+    double cos1 = Math.cos(w);
+    double sin1 = Math.sin(w);
+    double cos2 = Math.cos(2 * w);
+    double sin2 = Math.sin(2 * w);
+    double numeratorRe = b0[stage] + b1[stage] * cos1 + b2[stage] * cos2;
+    double numeratorIm = b1[stage] * sin1 + b2[stage] * sin2;
+    double denominatorRe = 1 + a1[stage] * cos1 + a2[stage] * cos2;
+    double denominatorIm = a1[stage] * sin1 + a2[stage] * sin2;
+    return 10
+        * Math.log10(
+            (numeratorRe * numeratorRe + numeratorIm * numeratorIm)
+                / (denominatorRe * denominatorRe + denominatorIm * denominatorIm));
+  }
+
+  // Filters from the Audio EQ Cookbook by Robert Bristow-Johnson.
+  private void designPeaking(int stage, double frequency, double gainDb) {
+    double a = Math.pow(10, gainDb / 40);
+    double w0 = 2 * Math.PI * frequency / sampleRate;
+    double alpha = Math.sin(w0) / (2 * PEAKING_Q);
+    double cos = Math.cos(w0);
+    double a0 = 1 + alpha / a;
+    setCoefficients(
+        stage,
+        (1 + alpha * a) / a0,
+        -2 * cos / a0,
+        (1 - alpha * a) / a0,
+        -2 * cos / a0,
+        (1 - alpha / a) / a0);
+  }
+
+  private void designLowPass(int stage, double frequency) {
+    double w0 = 2 * Math.PI * frequency / sampleRate;
+    double alpha = Math.sin(w0) / (2 * LOW_PASS_Q);
+    double cos = Math.cos(w0);
+    double a0 = 1 + alpha;
+    setCoefficients(
+        stage,
+        (1 - cos) / 2 / a0,
+        (1 - cos) / a0,
+        (1 - cos) / 2 / a0,
+        -2 * cos / a0,
+        (1 - alpha) / a0);
+  }
+
+  private void setCoefficients(
+      int stage, double b0, double b1, double b2, double a1, double a2) {
+    this.b0[stage] = (float) b0;
+    this.b1[stage] = (float) b1;
+    this.b2[stage] = (float) b2;
+    this.a1[stage] = (float) a1;
+    this.a2[stage] = (float) a2;
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+/** Hearing loss to simulate, as an audiogram plus optional roll-off and tinnitus. */
+public enum HearingLossProfile {
+  NONE(
+      new float[] {0, 0, 0, 0, 0, 0},
+      /* lowPassHz= */ 0,
+      /* tinnitusHz= */ 0,
+      /* tinnitusDb= */ 0),
+  MILD_HIGH_FREQUENCY(new float[] {0, 0, 5, 15, 30, 40}, 0, 0, 0),
+  MODERATE(new float[] {20, 25, 35, 45, 55, 60}, 6000, 0, 0),
+  SEVERE(new float[] {45, 55, 65, 75, 85, 90}, 3000, 4000, -38);
+
+  /** Audiogram frequencies, one octave apart. */
+  static final float[] AUDIOGRAM_FREQUENCIES_HZ = {250, 500, 1000, 2000, 4000, 8000};
+
+  /** Hearing loss in dB at each of {@link #AUDIOGRAM_FREQUENCIES_HZ}. */
+  final float[] audiogramLossDb;
+  /** Cut-off of an extra high frequency roll-off, or 0 for none. */
+  final float lowPassHz;
+  /** Frequency of a constant tinnitus tone, or 0 for none. */
+  final float tinnitusHz;
+  /** Level of the tinnitus tone relative to full scale. */
+  final float tinnitusDb;
+
+  HearingLossProfile(float[] audiogramLossDb, float lowPassHz, float tinnitusHz, float tinnitusDb) {
+    this.audiogramLossDb = audiogramLossDb;
+    this.lowPassHz = lowPassHz;
+    this.tinnitusHz = tinnitusHz;
+    this.tinnitusDb = tinnitusDb;
+  }
+}
@@ -0,0 +1,302 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RadialGradient;
+import android.graphics.Shader;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ScrollView;
+import androidx.annotation.Nullable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Overlay that simulates the central scotoma of macular degeneration over a scroll view: around
+ * the point the user touches, the content gets blurrier and darker towards the center.
+ *
+ * <p>The content is captured and blurred into a small pyramid of increasingly blurred levels
+ * once per content change. Every frame only composites rings of the cached levels, so following
+ * a finger never blurs anything again and allocates nothing. The colors of the levels are mapped
+ * through the content's {@link VisionFilter} exactly, while the pyramid is built.
+ */
+public final class MacularDegenerationView extends View {
+  private static final float DEFAULT_SCOTOMA_RADIUS_DP = 80;
+  // Content is captured at this fraction of its size; blurred levels don't need more detail.
+  private static final int CAPTURE_SCALE = 4;
+  private static final int LEVEL_COUNT = 3;
+  // Outer radius of each level's ring, in scotoma radii, from the least blurred level inwards.
+  private static final float[] LEVEL_RADII = {2.2f, 1.6f, 1.15f};
+  private static final int[] LEVEL_BLUR_RADII_PX = {1, 1, 2};
+  private static final int DARKNESS_COLOR = 0xFF202124;
+
+  private static final ExecutorService pyramidExecutor = Executors.newSingleThreadExecutor();
+
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Bitmap[] levels = new Bitmap[LEVEL_COUNT];
+  private final Paint levelPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+  private final Paint darknessPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+  private final Matrix darknessMatrix = new Matrix();
+  private final Path clipPath = new Path();
+  private final int[] contentLocation = new int[2];
+  private final int[] overlayLocation = new int[2];
+  @Nullable private ScrollView scrollView;
+  private final int contentBackgroundColor;
+  private float scotomaRadius;
+  private float gazeX = -1;
+  private float gazeY = -1;
+  // Bumped on every content change, so pyramids of outdated content are dropped.
+  private int contentGeneration = 0;
+  private boolean pyramidPending = false;
+  // The color part of the content's filter; blur comes from the levels instead.
+  private VisionFilter contentFilter = VisionFilter.CLEAR;
+
+  public MacularDegenerationView(Context context) {
+    this(context, null);
+  }
+
+  public MacularDegenerationView(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+    TypedValue background = new TypedValue();
+    context.getTheme().resolveAttribute(android.R.attr.colorBackground, background, true);
+    contentBackgroundColor = background.data;
+    setScotomaRadius(DEFAULT_SCOTOMA_RADIUS_DP * getResources().getDisplayMetrics().density);
+  }
+
+  /** Sets the radius of the darkest part of the scotoma. */
+  public void setScotomaRadius(float radiusPx) {
+    scotomaRadius = radiusPx;
+    darknessPaint.setShader(
+        new RadialGradient(
+            0,
+            0,
+            radiusPx,
+            new int[] {
+              DARKNESS_COLOR,
+              (DARKNESS_COLOR & 0x00FFFFFF) | 0xE0000000,
+              Color.TRANSPARENT
+            },
+            new float[] {0, 0.55f, 1},
+            Shader.TileMode.CLAMP));
+    invalidate();
+  }
+
+  /** Sets the filter the scroll view content is drawn with, so the overlay matches it. */
+  public void setContentVisionFilter(VisionFilter filter) {
+    contentFilter = filter.buildUpon().setBlurRadiusPx(0).build();
+    invalidateContent();
+  }
+
+  /**
+   * Follows touches on, and blurs the content of, the given scroll view. Its child should fill
+   * the same area of the screen as this overlay.
+   */
+  @SuppressLint("ClickableViewAccessibility")
+  public void setScrollView(ScrollView scrollView) {
+    this.scrollView = scrollView;
+    scrollView.setOnScrollChangeListener(
+        (View v, int scrollX, int scrollY, int oldScrollX, int oldScrollY) -> invalidate());
+    scrollView.addOnLayoutChangeListener(
+        (v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) ->
+            invalidateContent());
+    scrollView.setOnTouchListener(
+        (View v, MotionEvent event) -> {
+          // Leave the event to the scroll view; only the gaze follows it.
+          gazeX = event.getRawX();
+          gazeY = event.getRawY();
+          invalidate();
+          return false;
+        });
+    invalidateContent();
+  }
+
+  /** Rebuilds the cached blur levels from the current content of the scroll view. */
+  public void invalidateContent() {
+    contentGeneration++;
+    if (!isShown() || pyramidPending) {
+      return;
+    }
+    pyramidPending = true;
+    // Capture after the pending layout and draw, so the content is up to date.
+    mainHandler.post(this::buildPyramid);
+  }
+
+  private void buildPyramid() {
+    pyramidPending = false;
+    if (scrollView == null || scrollView.getChildCount() == 0 || !isShown()) {
+      return;
+    }
+    View content = scrollView.getChildAt(0);
+    int width = Math.max(1, content.getWidth() / CAPTURE_SCALE);
+    int height = Math.max(1, content.getHeight() / CAPTURE_SCALE);
+    Bitmap capture = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    Canvas canvas = new Canvas(capture);
+    // Transparent areas would let the sharp content through the blurred rings.
+    canvas.drawColor(contentBackgroundColor);
+    canvas.scale(1f / CAPTURE_SCALE, 1f / CAPTURE_SCALE);
+    content.draw(canvas);
+
+    int generation = contentGeneration;
+    VisionFilter filter = contentFilter;
+    pyramidExecutor.execute(
+        () -> {
+          Bitmap[] pyramid = blurPyramid(capture, filter);
+          capture.recycle();
+          mainHandler.post(() -> setLevels(pyramid, generation));
+        });
+  }
+
+  /** Maps the colors of the capture, then blurs each level from a half sized copy of the last. */
+  private static Bitmap[] blurPyramid(Bitmap capture, VisionFilter colorFilter) {
+    VisionEngine engine = VisionEngine.getInstance();
+    Bitmap[] pyramid = new Bitmap[LEVEL_COUNT];
+    int width = capture.getWidth();
+    int height = capture.getHeight();
+    int[] pixels = new int[width * height];
+    capture.getPixels(pixels, 0, width, 0, 0, width, height);
+    if (colorFilter.hasColorEffect()) {
+      engine.apply(pixels, width, height, colorFilter);
+    }
+    for (int level = 0; level < LEVEL_COUNT; level++) {
+      if (level > 0) {
+        int halfWidth = Math.max(1, width / 2);
+        int halfHeight = Math.max(1, height / 2);
+        pixels = downsample(pixels, width, height, halfWidth, halfHeight);
+        width = halfWidth;
+        height = halfHeight;
+      }
+      VisionFilter blur =
+          new VisionFilter.Builder().setBlurRadiusPx(LEVEL_BLUR_RADII_PX[level]).build();
+      engine.apply(pixels, width, height, blur);
+      pyramid[level] = Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+    }
+    return pyramid;
+  }
+
+  /** Averages 2x2 blocks of pixels, per channel. */
+  private static int[] downsample(
+      int[] pixels, int width, int height, int halfWidth, int halfHeight) {
+    int[] half = new int[halfWidth * halfHeight];
+    for (int y = 0; y < halfHeight; y++) {
+      int row0 = Math.min(2 * y, height - 1) * width;
+      int row1 = Math.min(2 * y + 1, height - 1) * width;
+      for (int x = 0; x < halfWidth; x++) {
+        int x0 = Math.min(2 * x, width - 1);
+        int x1 = Math.min(2 * x + 1, width - 1);
+        int p0 = pixels[row0 + x0];
+        int p1 = pixels[row0 + x1];
+        int p2 = pixels[row1 + x0];
+        int p3 = pixels[row1 + x1];
+        int color = 0;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+          int sum =
+              (p0 >>> shift & 0xFF)
+                  + (p1 >>> shift & 0xFF)
+                  + (p2 >>> shift & 0xFF)
+                  + (p3 >>> shift & 0xFF);
+          color |= (sum >> 2) << shift;
+        }
+        half[y * halfWidth + x] = color;
+      }
+    }
+    return half;
+  }
+
+  private void setLevels(Bitmap[] pyramid, int generation) {
+    if (generation != contentGeneration || !isShown()) {
+      for (Bitmap level : pyramid) {
+        level.recycle();
+      }
+      if (isShown()) {
+        invalidateContent();
+      }
+      return;
+    }
+    releaseLevels();
+    System.arraycopy(pyramid, 0, levels, 0, LEVEL_COUNT);
+    invalidate();
+  }
+
+  private void releaseLevels() {
+    for (int i = 0; i < LEVEL_COUNT; i++) {
+      if (levels[i] != null) {
+        levels[i].recycle();
+        levels[i] = null;
+      }
+    }
+  }
+
+  @Override
+  protected void onVisibilityChanged(View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    if (isShown()) {
+      invalidateContent();
+    } else {
+      // The pyramid is a few megabytes; don't hold on to it while hidden.
+      contentGeneration++;
+      releaseLevels();
+    }
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    contentGeneration++;
+    releaseLevels();
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    getLocationOnScreen(overlayLocation);
+    float centerX = gazeX < 0 ? getWidth() / 2f : gazeX - overlayLocation[0];
+    float centerY = gazeY < 0 ? getHeight() / 2f : gazeY - overlayLocation[1];
+
+    if (scrollView != null && scrollView.getChildCount() > 0 && levels[0] != null) {
+      // The content location already accounts for scrolling.
+      scrollView.getChildAt(0).getLocationOnScreen(contentLocation);
+      float contentX = contentLocation[0] - overlayLocation[0];
+      float contentY = contentLocation[1] - overlayLocation[1];
+      for (int level = 0; level < LEVEL_COUNT; level++) {
+        Bitmap bitmap = levels[level];
+        float scale = (float) CAPTURE_SCALE * (1 << level);
+        clipPath.rewind();
+        clipPath.addCircle(
+            centerX, centerY, LEVEL_RADII[level] * scotomaRadius, Path.Direction.CW);
+        int saveCount = canvas.save();
+        canvas.clipPath(clipPath);
+        canvas.translate(contentX, contentY);
+        canvas.scale(scale, scale);
+        canvas.drawBitmap(bitmap, 0, 0, levelPaint);
+        canvas.restoreToCount(saveCount);
+      }
+    }
+
+    darknessMatrix.setTranslate(centerX, centerY);
+    darknessPaint.getShader().setLocalMatrix(darknessMatrix);
+    canvas.drawCircle(centerX, centerY, scotomaRadius, darknessPaint);
+  }
+}
@@ -0,0 +1,133 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import android.view.Choreographer;
+import android.view.View;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shakes views to simulate a hand tremor. A single frame callback drives every target from
+ * precomputed, seeded noise tables, so no objects are allocated per frame however many targets
+ * there are.
+ *
+ * <p>Must be used from the main thread.
+ */
+public final class TremorEngine implements Choreographer.FrameCallback {
+  /** Noise knots per second; a new random offset is reached every 100 ms. */
+  public static final float DEFAULT_FREQUENCY_HZ = 10f;
+  public static final float DEFAULT_AMPLITUDE_X_PX = 150f;
+  public static final float DEFAULT_AMPLITUDE_Y_PX = 50f;
+
+  // Power of two so the phase can wrap with a mask.
+  private static final int NOISE_TABLE_SIZE = 256;
+  private static final int NOISE_TABLE_MASK = NOISE_TABLE_SIZE - 1;
+
+  private final View[] targets;
+  private final float[][] noiseX;
+  private final float[][] noiseY;
+  private final Choreographer choreographer = Choreographer.getInstance();
+  private float amplitudeXPx = DEFAULT_AMPLITUDE_X_PX;
+  private float amplitudeYPx = DEFAULT_AMPLITUDE_Y_PX;
+  private float frequencyHz = DEFAULT_FREQUENCY_HZ;
+  private long startTimeNanos = -1;
+  private boolean running = false;
+
+  /** Creates an engine for the given views; the same seed always produces the same tremor. */
+  public TremorEngine(List<? extends View> targets, long seed) {
+    this.targets = targets.toArray(new View[0]);
+    Random random = new Random(seed);
+    noiseX = new float[this.targets.length][NOISE_TABLE_SIZE];
+    noiseY = new float[this.targets.length][NOISE_TABLE_SIZE];
+    for (int i = 0; i < this.targets.length; i++) {
+      fillNoise(noiseX[i], random);
+      fillNoise(noiseY[i], random);
+    }
+  }
+
+  /** Sets the largest offset, in pixels, along each axis. */
+  public void setAmplitude(float amplitudeXPx, float amplitudeYPx) {
+    this.amplitudeXPx = amplitudeXPx;
+    this.amplitudeYPx = amplitudeYPx;
+  }
+
+  /** Sets how many times per second the tremor heads towards a new offset. */
+  public void setFrequency(float frequencyHz) {
+    if (running && startTimeNanos >= 0) {
+      // Keep the current phase, so the targets don't jump.
+      long now = System.nanoTime();
+      double phase = (now - startTimeNanos) * 1e-9 * this.frequencyHz;
+      startTimeNanos = now - (long) (phase / frequencyHz * 1e9);
+    }
+    this.frequencyHz = frequencyHz;
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  public void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    startTimeNanos = -1;
+    choreographer.postFrameCallback(this);
+  }
+
+  /** Stops the tremor and moves every target back to where it was. */
+  public void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    choreographer.removeFrameCallback(this);
+    for (View target : targets) {
+      target.setTranslationX(0);
+      target.setTranslationY(0);
+    }
+  }
+
+  @Override
+  public void doFrame(long frameTimeNanos) {
+    if (!running) {
+      return;
+    }
+    if (startTimeNanos < 0) {
+      startTimeNanos = frameTimeNanos;
+    }
+    double phase = (frameTimeNanos - startTimeNanos) * 1e-9 * frequencyHz;
+    int knot = (int) (long) phase;
+    float fraction = (float) (phase - Math.floor(phase));
+    // Smoothstep, so the motion eases in and out of every knot.
+    float weight = fraction * fraction * (3 - 2 * fraction);
+    int from = knot & NOISE_TABLE_MASK;
+    int to = (knot + 1) & NOISE_TABLE_MASK;
+    for (int i = 0; i < targets.length; i++) {
+      float[] x = noiseX[i];
+      float[] y = noiseY[i];
+      targets[i].setTranslationX(amplitudeXPx * (x[from] + (x[to] - x[from]) * weight));
+      targets[i].setTranslationY(amplitudeYPx * (y[from] + (y[to] - y[from]) * weight));
+    }
+    choreographer.postFrameCallback(this);
+  }
+
+  private static void fillNoise(float[] table, Random random) {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = random.nextFloat() * 2.0f - 1.0f;
+    }
+  }
+}
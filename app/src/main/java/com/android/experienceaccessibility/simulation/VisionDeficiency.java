@@ -0,0 +1,49 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+/**
+ * Kinds of color vision deficiency, as full dichromacy matrices on linear RGB from Machado,
+ * Oliveira and Fernandes, "A Physiologically-based Model for Simulation of Color Vision
+ * Deficiency" (2009).
+ */
+public enum VisionDeficiency {
+  NONE(new float[] {1, 0, 0, 0, 1, 0, 0, 0, 1}),
+  PROTANOPIA(
+      new float[] {
+        0.152286f, 1.052583f, -0.204868f,
+        0.114503f, 0.786281f, 0.099216f,
+        -0.003882f, -0.048116f, 1.051998f
+      }),
+  DEUTERANOPIA(
+      new float[] {
+        0.367322f, 0.860646f, -0.227968f,
+        0.280085f, 0.672501f, 0.047413f,
+        -0.011820f, 0.042940f, 0.968881f
+      }),
+  TRITANOPIA(
+      new float[] {
+        1.255528f, -0.076749f, -0.178779f,
+        -0.078411f, 0.930809f, 0.147602f,
+        0.004733f, 0.691367f, 0.303900f
+      });
+
+  /** Row major 3x3 matrix from linear RGB to simulated linear RGB. */
+  final float[] linearRgbMatrix;
+
+  VisionDeficiency(float[] linearRgbMatrix) {
+    this.linearRgbMatrix = linearRgbMatrix;
+  }
+}
@@ -0,0 +1,224 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import androidx.annotation.WorkerThread;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+/**
+ * Applies a {@link VisionFilter} to the pixels of captured content. The image is split into bands
+ * of rows (or columns, for the vertical blur pass) that are processed on all cores.
+ */
+public final class VisionEngine {
+  // Three box blurs are close to a gaussian blur of the same radius.
+  private static final int BLUR_PASSES = 3;
+  private static final int LUT_MAX_INDEX = VisionFilter.LUT_SIZE - 1;
+  private static final int FRACTION_BITS = 12;
+  // For each 8-bit channel value, the lookup table node below it in linear light and the distance
+  // past it, in 1 / 2^FRACTION_BITS of a node.
+  private static final int[] LUT_NODE = new int[256];
+  private static final int[] LUT_FRACTION = new int[256];
+
+  static {
+    for (int value = 0; value < 256; value++) {
+      int position =
+          Math.round(
+              VisionFilter.srgbToLinear(value / 255f) * LUT_MAX_INDEX * (1 << FRACTION_BITS));
+      LUT_NODE[value] = Math.min(position >> FRACTION_BITS, LUT_MAX_INDEX - 1);
+      LUT_FRACTION[value] = position - (LUT_NODE[value] << FRACTION_BITS);
+    }
+  }
+
+  private static VisionEngine instance;
+
+  private final int threadCount = Runtime.getRuntime().availableProcessors();
+  private final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+  private VisionEngine() {}
+
+  /** Returns the process wide engine. */
+  public static synchronized VisionEngine getInstance() {
+    if (instance == null) {
+      instance = new VisionEngine();
+    }
+    return instance;
+  }
+
+  /** Filters ARGB pixels, stored row by row, in place. */
+  @WorkerThread
+  public void apply(int[] pixels, int width, int height, VisionFilter filter) {
+    if (width == 0 || height == 0) {
+      return;
+    }
+    int rowBands = Math.min(height, threadCount * 2);
+    if (filter.hasColorEffect()) {
+      VisionFilter.Lut lut = filter.getLut();
+      runInParallel(
+          rowBands,
+          band -> {
+            int fromRow = bandStart(band, rowBands, height);
+            int toRow = bandStart(band + 1, rowBands, height);
+            mapColors(pixels, fromRow * width, toRow * width, lut);
+          });
+    }
+    int radius = filter.getBlurRadiusPx();
+    if (radius > 0) {
+      runInParallel(
+          rowBands,
+          band -> {
+            int fromRow = bandStart(band, rowBands, height);
+            int toRow = bandStart(band + 1, rowBands, height);
+            blurRows(pixels, width, fromRow, toRow, radius);
+          });
+      int columnBands = Math.min(width, threadCount * 2);
+      runInParallel(
+          columnBands,
+          band -> {
+            int fromColumn = bandStart(band, columnBands, width);
+            int toColumn = bandStart(band + 1, columnBands, width);
+            blurColumns(pixels, width, height, fromColumn, toColumn, radius);
+          });
+    }
+  }
+
+  private static int bandStart(int band, int bands, int size) {
+    return (int) ((long) band * size / bands);
+  }
+
+  /** Runs {@code task} for every band, the first one on the calling thread, and waits for all. */
+  private void runInParallel(int bands, IntConsumer task) {
+    CountDownLatch done = new CountDownLatch(bands - 1);
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    for (int band = 1; band < bands; band++) {
+      int currentBand = band;
+      executor.execute(
+          () -> {
+            try {
+              task.accept(currentBand);
+            } catch (RuntimeException e) {
+              failure.compareAndSet(null, e);
+            } finally {
+              done.countDown();
+            }
+          });
+    }
+    task.accept(0);
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while filtering.", e);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /**
+   * Maps {@code pixels[from, to)} through the lookup tables, interpolating the mix trilinearly.
+   */
+  private static void mapColors(int[] pixels, int from, int to, VisionFilter.Lut lut) {
+    final short[] mix = lut.mix;
+    final byte[] output = lut.output;
+    final int strideB = 3;
+    final int strideG = strideB * VisionFilter.LUT_SIZE;
+    final int strideR = strideG * VisionFilter.LUT_SIZE;
+    final int one = VisionFilter.LINEAR_ONE;
+    for (int i = from; i < to; i++) {
+      int pixel = pixels[i];
+      int r = (pixel >> 16) & 0xFF;
+      int g = (pixel >> 8) & 0xFF;
+      int b = pixel & 0xFF;
+      int fr = LUT_FRACTION[r];
+      int fg = LUT_FRACTION[g];
+      int fb = LUT_FRACTION[b];
+      int node = LUT_NODE[r] * strideR + LUT_NODE[g] * strideG + LUT_NODE[b] * strideB;
+      int result = pixel & 0xFF000000;
+      for (int c = 0; c < 3; c++, node++) {
+        int x00 = lerp(mix[node], mix[node + strideB], fb);
+        int x01 = lerp(mix[node + strideG], mix[node + strideG + strideB], fb);
+        int x10 = lerp(mix[node + strideR], mix[node + strideR + strideB], fb);
+        int x11 = lerp(mix[node + strideR + strideG], mix[node + strideR + strideG + strideB], fb);
+        int mixed = lerp(lerp(x00, x01, fg), lerp(x10, x11, fg), fr);
+        int value = output[c * (one + 1) + Math.max(0, Math.min(one, mixed))] & 0xFF;
+        result |= value << (16 - 8 * c);
+      }
+      pixels[i] = result;
+    }
+  }
+
+  private static int lerp(int from, int to, int fraction) {
+    return from + (((to - from) * fraction + (1 << (FRACTION_BITS - 1))) >> FRACTION_BITS);
+  }
+
+  private static void blurRows(int[] pixels, int width, int fromRow, int toRow, int radius) {
+    int[] line = new int[width];
+    int[] scratch = new int[width];
+    for (int row = fromRow; row < toRow; row++) {
+      System.arraycopy(pixels, row * width, line, 0, width);
+      for (int pass = 0; pass < BLUR_PASSES; pass++) {
+        boxBlur(line, scratch, width, radius);
+      }
+      System.arraycopy(line, 0, pixels, row * width, width);
+    }
+  }
+
+  private static void blurColumns(
+      int[] pixels, int width, int height, int fromColumn, int toColumn, int radius) {
+    int[] line = new int[height];
+    int[] scratch = new int[height];
+    for (int column = fromColumn; column < toColumn; column++) {
+      for (int row = 0, i = column; row < height; row++, i += width) {
+        line[row] = pixels[i];
+      }
+      for (int pass = 0; pass < BLUR_PASSES; pass++) {
+        boxBlur(line, scratch, height, radius);
+      }
+      for (int row = 0, i = column; row < height; row++, i += width) {
+        pixels[i] = line[row];
+      }
+    }
+  }
+
+  /** Box blurs all four channels of {@code line} in place, clamping at the ends. */
+  private static void boxBlur(int[] line, int[] scratch, int length, int radius) {
+    int window = 2 * radius + 1;
+    int a = 0;
+    int r = 0;
+    int g = 0;
+    int b = 0;
+    for (int i = -radius; i <= radius; i++) {
+      int pixel = line[Math.max(0, Math.min(length - 1, i))];
+      a += pixel >>> 24;
+      r += (pixel >> 16) & 0xFF;
+      g += (pixel >> 8) & 0xFF;
+      b += pixel & 0xFF;
+    }
+    for (int i = 0; i < length; i++) {
+      scratch[i] = (a / window) << 24 | (r / window) << 16 | (g / window) << 8 | (b / window);
+      int leaving = line[Math.max(0, i - radius)];
+      int entering = line[Math.min(length - 1, i + radius + 1)];
+      a += (entering >>> 24) - (leaving >>> 24);
+      r += ((entering >> 16) & 0xFF) - ((leaving >> 16) & 0xFF);
+      g += ((entering >> 8) & 0xFF) - ((leaving >> 8) & 0xFF);
+      b += (entering & 0xFF) - (leaving & 0xFF);
+    }
+    System.arraycopy(scratch, 0, line, 0, length);
+  }
+}
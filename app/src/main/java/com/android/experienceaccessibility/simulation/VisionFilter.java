@@ -0,0 +1,267 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+
+/**
+ * An immutable combination of low vision effects: a color vision deficiency, contrast loss,
+ * cataract haze and blur.
+ *
+ * <p>Colors are mapped through lookup tables built once per filter, which keeps the exact,
+ * non-linear model cheap per pixel: a 3D table of how the channels mix in linear light, and a 1D
+ * table per channel of everything after that. For live views, {@link #createColorFilter()}
+ * approximates the same mapping with a color matrix; blur is only applied by {@link VisionEngine}.
+ */
+public final class VisionFilter {
+  /** Nodes per axis of the 3D lookup table, which are evenly spaced in linear light. */
+  static final int LUT_SIZE = 33;
+  /**
+   * Fixed point 1 of the linear light values in the 3D table, which is also the last index of the
+   * 1D tables. Fine enough that steps are well below one code value even near black.
+   */
+  static final int LINEAR_ONE = 1 << 14;
+
+  public static final VisionFilter CLEAR = new Builder().build();
+
+  // Scattered light in a clouded lens is slightly yellow.
+  private static final float[] HAZE_VEIL = {1f, 0.96f, 0.86f};
+
+  private final VisionDeficiency deficiency;
+  private final float contrastLoss;
+  private final float haze;
+  private final int blurRadiusPx;
+  private volatile Lut lut;
+
+  private VisionFilter(Builder builder) {
+    deficiency = builder.deficiency;
+    contrastLoss = builder.contrastLoss;
+    haze = builder.haze;
+    blurRadiusPx = builder.blurRadiusPx;
+  }
+
+  public VisionDeficiency getDeficiency() {
+    return deficiency;
+  }
+
+  public float getContrastLoss() {
+    return contrastLoss;
+  }
+
+  public float getHaze() {
+    return haze;
+  }
+
+  public int getBlurRadiusPx() {
+    return blurRadiusPx;
+  }
+
+  /** Whether the filter changes colors at all, ignoring blur. */
+  public boolean hasColorEffect() {
+    return deficiency != VisionDeficiency.NONE || contrastLoss > 0 || haze > 0;
+  }
+
+  public Builder buildUpon() {
+    return new Builder()
+        .setDeficiency(deficiency)
+        .setContrastLoss(contrastLoss)
+        .setHaze(haze)
+        .setBlurRadiusPx(blurRadiusPx);
+  }
+
+  /**
+   * Returns a color matrix approximating the color part of this filter in sRGB space, for use on
+   * a view layer or paint.
+   */
+  public ColorMatrix createColorMatrix() {
+    float[] m = deficiency.linearRgbMatrix;
+    ColorMatrix colorMatrix =
+        new ColorMatrix(
+            new float[] {
+              m[0], m[1], m[2], 0, 0,
+              m[3], m[4], m[5], 0, 0,
+              m[6], m[7], m[8], 0, 0,
+              0, 0, 0, 1, 0
+            });
+    float contrast = 1 - contrastLoss;
+    float contrastOffset = 127.5f * contrastLoss;
+    colorMatrix.postConcat(
+        new ColorMatrix(
+            new float[] {
+              contrast, 0, 0, 0, contrastOffset,
+              0, contrast, 0, 0, contrastOffset,
+              0, 0, contrast, 0, contrastOffset,
+              0, 0, 0, 1, 0
+            }));
+    float clear = 1 - haze;
+    colorMatrix.postConcat(
+        new ColorMatrix(
+            new float[] {
+              clear, 0, 0, 0, 255 * haze * HAZE_VEIL[0],
+              0, clear, 0, 0, 255 * haze * HAZE_VEIL[1],
+              0, 0, clear, 0, 255 * haze * HAZE_VEIL[2],
+              0, 0, 0, 1, 0
+            }));
+    return colorMatrix;
+  }
+
+  public ColorMatrixColorFilter createColorFilter() {
+    return new ColorMatrixColorFilter(createColorMatrix());
+  }
+
+  /** Returns the lookup tables of this filter. Built on first use and shared afterwards. */
+  Lut getLut() {
+    Lut result = lut;
+    if (result == null) {
+      // Racing threads build equal tables, so whichever wins is fine.
+      result = new Lut(this);
+      lut = result;
+    }
+    return result;
+  }
+
+  /**
+   * Maps one color through the exact model, without the lookup tables, and returns it as packed
+   * RGB. Channels are sRGB encoded, from 0 to 1.
+   */
+  int mapColor(float red, float green, float blue) {
+    float[] m = deficiency.linearRgbMatrix;
+    float linearRed = srgbToLinear(red);
+    float linearGreen = srgbToLinear(green);
+    float linearBlue = srgbToLinear(blue);
+    int color = 0;
+    for (int c = 0; c < 3; c++) {
+      float mixed = m[3 * c] * linearRed + m[3 * c + 1] * linearGreen + m[3 * c + 2] * linearBlue;
+      color = (color << 8) | mapChannel(c, mixed);
+    }
+    return color;
+  }
+
+  /** Maps the linear light value of a channel after mixing to its 8-bit sRGB output. */
+  private int mapChannel(int channel, float mixed) {
+    // Contrast is perceived on the gamma encoded scale, haze adds light linearly.
+    float encoded = linearToSrgb(clamp(mixed));
+    float linear = srgbToLinear(0.5f + (encoded - 0.5f) * (1 - contrastLoss));
+    linear = linear * (1 - haze) + HAZE_VEIL[channel] * haze;
+    return Math.round(linearToSrgb(clamp(linear)) * 255);
+  }
+
+  private static float clamp(float value) {
+    return Math.max(0, Math.min(1, value));
+  }
+
+  static float srgbToLinear(float value) {
+    return value <= 0.04045f
+        ? value / 12.92f
+        : (float) Math.pow((value + 0.055f) / 1.055f, 2.4f);
+  }
+
+  private static float linearToSrgb(float value) {
+    return value <= 0.0031308f
+        ? value * 12.92f
+        : (float) (1.055f * Math.pow(value, 1 / 2.4f) - 0.055f);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (!(other instanceof VisionFilter)) {
+      return false;
+    }
+    VisionFilter that = (VisionFilter) other;
+    return deficiency == that.deficiency
+        && contrastLoss == that.contrastLoss
+        && haze == that.haze
+        && blurRadiusPx == that.blurRadiusPx;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = deficiency.hashCode();
+    result = 31 * result + Float.floatToIntBits(contrastLoss);
+    result = 31 * result + Float.floatToIntBits(haze);
+    return 31 * result + blurRadiusPx;
+  }
+
+  /**
+   * Lookup tables of a filter. Interpolating the mix before the non-linear part of the model,
+   * rather than its final colors, keeps the result within one code value of the exact model.
+   */
+  static final class Lut {
+    /**
+     * Mixed linear light values in {@link #LINEAR_ONE} units, three per node, for nodes in red,
+     * green and blue major order. Values are not clamped, so interpolation across 0 and 1 is right.
+     */
+    final short[] mix;
+    /** For each channel, {@link #LINEAR_ONE} + 1 output values indexed by clamped mixed values. */
+    final byte[] output;
+
+    private Lut(VisionFilter filter) {
+      float[] m = filter.deficiency.linearRgbMatrix;
+      mix = new short[3 * LUT_SIZE * LUT_SIZE * LUT_SIZE];
+      int index = 0;
+      for (int r = 0; r < LUT_SIZE; r++) {
+        for (int g = 0; g < LUT_SIZE; g++) {
+          for (int b = 0; b < LUT_SIZE; b++) {
+            for (int c = 0; c < 3; c++) {
+              float mixed = (m[3 * c] * r + m[3 * c + 1] * g + m[3 * c + 2] * b) / (LUT_SIZE - 1);
+              mix[index++] = (short) Math.round(mixed * LINEAR_ONE);
+            }
+          }
+        }
+      }
+      output = new byte[3 * (LINEAR_ONE + 1)];
+      for (int c = 0; c < 3; c++) {
+        for (int i = 0; i <= LINEAR_ONE; i++) {
+          output[c * (LINEAR_ONE + 1) + i] = (byte) filter.mapChannel(c, i / (float) LINEAR_ONE);
+        }
+      }
+    }
+  }
+
+  /** Builder for {@link VisionFilter}. Everything is off by default. */
+  public static final class Builder {
+    private VisionDeficiency deficiency = VisionDeficiency.NONE;
+    private float contrastLoss = 0;
+    private float haze = 0;
+    private int blurRadiusPx = 0;
+
+    public Builder setDeficiency(VisionDeficiency deficiency) {
+      this.deficiency = deficiency;
+      return this;
+    }
+
+    /** Sets how much contrast is lost, from 0 for none to 1 for a flat grey. */
+    public Builder setContrastLoss(float contrastLoss) {
+      this.contrastLoss = clamp(contrastLoss);
+      return this;
+    }
+
+    /** Sets how much of the light is scattered into a veil, from 0 for a clear lens to 1. */
+    public Builder setHaze(float haze) {
+      this.haze = clamp(haze);
+      return this;
+    }
+
+    public Builder setBlurRadiusPx(int blurRadiusPx) {
+      this.blurRadiusPx = Math.max(0, blurRadiusPx);
+      return this;
+    }
+
+    public VisionFilter build() {
+      return new VisionFilter(this);
+    }
+  }
+}
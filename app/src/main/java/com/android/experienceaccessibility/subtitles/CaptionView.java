@@ -0,0 +1,411 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+import android.view.accessibility.CaptioningManager;
+import android.view.accessibility.CaptioningManager.CaptioningChangeListener;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.TextOutput;
+import com.google.android.exoplayer2.ui.CaptionStyleCompat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws a player's captions from text layouts built ahead of time, in place of the player view's
+ * own subtitle view.
+ *
+ * <p>Whenever the captions change, layouts for the next few cues of the {@link CueTable} are
+ * built on a background thread and kept in a small LRU keyed by text, width and style. A caption
+ * change then only looks its layout up and redraws; the view itself is never measured or laid out
+ * again. Must be used from the main thread.
+ *
+ * <p>Unless overridden by the large text or high contrast styles, captions follow the font scale
+ * and style the user chose in the system caption settings.
+ */
+public final class CaptionView extends View implements TextOutput {
+  private static final String TAG = "CaptionView";
+  // Same default size as the player's subtitle view.
+  private static final float TEXT_SIZE_FRACTION = 0.0533f;
+  private static final float LARGE_TEXT_SIZE_FRACTION = 0.08f;
+  private static final float WIDTH_FRACTION = 0.9f;
+  private static final float BOTTOM_PADDING_FRACTION = 0.08f;
+  private static final float BOX_PADDING_FRACTION = 0.25f;
+  private static final int LOOKAHEAD_CUES = 4;
+  private static final int MAX_CACHED_LAYOUTS = 16;
+  private static final int BOX_COLOR = 0x99000000;
+
+  // Shared by every caption view; layouts are cheap enough for one thread.
+  private static final ExecutorService layoutExecutor = Executors.newSingleThreadExecutor();
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final LruCache<LayoutKey, CaptionLayout> layouts = new LruCache<>(MAX_CACHED_LAYOUTS);
+  private final Paint boxPaint = new Paint();
+  private final CaptioningManager captioningManager;
+  private final CaptioningChangeListener captioningListener =
+      new CaptioningChangeListener() {
+        @Override
+        public void onFontScaleChanged(float fontScale) {
+          onUserStyleChanged();
+        }
+
+        @Override
+        public void onUserStyleChanged(CaptioningManager.CaptionStyle userStyle) {
+          onUserStyleChanged();
+        }
+      };
+  private List<String> texts = Collections.emptyList();
+  private List<CaptionLayout> currentLayouts = Collections.emptyList();
+  @Nullable private SimpleExoPlayer player;
+  @Nullable private CueTable cueTable;
+  @Nullable private LayoutSpec spec;
+  private boolean largeText = false;
+  private boolean highContrast = false;
+  private float userFontScale = 1f;
+  // Null when system captions are off, in which case the view's own style is used.
+  @Nullable private CaptionStyleCompat userStyle;
+  // Bumped when the player changes, so cue tables loaded for an earlier one are dropped.
+  private int playerGeneration = 0;
+  private int missCount = 0;
+
+  public CaptionView(Context context) {
+    this(context, /* attrs= */ null);
+  }
+
+  public CaptionView(Context context, @Nullable AttributeSet attrs) {
+    super(context, attrs);
+    setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
+    captioningManager =
+        (CaptioningManager) context.getSystemService(Context.CAPTIONING_SERVICE);
+    readUserStyle();
+  }
+
+  /**
+   * Shows the captions of the given player, or none if it is null. The subtitles are the ones the
+   * player was prepared with, and are only used to know which cues come next.
+   */
+  public void setPlayer(@Nullable SimpleExoPlayer player, @Nullable String subtitlesPath) {
+    if (this.player != null) {
+      this.player.removeTextOutput(this);
+    }
+    this.player = player;
+    cueTable = null;
+    playerGeneration++;
+    onCues(Collections.emptyList());
+    if (player == null) {
+      return;
+    }
+    player.addTextOutput(this);
+    if (subtitlesPath != null) {
+      int generation = playerGeneration;
+      Context context = getContext().getApplicationContext();
+      layoutExecutor.execute(
+          () -> {
+            try {
+              CueTable loadedCueTable =
+                  SubtitleRepository.getInstance(context).getCueTable(subtitlesPath);
+              handler.post(() -> onCueTableLoaded(loadedCueTable, generation));
+            } catch (IOException e) {
+              Log.w(TAG, "Cannot load " + subtitlesPath + ", captions are laid out on demand", e);
+            }
+          });
+    }
+  }
+
+  /** Draws captions bigger than the user's caption settings, for viewers with low vision. */
+  public void setLargeText(boolean largeText) {
+    if (this.largeText != largeText) {
+      this.largeText = largeText;
+      onSpecChanged();
+    }
+  }
+
+  /** Draws captions in bold white on an opaque black box. */
+  public void setHighContrast(boolean highContrast) {
+    if (this.highContrast != highContrast) {
+      this.highContrast = highContrast;
+      onSpecChanged();
+    }
+  }
+
+  /** Returns how many captions had to be laid out on the main thread. */
+  public int getMissCount() {
+    return missCount;
+  }
+
+  @Override
+  public void onCues(List<Cue> cues) {
+    List<String> newTexts = new ArrayList<>(cues.size());
+    for (Cue cue : cues) {
+      if (cue.text != null) {
+        newTexts.add(cue.text.toString());
+      }
+    }
+    if (newTexts.equals(texts)) {
+      return;
+    }
+    texts = newTexts;
+    updateCurrentLayouts();
+    prefetch();
+  }
+
+  @Override
+  protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+    super.onSizeChanged(width, height, oldWidth, oldHeight);
+    onSpecChanged();
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    captioningManager.addCaptioningChangeListener(captioningListener);
+    onUserStyleChanged();
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    super.onDetachedFromWindow();
+    captioningManager.removeCaptioningChangeListener(captioningListener);
+    handler.removeCallbacksAndMessages(null);
+  }
+
+  @Override
+  protected void onDraw(Canvas canvas) {
+    if (currentLayouts.isEmpty() || spec == null) {
+      return;
+    }
+    float boxPadding = spec.textSize * BOX_PADDING_FRACTION;
+    float bottom = getHeight() * (1 - BOTTOM_PADDING_FRACTION);
+    float left = (getWidth() - spec.width) / 2f;
+    // The last caption is the lowest, as in the player's subtitle view.
+    for (int i = currentLayouts.size() - 1; i >= 0; i--) {
+      CaptionLayout caption = currentLayouts.get(i);
+      float top = bottom - caption.layout.getHeight();
+      float center = getWidth() / 2f;
+      canvas.drawRect(
+          center - caption.textWidth / 2 - boxPadding,
+          top - boxPadding,
+          center + caption.textWidth / 2 + boxPadding,
+          bottom + boxPadding,
+          boxPaint);
+      canvas.save();
+      canvas.translate(left, top);
+      caption.layout.draw(canvas);
+      canvas.restore();
+      bottom = top - 3 * boxPadding;
+    }
+  }
+
+  private void onCueTableLoaded(CueTable loadedCueTable, int generation) {
+    if (generation == playerGeneration) {
+      cueTable = loadedCueTable;
+      prefetch();
+    }
+  }
+
+  private void readUserStyle() {
+    if (captioningManager.isEnabled()) {
+      userFontScale = captioningManager.getFontScale();
+      userStyle = CaptionStyleCompat.createFromCaptionStyle(captioningManager.getUserStyle());
+    } else {
+      userFontScale = 1f;
+      userStyle = null;
+    }
+  }
+
+  private void onUserStyleChanged() {
+    readUserStyle();
+    onSpecChanged();
+  }
+
+  private void onSpecChanged() {
+    if (getWidth() == 0 || getHeight() == 0) {
+      spec = null;
+      return;
+    }
+    float textSize = getHeight() * TEXT_SIZE_FRACTION * userFontScale;
+    if (largeText) {
+      textSize = Math.max(textSize, getHeight() * LARGE_TEXT_SIZE_FRACTION);
+    }
+    int textColor = Color.WHITE;
+    Typeface typeface = Typeface.DEFAULT;
+    int boxColor = BOX_COLOR;
+    if (highContrast) {
+      typeface = Typeface.DEFAULT_BOLD;
+      boxColor = Color.BLACK;
+    } else if (userStyle != null) {
+      textColor = userStyle.foregroundColor;
+      if (userStyle.typeface != null) {
+        typeface = userStyle.typeface;
+      }
+      boxColor = userStyle.backgroundColor;
+    }
+    boxPaint.setColor(boxColor);
+    LayoutSpec newSpec =
+        new LayoutSpec((int) (getWidth() * WIDTH_FRACTION), textSize, textColor, typeface);
+    if (newSpec.equals(spec)) {
+      invalidate();
+      return;
+    }
+    spec = newSpec;
+    updateCurrentLayouts();
+    prefetch();
+  }
+
+  /** Looks up the layouts of the shown captions, building any that were not prefetched. */
+  private void updateCurrentLayouts() {
+    LayoutSpec layoutSpec = spec;
+    List<CaptionLayout> newLayouts = new ArrayList<>(texts.size());
+    if (layoutSpec != null) {
+      for (String text : texts) {
+        LayoutKey key = new LayoutKey(text, layoutSpec);
+        CaptionLayout caption = layouts.get(key);
+        if (caption == null) {
+          missCount++;
+          caption = new CaptionLayout(text, layoutSpec);
+          layouts.put(key, caption);
+        }
+        newLayouts.add(caption);
+      }
+    }
+    currentLayouts = newLayouts;
+    invalidate();
+  }
+
+  /** Builds the layouts of the cues after the current position in the background. */
+  private void prefetch() {
+    LayoutSpec layoutSpec = spec;
+    CueTable cues = cueTable;
+    if (layoutSpec == null || cues == null || player == null) {
+      return;
+    }
+    int first = cues.floorIndex(player.getCurrentPosition() * 1000) + 1;
+    int end = Math.min(cues.size(), first + LOOKAHEAD_CUES);
+    for (int i = first; i < end; i++) {
+      String text = cues.getText(i);
+      LayoutKey key = new LayoutKey(text, layoutSpec);
+      if (layouts.get(key) == null) {
+        layoutExecutor.execute(
+            () -> {
+              if (layouts.get(key) == null) {
+                layouts.put(key, new CaptionLayout(text, layoutSpec));
+              }
+            });
+      }
+    }
+  }
+
+  /** Everything but the text that a layout depends on. */
+  private static final class LayoutSpec {
+    private final int width;
+    private final float textSize;
+    private final int textColor;
+    private final Typeface typeface;
+    // Template only; every layout gets its own copy, as a layout keeps drawing with its paint.
+    private final TextPaint paint;
+
+    private LayoutSpec(int width, float textSize, int textColor, Typeface typeface) {
+      this.width = width;
+      this.textSize = textSize;
+      this.textColor = textColor;
+      this.typeface = typeface;
+      paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+      paint.setColor(textColor);
+      paint.setTextSize(textSize);
+      paint.setTypeface(typeface);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof LayoutSpec)) {
+        return false;
+      }
+      LayoutSpec other = (LayoutSpec) o;
+      return width == other.width
+          && textSize == other.textSize
+          && textColor == other.textColor
+          && typeface.equals(other.typeface);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 31 * width + Float.floatToIntBits(textSize);
+      result = 31 * result + textColor;
+      return 31 * result + typeface.hashCode();
+    }
+  }
+
+  private static final class LayoutKey {
+    private final String text;
+    private final LayoutSpec spec;
+
+    private LayoutKey(String text, LayoutSpec spec) {
+      this.text = text;
+      this.spec = spec;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof LayoutKey)) {
+        return false;
+      }
+      LayoutKey other = (LayoutKey) o;
+      return text.equals(other.text) && spec.equals(other.spec);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * text.hashCode() + spec.hashCode();
+    }
+  }
+
+  /** A caption laid out for one spec, with the width of its longest line. */
+  private static final class CaptionLayout {
+    private final StaticLayout layout;
+    private final float textWidth;
+
+    private CaptionLayout(String text, LayoutSpec spec) {
+      layout =
+          StaticLayout.Builder.obtain(text, 0, text.length(), new TextPaint(spec.paint), spec.width)
+              .setAlignment(Layout.Alignment.ALIGN_CENTER)
+              .setIncludePad(false)
+              .build();
+      float maxLineWidth = 0;
+      for (int i = 0; i < layout.getLineCount(); i++) {
+        maxLineWidth = Math.max(maxLineWidth, layout.getLineWidth(i));
+      }
+      textWidth = maxLineWidth;
+    }
+  }
+}
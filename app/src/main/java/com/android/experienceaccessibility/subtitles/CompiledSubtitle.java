@@ -0,0 +1,95 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.text.Cue;
+import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.util.Util;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** ExoPlayer view of a {@link CueTable}, with the cues shown between each pair of events. */
+final class CompiledSubtitle implements Subtitle {
+  private final long[] eventTimesUs;
+  private final List<List<Cue>> cuesByInterval;
+
+  CompiledSubtitle(CueTable cueTable) {
+    int cueCount = cueTable.size();
+    long[] times = new long[cueCount * 2];
+    for (int i = 0; i < cueCount; i++) {
+      times[2 * i] = cueTable.getStartTimeUs(i);
+      times[2 * i + 1] = cueTable.getEndTimeUs(i);
+    }
+    Arrays.sort(times);
+    int eventCount = 0;
+    for (int i = 0; i < times.length; i++) {
+      if (i == 0 || times[i] != times[i - 1]) {
+        times[eventCount++] = times[i];
+      }
+    }
+    eventTimesUs = Arrays.copyOf(times, eventCount);
+
+    // Interval i runs from event i to event i + 1.
+    cuesByInterval = new ArrayList<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      cuesByInterval.add(Collections.emptyList());
+    }
+    for (int i = 0; i < cueCount; i++) {
+      Cue cue = new Cue.Builder().setText(cueTable.getText(i)).build();
+      int first = Arrays.binarySearch(eventTimesUs, cueTable.getStartTimeUs(i));
+      int last = Arrays.binarySearch(eventTimesUs, cueTable.getEndTimeUs(i));
+      for (int interval = first; interval < last; interval++) {
+        List<Cue> cues = cuesByInterval.get(interval);
+        if (cues.isEmpty()) {
+          cues = new ArrayList<>(1);
+          cuesByInterval.set(interval, cues);
+        }
+        cues.add(cue);
+      }
+    }
+  }
+
+  @Override
+  public int getNextEventTimeIndex(long timeUs) {
+    int index =
+        Util.binarySearchCeil(
+            eventTimesUs, timeUs, /* inclusive= */ false, /* stayInBounds= */ false);
+    return index < eventTimesUs.length ? index : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getEventTimeCount() {
+    return eventTimesUs.length;
+  }
+
+  @Override
+  public long getEventTime(int index) {
+    return eventTimesUs[index];
+  }
+
+  @Override
+  public List<Cue> getCues(long timeUs) {
+    int interval =
+        Util.binarySearchFloor(
+            eventTimesUs, timeUs, /* inclusive= */ true, /* stayInBounds= */ false);
+    if (interval < 0) {
+      return Collections.emptyList();
+    }
+    return cuesByInterval.get(interval);
+  }
+}
@@ -0,0 +1,38 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import com.google.android.exoplayer2.text.SimpleSubtitleDecoder;
+import com.google.android.exoplayer2.text.Subtitle;
+import com.google.android.exoplayer2.text.SubtitleDecoderException;
+import java.io.IOException;
+
+/** Decodes {@link CueTable} files without any text parsing. */
+public final class CompiledSubtitleDecoder extends SimpleSubtitleDecoder {
+
+  public CompiledSubtitleDecoder() {
+    super("CompiledSubtitleDecoder");
+  }
+
+  @Override
+  protected Subtitle decode(byte[] data, int length, boolean reset)
+      throws SubtitleDecoderException {
+    try {
+      return new CompiledSubtitle(CueTable.read(data, length));
+    } catch (IOException e) {
+      throw new SubtitleDecoderException(e);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.text.SubtitleDecoder;
+import com.google.android.exoplayer2.text.SubtitleDecoderFactory;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+/**
+ * Subtitle decoder factory that understands {@link CueTable} files and delegates every other
+ * format to {@link SubtitleDecoderFactory#DEFAULT}.
+ */
+public final class CompiledSubtitleDecoderFactory implements SubtitleDecoderFactory {
+  /** MIME type of {@link CueTable} files. */
+  public static final String MIME_TYPE = "application/x-experienceaccessibility-cues";
+
+  static {
+    MimeTypes.registerCustomMimeType(MIME_TYPE, "eacues", C.TRACK_TYPE_TEXT);
+  }
+
+  @Override
+  public boolean supportsFormat(Format format) {
+    return MIME_TYPE.equals(format.sampleMimeType)
+        || SubtitleDecoderFactory.DEFAULT.supportsFormat(format);
+  }
+
+  @Override
+  public SubtitleDecoder createDecoder(Format format) {
+    if (MIME_TYPE.equals(format.sampleMimeType)) {
+      return new CompiledSubtitleDecoder();
+    }
+    return SubtitleDecoderFactory.DEFAULT.createDecoder(format);
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import androidx.annotation.WorkerThread;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Loads compiled cue tables from the assets and keeps them for the rest of the process. */
+public final class SubtitleRepository {
+  private static final String ASSET_URI_PREFIX = "file:///android_asset/";
+
+  private static SubtitleRepository instance;
+
+  private final AssetManager assets;
+  private final ConcurrentHashMap<String, CueTable> cueTables = new ConcurrentHashMap<>();
+
+  private SubtitleRepository(Context context) {
+    assets = context.getAssets();
+  }
+
+  /** Returns the app wide repository. */
+  public static synchronized SubtitleRepository getInstance(Context context) {
+    if (instance == null) {
+      instance = new SubtitleRepository(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Returns the cue table at the given asset path, either as an asset name or as a {@code
+   * file:///android_asset/} URI, loading it on first use.
+   */
+  @WorkerThread
+  public CueTable getCueTable(String path) throws IOException {
+    String assetName =
+        path.startsWith(ASSET_URI_PREFIX) ? path.substring(ASSET_URI_PREFIX.length()) : path;
+    CueTable cueTable = cueTables.get(assetName);
+    if (cueTable == null) {
+      byte[] data;
+      try (InputStream input = assets.open(assetName)) {
+        data = ByteStreams.toByteArray(input);
+      }
+      cueTable = CueTable.read(data, data.length);
+      cueTables.put(assetName, cueTable);
+    }
+    return cueTable;
+  }
+}
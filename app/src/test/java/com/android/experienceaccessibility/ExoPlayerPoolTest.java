@@ -0,0 +1,109 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import android.content.Context;
+import androidx.test.core.app.ApplicationProvider;
+import com.android.experienceaccessibility.simulation.HearingLossProfile;
+import com.google.android.exoplayer2.PlaybackParameters;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public final class ExoPlayerPoolTest {
+  private Context context;
+  private ExoPlayerPool pool;
+  private final List<SimpleExoPlayer> builtPlayers = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    context = ApplicationProvider.getApplicationContext();
+    pool = ExoPlayerPool.getInstance(context);
+  }
+
+  @After
+  public void tearDown() {
+    for (SimpleExoPlayer player : builtPlayers) {
+      player.release();
+    }
+  }
+
+  @Test
+  public void resetSettings_restoresDefaults() {
+    SimpleExoPlayer player = build();
+    player.setPlayWhenReady(true);
+    player.setRepeatMode(Player.REPEAT_MODE_ALL);
+    player.setShuffleModeEnabled(true);
+    player.setPlaybackParameters(new PlaybackParameters(/* speed= */ 1.5f, /* pitch= */ 0.8f));
+    player.setVolume(0.2f);
+    ExoPlayerFactory.setHearingLossProfile(player, HearingLossProfile.SEVERE);
+    DefaultTrackSelector trackSelector = (DefaultTrackSelector) player.getTrackSelector();
+    trackSelector.setParameters(
+        trackSelector.buildUponParameters().setPreferredTextLanguage("fr"));
+
+    pool.resetSettings(player);
+
+    assertFalse(player.getPlayWhenReady());
+    assertEquals(Player.REPEAT_MODE_OFF, player.getRepeatMode());
+    assertFalse(player.getShuffleModeEnabled());
+    assertEquals(PlaybackParameters.DEFAULT, player.getPlaybackParameters());
+    assertEquals(1f, player.getVolume(), 0f);
+    assertEquals(HearingLossProfile.NONE, ExoPlayerFactory.getHearingLossProfile(player));
+    assertEquals(
+        DefaultTrackSelector.Parameters.getDefaults(context), trackSelector.getParameters());
+  }
+
+  @Test
+  public void release_handsTheResetPlayerToTheNextBorrower() {
+    SimpleExoPlayer player = pool.acquire();
+    builtPlayers.add(player);
+    player.setShuffleModeEnabled(true);
+    player.setPlaybackParameters(new PlaybackParameters(/* speed= */ 2f));
+    int hitCount = pool.getHitCount();
+
+    pool.release(player);
+    SimpleExoPlayer reused = pool.acquire();
+
+    assertSame(player, reused);
+    assertEquals(hitCount + 1, pool.getHitCount());
+    assertEquals(Player.STATE_IDLE, reused.getPlaybackState());
+    assertEquals(0, reused.getMediaItemCount());
+    assertFalse(reused.getShuffleModeEnabled());
+    assertEquals(PlaybackParameters.DEFAULT, reused.getPlaybackParameters());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void release_rejectsForeignPlayer() {
+    pool.release(build());
+  }
+
+  private SimpleExoPlayer build() {
+    SimpleExoPlayer player = ExoPlayerFactory.buildExoPlayer(context);
+    builtPlayers.add(player);
+    return player;
+  }
+}
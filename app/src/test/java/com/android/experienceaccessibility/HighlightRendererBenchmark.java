@@ -0,0 +1,90 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility;
+
+import static org.junit.Assume.assumeTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.graphics.Color;
+import android.os.Looper;
+import android.view.View.MeasureSpec;
+import androidx.test.core.app.ApplicationProvider;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Locale;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+/**
+ * Reports how many bytes moving the reader highlight allocates per frame, with a word spoken every
+ * frame, net of what the looper allocates to run empty frames. Drawing is left out, because
+ * Robolectric's canvas records everything drawn. Only runs with {@code ./gradlew
+ * :app:testDebugUnitTest -Pbenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public final class HighlightRendererBenchmark {
+  private static final Duration FRAME = Duration.ofMillis(16);
+  private static final int WARM_UP_FRAMES = 2_000;
+  private static final int MEASURED_FRAMES = 10_000;
+  private static final int WORD_LENGTH = 5;
+
+  @Test
+  public void bytesPerFrame() {
+    assumeTrue(Boolean.getBoolean("benchmark"));
+    HighlightTextView textView = new HighlightTextView(ApplicationProvider.getApplicationContext());
+    StringBuilder text = new StringBuilder();
+    while (text.length() < 2_000) {
+      text.append("word ");
+    }
+    textView.setText(text);
+    textView.measure(
+        MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+    textView.layout(0, 0, textView.getMeasuredWidth(), textView.getMeasuredHeight());
+    HighlightRenderer renderer = new HighlightRenderer(textView, Color.YELLOW);
+
+    run(renderer, text.length(), WARM_UP_FRAMES, /* highlight= */ true);
+    long emptyFrameBytes = run(renderer, text.length(), MEASURED_FRAMES, /* highlight= */ false);
+    long highlightFrameBytes = run(renderer, text.length(), MEASURED_FRAMES, /* highlight= */ true);
+    renderer.release();
+
+    System.out.printf(
+        Locale.US,
+        "%.1f bytes per highlight update, %.1f bytes per empty frame%n",
+        (double) (highlightFrameBytes - emptyFrameBytes) / MEASURED_FRAMES,
+        (double) emptyFrameBytes / MEASURED_FRAMES);
+  }
+
+  /**
+   * Runs frames, moving the highlight to the next word in each if asked, and returns the bytes
+   * allocated meanwhile.
+   */
+  private static long run(
+      HighlightRenderer renderer, int textLength, int frames, boolean highlight) {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long startBytes = threads.getThreadAllocatedBytes(threadId);
+    for (int frame = 0, start = 0; frame < frames; frame++) {
+      if (highlight) {
+        renderer.setHighlight(start, start + WORD_LENGTH - 1);
+        start = (start + WORD_LENGTH) % (textLength - WORD_LENGTH);
+      }
+      shadowOf(Looper.getMainLooper()).idleFor(FRAME);
+    }
+    return threads.getThreadAllocatedBytes(threadId) - startBytes;
+  }
+}
@@ -0,0 +1,145 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.auditory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.viewpager2.widget.ViewPager2;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public final class CarouselTransformerTest {
+  private static final int PAGER_WIDTH = 1080;
+  private static final int PEEK = 120;
+  private static final int PAGE_COUNT = 5;
+  // A swipe from one page to the next at 60 fps.
+  private static final int SWIPE_FRAMES = 30;
+
+  private Context context;
+
+  @Before
+  public void setUp() {
+    context = ApplicationProvider.getApplicationContext();
+  }
+
+  @Test
+  public void transformPage_pagesAtTheirTargets_getNoWrites() {
+    CarouselTransformer placingTransformer =
+        attach(new CarouselTransformer(context, /* frameBudgeted= */ true));
+    View[] placedPages = createPages();
+    transformAll(placingTransformer, placedPages, 0.3f);
+    View[] pages = createPages();
+    for (int i = 0; i < PAGE_COUNT; i++) {
+      pages[i].setScaleX(placedPages[i].getScaleX());
+      pages[i].setScaleY(placedPages[i].getScaleY());
+      pages[i].setTranslationX(placedPages[i].getTranslationX());
+      ViewCompat.setElevation(pages[i], ViewCompat.getElevation(placedPages[i]));
+    }
+    CarouselTransformer transformer =
+        attach(new CarouselTransformer(context, /* frameBudgeted= */ true));
+
+    transformAll(transformer, pages, 0.3f);
+
+    assertEquals(0, transformer.getPropertyWriteCount());
+  }
+
+  @Test
+  public void transformPage_sameFrameTwice_writesNothingTheSecondTime() {
+    CarouselTransformer transformer =
+        attach(new CarouselTransformer(context, /* frameBudgeted= */ true));
+    View[] pages = createPages();
+    transformAll(transformer, pages, 0.5f);
+    long writeCount = transformer.getPropertyWriteCount();
+
+    transformAll(transformer, pages, 0.5f);
+
+    assertEquals(writeCount, transformer.getPropertyWriteCount());
+  }
+
+  @Test
+  public void transformPage_swipe_writesLessThanUnbudgeted() {
+    double budgetedWrites =
+        swipeWritesPerFrame(new CarouselTransformer(context, /* frameBudgeted= */ true));
+    double unbudgetedWrites =
+        swipeWritesPerFrame(new CarouselTransformer(context, /* frameBudgeted= */ false));
+
+    System.out.printf(
+        Locale.US,
+        "%d pages: %.1f writes per frame frame budgeted, %.1f unbudgeted%n",
+        PAGE_COUNT,
+        budgetedWrites,
+        unbudgetedWrites);
+    assertTrue(budgetedWrites < unbudgetedWrites);
+  }
+
+  /** Returns the average property writes per frame of a swipe while the pager is dragged. */
+  private double swipeWritesPerFrame(CarouselTransformer transformer) {
+    ViewPager2 viewPager = createPager();
+    transformer.attachTo(viewPager);
+    // Moves the pager out of its idle state, as a finger would.
+    assertTrue(viewPager.beginFakeDrag());
+    assertEquals(ViewPager2.SCROLL_STATE_DRAGGING, viewPager.getScrollState());
+    View[] pages = createPages();
+    transformAll(transformer, pages, 0);
+    long startCount = transformer.getPropertyWriteCount();
+    for (int frame = 1; frame <= SWIPE_FRAMES; frame++) {
+      transformAll(transformer, pages, (float) frame / SWIPE_FRAMES);
+    }
+    return (double) (transformer.getPropertyWriteCount() - startCount) / SWIPE_FRAMES;
+  }
+
+  private CarouselTransformer attach(CarouselTransformer transformer) {
+    transformer.attachTo(createPager());
+    return transformer;
+  }
+
+  /** Returns a pager laid out like the landing screen's, with cards peeking in from the sides. */
+  private ViewPager2 createPager() {
+    ViewPager2 viewPager = new ViewPager2(context);
+    RecyclerView pageContainer = (RecyclerView) viewPager.getChildAt(0);
+    pageContainer.setPadding(PEEK, 0, PEEK, 0);
+    viewPager.measure(
+        MeasureSpec.makeMeasureSpec(PAGER_WIDTH, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(PAGER_WIDTH, MeasureSpec.EXACTLY));
+    viewPager.layout(0, 0, PAGER_WIDTH, PAGER_WIDTH);
+    return viewPager;
+  }
+
+  private View[] createPages() {
+    View[] pages = new View[PAGE_COUNT];
+    for (int i = 0; i < PAGE_COUNT; i++) {
+      pages[i] = new View(context);
+    }
+    return pages;
+  }
+
+  /** Transforms the pages as the pager does when it is {@code scroll} pages past the middle one. */
+  private static void transformAll(CarouselTransformer transformer, View[] pages, float scroll) {
+    for (int i = 0; i < pages.length; i++) {
+      transformer.transformPage(pages[i], i - pages.length / 2 - scroll);
+    }
+  }
+}
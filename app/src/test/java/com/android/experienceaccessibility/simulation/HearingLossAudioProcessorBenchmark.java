@@ -0,0 +1,76 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import org.junit.Test;
+
+/**
+ * Reports how many samples per second the processor filters, per profile, on stereo 44.1 kHz
+ * buffers of music-like noise. Only runs with {@code ./gradlew :app:testDebugUnitTest
+ * -Pbenchmark}.
+ */
+public final class HearingLossAudioProcessorBenchmark {
+  private static final int SAMPLE_RATE = 44_100;
+  private static final int CHANNEL_COUNT = 2;
+  private static final int FRAMES_PER_BUFFER = 4096;
+  private static final int WARM_UP_BUFFERS = 2_000;
+  private static final int MEASURED_BUFFERS = 2_000;
+
+  @Test
+  public void samplesPerSecond() throws Exception {
+    assumeTrue(Boolean.getBoolean("benchmark"));
+    ByteBuffer input =
+        ByteBuffer.allocateDirect(FRAMES_PER_BUFFER * CHANNEL_COUNT * 2)
+            .order(ByteOrder.nativeOrder());
+    long seed = 1;
+    while (input.hasRemaining()) {
+      seed = seed * 6364136223846793005L + 1442695040888963407L;
+      input.putShort((short) ((seed >> 48) / 4));
+    }
+    for (HearingLossProfile profile : HearingLossProfile.values()) {
+      HearingLossAudioProcessor processor = new HearingLossAudioProcessor();
+      processor.configure(new AudioFormat(SAMPLE_RATE, CHANNEL_COUNT, C.ENCODING_PCM_16BIT));
+      processor.flush();
+      processor.setProfile(profile);
+      run(processor, input, WARM_UP_BUFFERS);
+      long startNs = System.nanoTime();
+      run(processor, input, MEASURED_BUFFERS);
+      double seconds = (System.nanoTime() - startNs) / 1e9;
+      double samplesPerSecond =
+          (double) MEASURED_BUFFERS * FRAMES_PER_BUFFER * CHANNEL_COUNT / seconds;
+      System.out.printf(
+          Locale.US,
+          "%s: %.1f M samples/s, %.0fx real time%n",
+          profile,
+          samplesPerSecond / 1e6,
+          samplesPerSecond / (SAMPLE_RATE * CHANNEL_COUNT));
+    }
+  }
+
+  private static void run(HearingLossAudioProcessor processor, ByteBuffer input, int buffers) {
+    for (int i = 0; i < buffers; i++) {
+      input.rewind();
+      processor.queueInput(input);
+      processor.getOutput();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import org.junit.Test;
+
+/** Runs test vectors through the processor on the JVM; it only depends on ExoPlayer. */
+public final class HearingLossAudioProcessorTest {
+  static final int SAMPLE_RATE = 44_100;
+  // Same order of size as the buffers the audio sink hands over.
+  private static final int FRAMES_PER_BUFFER = 1024;
+  // Filters settle well within this, so levels are only measured after it.
+  private static final int SETTLING_SAMPLES = SAMPLE_RATE / 10;
+  private static final int SAMPLE_COUNT = SAMPLE_RATE / 2;
+  private static final double TEST_LEVEL = 0.5;
+
+  @Test
+  public void none_passesSamplesThroughBitExact() throws Exception {
+    short[] input = new short[SAMPLE_COUNT];
+    Random random = new Random(/* seed= */ 1);
+    for (int i = 0; i < input.length; i++) {
+      input[i] = (short) random.nextInt();
+    }
+    input[0] = Short.MIN_VALUE;
+    input[1] = Short.MAX_VALUE;
+
+    assertArrayEquals(input, process(HearingLossProfile.NONE, /* channelCount= */ 1, input));
+    short[] stereo = process(HearingLossProfile.NONE, /* channelCount= */ 2, input);
+    for (int i = 0; i < input.length; i++) {
+      assertEquals(input[i], stereo[2 * i]);
+      assertEquals(input[i], stereo[2 * i + 1]);
+    }
+  }
+
+  @Test
+  public void mild_matchesItsAudiogram() throws Exception {
+    assertMatchesAudiogram(HearingLossProfile.MILD_HIGH_FREQUENCY, /* maxFrequency= */ 8000);
+  }
+
+  @Test
+  public void moderate_matchesItsAudiogramBelowItsLowPass() throws Exception {
+    assertMatchesAudiogram(HearingLossProfile.MODERATE, /* maxFrequency= */ 2000);
+  }
+
+  @Test
+  public void moderate_attenuatesFourKilohertzByItsAudiogramLoss() throws Exception {
+    // The audiogram says 55 dB; the start of the 6 kHz roll-off takes about another dB.
+    assertEquals(-56, measureGainDb(HearingLossProfile.MODERATE, 4000), 2.5);
+  }
+
+  @Test
+  public void moderate_cutsAboveItsLowPass() throws Exception {
+    // The bands alone let 16 kHz back up to about -23 dB.
+    double gainDb = measureGainDb(HearingLossProfile.MODERATE, 16_000);
+    assertTrue("Gain " + gainDb, gainDb < -35);
+  }
+
+  @Test
+  public void severe_attenuatesMoreThanModerate() throws Exception {
+    // Not at 4 kHz, where the tinnitus tone is.
+    for (float frequency : new float[] {250, 500, 1000, 2000}) {
+      assertTrue(
+          "At " + frequency + " Hz",
+          measureGainDb(HearingLossProfile.SEVERE, frequency)
+              < measureGainDb(HearingLossProfile.MODERATE, frequency));
+    }
+  }
+
+  @Test
+  public void severe_cutsAboveItsLowPass() throws Exception {
+    // The bands alone let 16 kHz back up to about -40 dB.
+    double gainDb = measureGainDb(HearingLossProfile.SEVERE, 16_000);
+    assertTrue("Gain " + gainDb, gainDb < -60);
+  }
+
+  @Test
+  public void severe_addsTinnitusToneToSilence() throws Exception {
+    short[] output =
+        process(HearingLossProfile.SEVERE, /* channelCount= */ 1, new short[SAMPLE_COUNT]);
+
+    double toneDb = 20 * Math.log10(amplitude(output, 4000));
+    assertEquals(-38, toneDb, 1);
+    // Nothing but the tone: the level elsewhere is far below it.
+    assertTrue(amplitude(output, 1000) < 1e-3 * amplitude(output, 4000));
+  }
+
+  @Test
+  public void severe_tinnitusIsTheSameOnEveryChannel() throws Exception {
+    short[] output =
+        process(HearingLossProfile.SEVERE, /* channelCount= */ 2, new short[SAMPLE_COUNT]);
+
+    for (int i = 0; i < output.length; i += 2) {
+      assertEquals(output[i], output[i + 1]);
+    }
+  }
+
+  /** Asserts the gain at every audiogram frequency up to the given one is within 1 dB of it. */
+  private static void assertMatchesAudiogram(HearingLossProfile profile, float maxFrequency)
+      throws UnhandledAudioFormatException {
+    for (int i = 0; i < HearingLossProfile.AUDIOGRAM_FREQUENCIES_HZ.length; i++) {
+      float frequency = HearingLossProfile.AUDIOGRAM_FREQUENCIES_HZ[i];
+      if (frequency <= maxFrequency) {
+        assertEquals(
+            "At " + frequency + " Hz",
+            -profile.audiogramLossDb[i],
+            measureGainDb(profile, frequency),
+            /* delta= */ 1);
+      }
+    }
+  }
+
+  /** Returns how much the profile changes the level of a sine, in dB. */
+  private static double measureGainDb(HearingLossProfile profile, double frequency)
+      throws UnhandledAudioFormatException {
+    short[] output = process(profile, /* channelCount= */ 1, sine(frequency, SAMPLE_COUNT));
+    return 20 * Math.log10(amplitude(output, frequency) / TEST_LEVEL);
+  }
+
+  static short[] sine(double frequency, int sampleCount) {
+    short[] samples = new short[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      double phase = 2 * Math.PI * frequency * i / SAMPLE_RATE;
+      samples[i] = (short) Math.round(TEST_LEVEL * 32767 * Math.sin(phase));
+    }
+    return samples;
+  }
+
+  /** Returns the amplitude of one frequency of the settled part of mono samples, full scale 1. */
+  private static double amplitude(short[] samples, double frequency) {
+    // Goertzel algorithm.
+    double coefficient = 2 * Math.cos(2 * Math.PI * frequency / SAMPLE_RATE);
+    double s1 = 0;
+    double s2 = 0;
+    int count = 0;
+    for (int i = SETTLING_SAMPLES; i < samples.length; i++, count++) {
+      double s0 = samples[i] / 32768.0 + coefficient * s1 - s2;
+      s2 = s1;
+      s1 = s0;
+    }
+    double power = s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+    return 2 * Math.sqrt(power) / count;
+  }
+
+  /**
+   * Feeds interleaved samples, the same on every channel, through a new processor in buffers like
+   * the audio sink's, and returns its output.
+   */
+  static short[] process(HearingLossProfile profile, int channelCount, short[] samples)
+      throws UnhandledAudioFormatException {
+    HearingLossAudioProcessor processor = new HearingLossAudioProcessor();
+    processor.configure(new AudioFormat(SAMPLE_RATE, channelCount, C.ENCODING_PCM_16BIT));
+    processor.flush();
+    processor.setProfile(profile);
+    short[] output = new short[samples.length * channelCount];
+    ByteBuffer input =
+        ByteBuffer.allocateDirect(FRAMES_PER_BUFFER * channelCount * 2)
+            .order(ByteOrder.nativeOrder());
+    int outputIndex = 0;
+    for (int start = 0; start < samples.length; start += FRAMES_PER_BUFFER) {
+      input.clear();
+      int end = Math.min(samples.length, start + FRAMES_PER_BUFFER);
+      for (int i = start; i < end; i++) {
+        for (int channel = 0; channel < channelCount; channel++) {
+          input.putShort(samples[i]);
+        }
+      }
+      input.flip();
+      processor.queueInput(input);
+      ByteBuffer buffer = processor.getOutput();
+      while (buffer.hasRemaining()) {
+        output[outputIndex++] = buffer.getShort();
+      }
+    }
+    return output;
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Reports how many megapixels per second the engine filters a full screen frame with, for the
+ * color and blur passes apart. Only runs with {@code ./gradlew :app:testDebugUnitTest
+ * -Pbenchmark}.
+ */
+public final class VisionEngineBenchmark {
+  private static final int WIDTH = 1080;
+  private static final int HEIGHT = 2340;
+  private static final int WARM_UP_FRAMES = 20;
+  private static final int MEASURED_FRAMES = 50;
+
+  @Test
+  public void megapixelsPerSecond() {
+    assumeTrue(Boolean.getBoolean("benchmark"));
+    int[] frame = new int[WIDTH * HEIGHT];
+    Random random = new Random(/* seed= */ 1);
+    for (int i = 0; i < frame.length; i++) {
+      frame[i] = 0xFF000000 | random.nextInt();
+    }
+    report(
+        "Color",
+        frame,
+        new VisionFilter.Builder()
+            .setDeficiency(VisionDeficiency.DEUTERANOPIA)
+            .setContrastLoss(0.3f)
+            .setHaze(0.2f)
+            .build());
+    for (int radius : new int[] {4, 16}) {
+      VisionFilter filter = new VisionFilter.Builder().setBlurRadiusPx(radius).build();
+      report("Blur radius " + radius, frame, filter);
+    }
+  }
+
+  private static void report(String name, int[] frame, VisionFilter filter) {
+    VisionEngine engine = VisionEngine.getInstance();
+    int[] pixels = new int[frame.length];
+    for (int i = 0; i < WARM_UP_FRAMES; i++) {
+      System.arraycopy(frame, 0, pixels, 0, frame.length);
+      engine.apply(pixels, WIDTH, HEIGHT, filter);
+    }
+    long elapsedNs = 0;
+    for (int i = 0; i < MEASURED_FRAMES; i++) {
+      // Blurring the same pixels over and over would converge on a flat frame.
+      System.arraycopy(frame, 0, pixels, 0, frame.length);
+      long startNs = System.nanoTime();
+      engine.apply(pixels, WIDTH, HEIGHT, filter);
+      elapsedNs += System.nanoTime() - startNs;
+    }
+    double megapixels = (double) MEASURED_FRAMES * WIDTH * HEIGHT / 1e6;
+    System.out.printf(
+        Locale.US,
+        "%s: %.0f MP/s, %.1f ms per %dx%d frame, %d threads%n",
+        name,
+        megapixels / (elapsedNs / 1e9),
+        elapsedNs / 1e6 / MEASURED_FRAMES,
+        WIDTH,
+        HEIGHT,
+        Runtime.getRuntime().availableProcessors());
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.simulation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/** Checks the engine's lookup table path against the exact model, on the JVM. */
+public final class VisionEngineTest {
+  // Every third value per channel, ending on 255, keeps the test quick.
+  private static final int CHANNEL_STEP = 3;
+
+  @Test
+  public void mapColors_matchesExactModelWithinOneCodeValue() {
+    VisionFilter.Builder builder = new VisionFilter.Builder();
+    for (VisionDeficiency deficiency : VisionDeficiency.values()) {
+      assertMatchesExactModel(builder.setDeficiency(deficiency).build());
+    }
+    assertMatchesExactModel(builder.setContrastLoss(0.6f).build());
+    assertMatchesExactModel(builder.setHaze(0.4f).build());
+    assertMatchesExactModel(
+        new VisionFilter.Builder().setContrastLoss(0.3f).setHaze(0.5f).build());
+  }
+
+  @Test
+  public void apply_keepsAlpha() {
+    int[] pixels = {0x00123456, 0x80FF0000, 0xFF00FF00};
+    VisionFilter filter =
+        new VisionFilter.Builder()
+            .setDeficiency(VisionDeficiency.DEUTERANOPIA)
+            .setContrastLoss(0.5f)
+            .build();
+
+    VisionEngine.getInstance().apply(pixels, pixels.length, /* height= */ 1, filter);
+
+    assertArrayEquals(
+        new int[] {0x00, 0x80, 0xFF},
+        new int[] {pixels[0] >>> 24, pixels[1] >>> 24, pixels[2] >>> 24});
+  }
+
+  @Test
+  public void apply_withoutEffects_leavesPixelsUnchanged() {
+    int[] pixels = allColors();
+    int[] original = pixels.clone();
+
+    VisionEngine.getInstance().apply(pixels, pixels.length, /* height= */ 1, VisionFilter.CLEAR);
+
+    assertArrayEquals(original, pixels);
+  }
+
+  private static void assertMatchesExactModel(VisionFilter filter) {
+    int[] pixels = allColors();
+    int[] original = pixels.clone();
+
+    VisionEngine.getInstance().apply(pixels, pixels.length, /* height= */ 1, filter);
+
+    int maxError = 0;
+    for (int i = 0; i < pixels.length; i++) {
+      int color = original[i];
+      int expected =
+          filter.mapColor(
+              ((color >> 16) & 0xFF) / 255f, ((color >> 8) & 0xFF) / 255f, (color & 0xFF) / 255f);
+      for (int shift = 16; shift >= 0; shift -= 8) {
+        int error = Math.abs(((pixels[i] >> shift) & 0xFF) - ((expected >> shift) & 0xFF));
+        maxError = Math.max(maxError, error);
+      }
+    }
+    assertTrue(
+        filter.getDeficiency() + ", contrast loss " + filter.getContrastLoss() + ", haze "
+            + filter.getHaze() + ": off by " + maxError,
+        maxError <= 1);
+  }
+
+  /** Returns opaque colors sampled evenly over the RGB cube, as a single row of pixels. */
+  static int[] allColors() {
+    int values = 255 / CHANNEL_STEP + 1;
+    int[] pixels = new int[values * values * values];
+    int index = 0;
+    for (int r = 0; r <= 255; r += CHANNEL_STEP) {
+      for (int g = 0; g <= 255; g += CHANNEL_STEP) {
+        for (int b = 0; b <= 255; b += CHANNEL_STEP) {
+          pixels[index++] = 0xFF000000 | r << 16 | g << 8 | b;
+        }
+      }
+    }
+    return pixels;
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.gradle;
+
+import com.android.experienceaccessibility.subtitles.SubtitleCompiler;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileType;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+
+/**
+ * Validates SubRip files and compiles them to cue tables. Only added or modified files are
+ * recompiled, and tables of removed files are deleted.
+ */
+@CacheableTask
+public abstract class CompileSubtitlesTask extends DefaultTask {
+
+  /** The .srt files to compile, keeping their path relative to the file tree root. */
+  @Incremental
+  @PathSensitive(PathSensitivity.RELATIVE)
+  @InputFiles
+  public abstract ConfigurableFileCollection getSubtitleFiles();
+
+  @OutputDirectory
+  public abstract DirectoryProperty getOutputDir();
+
+  /** Whether overlapping or out of order cues fail the build instead of only being reported. */
+  @Input
+  public abstract Property<Boolean> getFailOnTimingErrors();
+
+  public CompileSubtitlesTask() {
+    getFailOnTimingErrors().convention(true);
+  }
+
+  @TaskAction
+  public void compile(InputChanges inputChanges) throws IOException {
+    File outputDir = getOutputDir().get().getAsFile();
+    List<String> problems = new ArrayList<>();
+    for (FileChange change : inputChanges.getFileChanges(getSubtitleFiles())) {
+      if (change.getFileType() == FileType.DIRECTORY) {
+        continue;
+      }
+      File cueTableFile =
+          new File(outputDir, SubtitleCompiler.toCueTableFileName(change.getNormalizedPath()));
+      if (change.getChangeType() == ChangeType.REMOVED) {
+        getProject().delete(cueTableFile);
+        continue;
+      }
+      File parent = cueTableFile.getParentFile();
+      if (!parent.isDirectory() && !parent.mkdirs()) {
+        throw new IOException("Cannot create " + parent);
+      }
+      SubtitleCompiler.compile(change.getFile(), cueTableFile, problems);
+      getLogger().info("Compiled {}", change.getNormalizedPath());
+    }
+    if (problems.isEmpty()) {
+      return;
+    }
+    String report = "Subtitle timing problems:\n  " + String.join("\n  ", problems);
+    if (getFailOnTimingErrors().get()) {
+      throw new GradleException(report);
+    }
+    getLogger().warn(report);
+  }
+}
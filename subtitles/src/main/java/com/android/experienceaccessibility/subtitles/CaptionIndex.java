@@ -0,0 +1,404 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Inverted index from caption words to the cues saying them, across several cue tables.
+ *
+ * <p>Cues are numbered globally, one document after the other. The postings of a term are the
+ * numbers of the cues containing it in increasing order, stored as varint encoded deltas in one
+ * shared pool. Terms are sorted, so all terms starting with a prefix are found by binary search.
+ *
+ * <p>Layout, big endian: magic, version, source stamp, document count, each document's id and
+ * first cue number, cue count, all cue start times (us), term count, each term and the offset of
+ * its postings, then the postings pool length and the pool itself.
+ */
+public final class CaptionIndex {
+  private static final int MAGIC = 0x45414349; // "EACI"
+  private static final int VERSION = 1;
+
+  private final long sourceStamp;
+  private final String[] documentIds;
+  private final int[] documentFirstCues;
+  private final long[] startTimesUs;
+  private final String[] terms;
+  private final int[] postingOffsets;
+  private final byte[] postings;
+
+  private CaptionIndex(
+      long sourceStamp,
+      String[] documentIds,
+      int[] documentFirstCues,
+      long[] startTimesUs,
+      String[] terms,
+      int[] postingOffsets,
+      byte[] postings) {
+    this.sourceStamp = sourceStamp;
+    this.documentIds = documentIds;
+    this.documentFirstCues = documentFirstCues;
+    this.startTimesUs = startTimesUs;
+    this.terms = terms;
+    this.postingOffsets = postingOffsets;
+    this.postings = postings;
+  }
+
+  /** Reads an index written by {@link #write}. */
+  public static CaptionIndex read(byte[] data, int length) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+    try {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("Not a caption index.");
+      }
+      int version = input.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported caption index version: " + version);
+      }
+      long sourceStamp = input.readLong();
+      int documentCount = readCount(input, length);
+      String[] documentIds = new String[documentCount];
+      int[] documentFirstCues = new int[documentCount];
+      for (int i = 0; i < documentCount; i++) {
+        documentIds[i] = input.readUTF();
+        documentFirstCues[i] = input.readInt();
+      }
+      int cueCount = readCount(input, length);
+      long[] startTimesUs = new long[cueCount];
+      for (int i = 0; i < cueCount; i++) {
+        startTimesUs[i] = input.readLong();
+      }
+      int termCount = readCount(input, length);
+      String[] terms = new String[termCount];
+      int[] postingOffsets = new int[termCount + 1];
+      for (int i = 0; i < termCount; i++) {
+        terms[i] = input.readUTF();
+        postingOffsets[i] = input.readInt();
+      }
+      byte[] postings = new byte[readCount(input, length)];
+      input.readFully(postings);
+      postingOffsets[termCount] = postings.length;
+      return new CaptionIndex(
+          sourceStamp,
+          documentIds,
+          documentFirstCues,
+          startTimesUs,
+          terms,
+          postingOffsets,
+          postings);
+    } catch (EOFException e) {
+      throw new IOException("Truncated caption index.", e);
+    }
+  }
+
+  private static int readCount(DataInputStream input, int length) throws IOException {
+    int count = input.readInt();
+    if (count < 0 || count > length) {
+      throw new IOException("Invalid count: " + count);
+    }
+    return count;
+  }
+
+  /** Writes this index in the binary caption index format. */
+  public void write(OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeLong(sourceStamp);
+    output.writeInt(documentIds.length);
+    for (int i = 0; i < documentIds.length; i++) {
+      output.writeUTF(documentIds[i]);
+      output.writeInt(documentFirstCues[i]);
+    }
+    output.writeInt(startTimesUs.length);
+    for (long startTimeUs : startTimesUs) {
+      output.writeLong(startTimeUs);
+    }
+    output.writeInt(terms.length);
+    for (int i = 0; i < terms.length; i++) {
+      output.writeUTF(terms[i]);
+      output.writeInt(postingOffsets[i]);
+    }
+    output.writeInt(postings.length);
+    output.write(postings);
+    output.flush();
+  }
+
+  /** Returns the stamp of the sources the index was built from, as given to the builder. */
+  public long getSourceStamp() {
+    return sourceStamp;
+  }
+
+  public int getCueCount() {
+    return startTimesUs.length;
+  }
+
+  public int getTermCount() {
+    return terms.length;
+  }
+
+  /**
+   * Returns the cues containing every word of the query, in document and time order, up to {@code
+   * maxHits} of them. Each query word matches any word it is a prefix of, so "dog bar" finds "the
+   * dog barks".
+   */
+  public List<Hit> search(String query, int maxHits) {
+    List<String> queryTokens = tokenize(query);
+    if (queryTokens.isEmpty() || maxHits <= 0) {
+      return Collections.emptyList();
+    }
+    BitSet matches = null;
+    for (String token : queryTokens) {
+      BitSet tokenMatches = new BitSet(startTimesUs.length);
+      int end = lowerBound(token + Character.MAX_VALUE);
+      for (int term = lowerBound(token); term < end; term++) {
+        addPostings(term, tokenMatches);
+      }
+      if (matches == null) {
+        matches = tokenMatches;
+      } else {
+        matches.and(tokenMatches);
+      }
+      if (matches.isEmpty()) {
+        return Collections.emptyList();
+      }
+    }
+    List<Hit> hits = new ArrayList<>();
+    for (int cue = matches.nextSetBit(0);
+        cue >= 0 && hits.size() < maxHits;
+        cue = matches.nextSetBit(cue + 1)) {
+      int document = findDocument(cue);
+      hits.add(
+          new Hit(documentIds[document], cue - documentFirstCues[document], startTimesUs[cue]));
+    }
+    return hits;
+  }
+
+  /** Returns the index of the first term not sorting before {@code key}. */
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = terms.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (terms[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private void addPostings(int term, BitSet cues) {
+    int position = postingOffsets[term];
+    int end = postingOffsets[term + 1];
+    int cue = 0;
+    while (position < end) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = postings[position++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      cue += delta;
+      cues.set(cue);
+    }
+  }
+
+  /** Returns the last document whose first cue is at or before {@code cue}. */
+  private int findDocument(int cue) {
+    int low = 0;
+    int high = documentFirstCues.length - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (documentFirstCues[middle] <= cue) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Splits caption text into lower case words, leaving out markup such as {@code <i>} and {@code
+   * {\an8}}.
+   */
+  public static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    StringBuilder token = new StringBuilder();
+    char closingMarkup = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (closingMarkup != 0) {
+        if (c == closingMarkup) {
+          closingMarkup = 0;
+        }
+        continue;
+      }
+      if (Character.isLetterOrDigit(c)) {
+        token.append(c);
+        continue;
+      }
+      if (token.length() > 0) {
+        tokens.add(token.toString().toLowerCase(Locale.ROOT));
+        token.setLength(0);
+      }
+      if (c == '<') {
+        closingMarkup = '>';
+      } else if (c == '{') {
+        closingMarkup = '}';
+      }
+    }
+    if (token.length() > 0) {
+      tokens.add(token.toString().toLowerCase(Locale.ROOT));
+    }
+    return tokens;
+  }
+
+  /** A cue matching a query. */
+  public static final class Hit {
+    private final String documentId;
+    private final int cueIndex;
+    private final long startTimeUs;
+
+    private Hit(String documentId, int cueIndex, long startTimeUs) {
+      this.documentId = documentId;
+      this.cueIndex = cueIndex;
+      this.startTimeUs = startTimeUs;
+    }
+
+    public String getDocumentId() {
+      return documentId;
+    }
+
+    /** Returns the index of the cue in its document's {@link CueTable}. */
+    public int getCueIndex() {
+      return cueIndex;
+    }
+
+    public long getStartTimeUs() {
+      return startTimeUs;
+    }
+  }
+
+  /** Collects cue tables and builds a {@link CaptionIndex} over them. */
+  public static final class Builder {
+    private final List<String> documentIds = new ArrayList<>();
+    private final List<Integer> documentFirstCues = new ArrayList<>();
+    private final Map<String, IntList> postingLists = new HashMap<>();
+    private long[] startTimesUs = new long[0];
+    private int cueCount = 0;
+    private long sourceStamp = 0;
+
+    /**
+     * Sets a value identifying the sources, like their modification time, so a stored index can
+     * be checked against them.
+     */
+    public Builder setSourceStamp(long sourceStamp) {
+      this.sourceStamp = sourceStamp;
+      return this;
+    }
+
+    /** Adds all cues of a document. Document ids must be unique. */
+    public Builder add(String documentId, CueTable cueTable) {
+      documentIds.add(documentId);
+      documentFirstCues.add(cueCount);
+      startTimesUs = Arrays.copyOf(startTimesUs, cueCount + cueTable.size());
+      for (int i = 0; i < cueTable.size(); i++) {
+        int cue = cueCount++;
+        startTimesUs[cue] = cueTable.getStartTimeUs(i);
+        for (String token : tokenize(cueTable.getText(i))) {
+          IntList postingList = postingLists.get(token);
+          if (postingList == null) {
+            postingList = new IntList();
+            postingLists.put(token, postingList);
+          }
+          // Cues are numbered in order, so a repeated word shows up as the last entry.
+          if (postingList.size == 0 || postingList.values[postingList.size - 1] != cue) {
+            postingList.add(cue);
+          }
+        }
+      }
+      return this;
+    }
+
+    public CaptionIndex build() {
+      String[] terms = postingLists.keySet().toArray(new String[0]);
+      Arrays.sort(terms);
+      int[] postingOffsets = new int[terms.length + 1];
+      ByteArrayOutputStream postings = new ByteArrayOutputStream();
+      for (int i = 0; i < terms.length; i++) {
+        postingOffsets[i] = postings.size();
+        IntList postingList = postingLists.get(terms[i]);
+        int previousCue = 0;
+        for (int j = 0; j < postingList.size; j++) {
+          writeVarInt(postings, postingList.values[j] - previousCue);
+          previousCue = postingList.values[j];
+        }
+      }
+      postingOffsets[terms.length] = postings.size();
+      int[] firstCues = new int[documentFirstCues.size()];
+      for (int i = 0; i < firstCues.length; i++) {
+        firstCues[i] = documentFirstCues.get(i);
+      }
+      return new CaptionIndex(
+          sourceStamp,
+          documentIds.toArray(new String[0]),
+          firstCues,
+          Arrays.copyOf(startTimesUs, cueCount),
+          terms,
+          postingOffsets,
+          postings.toByteArray());
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream output, int value) {
+      while ((value & ~0x7F) != 0) {
+        output.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      output.write(value);
+    }
+  }
+
+  /** Growable list of ints, avoiding a boxed integer per posting while building. */
+  private static final class IntList {
+    private int[] values = new int[4];
+    private int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Time sorted subtitle cues in a compact binary form.
+ *
+ * <p>Layout, big endian: magic, version, cue count, all start times (us), all end times (us), cue
+ * count + 1 offsets into the text pool, then the UTF-8 text pool itself.
+ */
+public final class CueTable {
+  /** File extension used for compiled cue tables. */
+  public static final String FILE_EXTENSION = ".cues";
+
+  private static final int MAGIC = 0x45414355; // "EACU"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 12;
+
+  private final long[] startTimesUs;
+  private final long[] endTimesUs;
+  private final int[] textOffsets;
+  private final byte[] textPool;
+
+  private CueTable(long[] startTimesUs, long[] endTimesUs, int[] textOffsets, byte[] textPool) {
+    this.startTimesUs = startTimesUs;
+    this.endTimesUs = endTimesUs;
+    this.textOffsets = textOffsets;
+    this.textPool = textPool;
+  }
+
+  /**
+   * Reads a table written by {@link #write}. Throws {@link IOException} if the data is truncated,
+   * its text offsets are out of order or its cues are not sorted by start time.
+   */
+  public static CueTable read(byte[] data, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a cue table.");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported cue table version: " + version);
+      }
+      int cueCount = buffer.getInt();
+      if (cueCount < 0 || (long) cueCount * 20 + 4 > length - HEADER_SIZE) {
+        throw new IOException("Invalid cue count: " + cueCount);
+      }
+      long[] startTimesUs = new long[cueCount];
+      long[] endTimesUs = new long[cueCount];
+      int[] textOffsets = new int[cueCount + 1];
+      buffer.asLongBuffer().get(startTimesUs);
+      buffer.position(buffer.position() + cueCount * 8);
+      buffer.asLongBuffer().get(endTimesUs);
+      buffer.position(buffer.position() + cueCount * 8);
+      buffer.asIntBuffer().get(textOffsets);
+      buffer.position(buffer.position() + (cueCount + 1) * 4);
+      byte[] textPool = new byte[buffer.remaining()];
+      buffer.get(textPool);
+      if (textOffsets[cueCount] != textPool.length) {
+        throw new IOException("Truncated cue text pool.");
+      }
+      // getText and floorIndex trust these, so a corrupt file fails here rather than later.
+      if (textOffsets[0] != 0) {
+        throw new IOException("Invalid first text offset: " + textOffsets[0]);
+      }
+      for (int i = 0; i < cueCount; i++) {
+        if (textOffsets[i + 1] < textOffsets[i]) {
+          throw new IOException("Text offset " + (i + 1) + " is before the previous one.");
+        }
+        if (i > 0 && startTimesUs[i] < startTimesUs[i - 1]) {
+          throw new IOException("Cue " + i + " starts before the previous cue.");
+        }
+      }
+      return new CueTable(startTimesUs, endTimesUs, textOffsets, textPool);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Truncated cue table.", e);
+    }
+  }
+
+  /** Writes this table in the binary cue format. */
+  public void write(OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeInt(size());
+    for (long startTimeUs : startTimesUs) {
+      output.writeLong(startTimeUs);
+    }
+    for (long endTimeUs : endTimesUs) {
+      output.writeLong(endTimeUs);
+    }
+    for (int textOffset : textOffsets) {
+      output.writeInt(textOffset);
+    }
+    output.write(textPool);
+    output.flush();
+  }
+
+  public int size() {
+    return startTimesUs.length;
+  }
+
+  public long getStartTimeUs(int index) {
+    return startTimesUs[index];
+  }
+
+  public long getEndTimeUs(int index) {
+    return endTimesUs[index];
+  }
+
+  public String getText(int index) {
+    return new String(
+        textPool,
+        textOffsets[index],
+        textOffsets[index + 1] - textOffsets[index],
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns the index of the last cue starting at or before {@code timeUs}, or -1 if every cue
+   * starts later. Runs in O(log n).
+   */
+  public int floorIndex(long timeUs) {
+    int index = Arrays.binarySearch(startTimesUs, timeUs);
+    if (index < 0) {
+      return -index - 2;
+    }
+    // Several cues may share a start time, return the last one.
+    while (index + 1 < startTimesUs.length && startTimesUs[index + 1] == timeUs) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the cue shown at {@code timeUs}, or -1 if none is. When cues overlap, the
+   * one that started last wins.
+   */
+  public int activeIndex(long timeUs) {
+    int index = floorIndex(timeUs);
+    return index >= 0 && timeUs < endTimesUs[index] ? index : -1;
+  }
+
+  /** Collects cues and builds a time sorted {@link CueTable}. */
+  public static final class Builder {
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** Adds a cue. Cues may be added in any order. */
+    public Builder add(long startTimeUs, long endTimeUs, String text) {
+      entries.add(new Entry(startTimeUs, endTimeUs, text, entries.size()));
+      return this;
+    }
+
+    public CueTable build() {
+      List<Entry> sortedEntries = new ArrayList<>(entries);
+      // Stable on equal start times, so file order is kept for simultaneous cues.
+      Collections.sort(
+          sortedEntries,
+          (a, b) ->
+              a.startTimeUs != b.startTimeUs
+                  ? Long.compare(a.startTimeUs, b.startTimeUs)
+                  : Integer.compare(a.order, b.order));
+      int cueCount = sortedEntries.size();
+      long[] startTimesUs = new long[cueCount];
+      long[] endTimesUs = new long[cueCount];
+      int[] textOffsets = new int[cueCount + 1];
+      ByteArrayOutputStream textPool = new ByteArrayOutputStream();
+      for (int i = 0; i < cueCount; i++) {
+        Entry entry = sortedEntries.get(i);
+        startTimesUs[i] = entry.startTimeUs;
+        endTimesUs[i] = entry.endTimeUs;
+        textOffsets[i] = textPool.size();
+        byte[] text = entry.text.getBytes(StandardCharsets.UTF_8);
+        textPool.write(text, 0, text.length);
+      }
+      textOffsets[cueCount] = textPool.size();
+      return new CueTable(startTimesUs, endTimesUs, textOffsets, textPool.toByteArray());
+    }
+  }
+
+  private static final class Entry {
+    private final long startTimeUs;
+    private final long endTimeUs;
+    private final String text;
+    private final int order;
+
+    private Entry(long startTimeUs, long endTimeUs, String text, int order) {
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+      this.text = text;
+      this.order = order;
+    }
+  }
+}
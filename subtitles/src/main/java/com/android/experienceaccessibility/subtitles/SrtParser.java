@@ -0,0 +1,100 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Minimal SubRip parser that keeps cues in file order. */
+public final class SrtParser {
+  private static final Pattern TIMING =
+      Pattern.compile(
+          "\\s*(\\d+):(\\d{2}):(\\d{2})[,.](\\d{3})\\s*-->\\s*(\\d+):(\\d{2}):(\\d{2})[,.](\\d{3}).*");
+  private static final Pattern TAG = Pattern.compile("<[^>]*>|\\{\\\\[^}]*\\}");
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+  private SrtParser() {}
+
+  /** A cue as it appears in the file. */
+  public static final class SrtCue {
+    public final int lineNumber;
+    public final long startTimeUs;
+    public final long endTimeUs;
+    public final String text;
+
+    private SrtCue(int lineNumber, long startTimeUs, long endTimeUs, String text) {
+      this.lineNumber = lineNumber;
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+      this.text = text;
+    }
+  }
+
+  /** Parses all cues of a SubRip file, in file order. Formatting tags are stripped. */
+  public static List<SrtCue> parse(Reader reader) throws IOException {
+    BufferedReader lines = new BufferedReader(reader);
+    List<SrtCue> cues = new ArrayList<>();
+    int lineNumber = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      if (lineNumber == 1 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+        line = line.substring(1);
+      }
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      // The cue number is optional in practice, accept the timing line straight away.
+      Matcher timing = TIMING.matcher(line);
+      if (!timing.matches()) {
+        line = lines.readLine();
+        lineNumber++;
+        timing = TIMING.matcher(line == null ? "" : line);
+        if (!timing.matches()) {
+          throw new IOException("Expected cue timing at line " + lineNumber + ".");
+        }
+      }
+      int cueLineNumber = lineNumber;
+      StringBuilder text = new StringBuilder();
+      while ((line = lines.readLine()) != null) {
+        lineNumber++;
+        if (line.trim().isEmpty()) {
+          break;
+        }
+        if (text.length() > 0) {
+          text.append('\n');
+        }
+        text.append(TAG.matcher(line.trim()).replaceAll(""));
+      }
+      cues.add(
+          new SrtCue(
+              cueLineNumber, parseTimeUs(timing, 1), parseTimeUs(timing, 5), text.toString()));
+    }
+    return cues;
+  }
+
+  private static long parseTimeUs(Matcher matcher, int firstGroup) {
+    long hours = Long.parseLong(matcher.group(firstGroup));
+    long minutes = Long.parseLong(matcher.group(firstGroup + 1));
+    long seconds = Long.parseLong(matcher.group(firstGroup + 2));
+    long millis = Long.parseLong(matcher.group(firstGroup + 3));
+    return (((hours * 60 + minutes) * 60 + seconds) * 1000 + millis) * 1000;
+  }
+}
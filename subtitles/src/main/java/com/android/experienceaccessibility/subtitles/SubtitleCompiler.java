@@ -0,0 +1,94 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import com.android.experienceaccessibility.subtitles.SrtParser.SrtCue;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Converts SubRip files to {@link CueTable} files. */
+public final class SubtitleCompiler {
+  private static final String SRT_EXTENSION = ".srt";
+
+  private SubtitleCompiler() {}
+
+  /**
+   * Compiles a single SubRip file. Timing problems found by {@link SubtitleValidator} are added to
+   * {@code problems}, prefixed with the file name; the table is written either way.
+   */
+  public static CueTable compile(File srtFile, File cueTableFile, List<String> problems)
+      throws IOException {
+    List<SrtCue> cues;
+    try (Reader reader =
+        new InputStreamReader(new FileInputStream(srtFile), StandardCharsets.UTF_8)) {
+      cues = SrtParser.parse(reader);
+    }
+    for (String problem : SubtitleValidator.validate(cues)) {
+      problems.add(srtFile.getName() + ", " + problem);
+    }
+    CueTable.Builder builder = new CueTable.Builder();
+    for (SrtCue cue : cues) {
+      builder.add(cue.startTimeUs, cue.endTimeUs, cue.text);
+    }
+    CueTable cueTable = builder.build();
+    try (OutputStream output = new BufferedOutputStream(new FileOutputStream(cueTableFile))) {
+      cueTable.write(output);
+    }
+    return cueTable;
+  }
+
+  /** Returns the compiled file name for a SubRip file name, e.g. a.srt becomes a.cues. */
+  public static String toCueTableFileName(String srtFileName) {
+    String baseName =
+        srtFileName.endsWith(SRT_EXTENSION)
+            ? srtFileName.substring(0, srtFileName.length() - SRT_EXTENSION.length())
+            : srtFileName;
+    return baseName + CueTable.FILE_EXTENSION;
+  }
+
+  /** Usage: {@code SubtitleCompiler <output dir> <file.srt>...} */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: SubtitleCompiler <output dir> <file.srt>...");
+      System.exit(1);
+    }
+    File outputDir = new File(args[0]);
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Cannot create " + outputDir);
+    }
+    List<String> problems = new ArrayList<>();
+    for (int i = 1; i < args.length; i++) {
+      File srtFile = new File(args[i]);
+      File cueTableFile = new File(outputDir, toCueTableFileName(srtFile.getName()));
+      CueTable cueTable = compile(srtFile, cueTableFile, problems);
+      System.out.println(srtFile + " -> " + cueTableFile + " (" + cueTable.size() + " cues)");
+    }
+    for (String problem : problems) {
+      System.err.println(problem);
+    }
+    if (!problems.isEmpty()) {
+      System.exit(1);
+    }
+  }
+}
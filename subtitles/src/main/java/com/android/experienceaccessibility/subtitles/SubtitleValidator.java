@@ -0,0 +1,51 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import com.android.experienceaccessibility.subtitles.SrtParser.SrtCue;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Checks the timing of SubRip cues. */
+public final class SubtitleValidator {
+
+  private SubtitleValidator() {}
+
+  /**
+   * Returns a description of every timing problem, in file order: cues that end before they start,
+   * start before the previous cue, or overlap it. An empty list means the cues are valid.
+   */
+  public static List<String> validate(List<SrtCue> cues) {
+    List<String> problems = new ArrayList<>();
+    SrtCue previous = null;
+    for (SrtCue cue : cues) {
+      if (cue.endTimeUs <= cue.startTimeUs) {
+        problems.add("line " + cue.lineNumber + ": cue ends before it starts");
+      }
+      if (previous != null) {
+        if (cue.startTimeUs < previous.startTimeUs) {
+          problems.add(
+              "line " + cue.lineNumber + ": cue starts before the cue at line "
+                  + previous.lineNumber);
+        } else if (cue.startTimeUs < previous.endTimeUs) {
+          problems.add(
+              "line " + cue.lineNumber + ": cue overlaps the cue at line " + previous.lineNumber);
+        }
+      }
+      previous = cue;
+    }
+    return problems;
+  }
+}
@@ -0,0 +1,103 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Times building, storing, loading and searching a {@link CaptionIndex} of 10,000 generated cues
+ * spread over 200 documents. Run with {@code ./gradlew :subtitles:captionIndexBenchmark}.
+ */
+public final class CaptionIndexBenchmark {
+  private static final int DOCUMENT_COUNT = 200;
+  private static final int CUES_PER_DOCUMENT = 50;
+  private static final int WORDS_PER_CUE = 8;
+  private static final int VOCABULARY_SIZE = 5_000;
+  private static final int ROUNDS = 20;
+  private static final String[] QUERIES = {"w1", "w12 w3", "w4321", "w2 w20 w200", "missing"};
+
+  private CaptionIndexBenchmark() {}
+
+  public static void main(String[] args) throws IOException {
+    CueTable[] cueTables = generateCueTables(new Random(/* seed= */ 42));
+    // The first rounds warm the JIT up and are not reported.
+    for (int round = 0; round < ROUNDS; round++) {
+      run(cueTables, /* report= */ round == ROUNDS - 1);
+    }
+  }
+
+  private static void run(CueTable[] cueTables, boolean report) throws IOException {
+    long startNs = System.nanoTime();
+    CaptionIndex.Builder builder = new CaptionIndex.Builder();
+    for (int i = 0; i < cueTables.length; i++) {
+      builder.add("document" + i, cueTables[i]);
+    }
+    CaptionIndex index = builder.build();
+    long builtNs = System.nanoTime();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.write(output);
+    byte[] data = output.toByteArray();
+    long writtenNs = System.nanoTime();
+    CaptionIndex loadedIndex = CaptionIndex.read(data, data.length);
+    long readNs = System.nanoTime();
+    if (!report) {
+      for (String query : QUERIES) {
+        loadedIndex.search(query, Integer.MAX_VALUE);
+      }
+      return;
+    }
+    System.out.printf(
+        Locale.US,
+        "%d cues, %d terms, %d bytes%nbuild %.1f ms, write %.1f ms, read %.1f ms%n",
+        loadedIndex.getCueCount(),
+        loadedIndex.getTermCount(),
+        data.length,
+        (builtNs - startNs) / 1e6,
+        (writtenNs - builtNs) / 1e6,
+        (readNs - writtenNs) / 1e6);
+    for (String query : QUERIES) {
+      int hitCount = 0;
+      long queryStartNs = System.nanoTime();
+      for (int i = 0; i < ROUNDS; i++) {
+        hitCount = loadedIndex.search(query, Integer.MAX_VALUE).size();
+      }
+      long queryNs = (System.nanoTime() - queryStartNs) / ROUNDS;
+      System.out.printf(
+          Locale.US, "search \"%s\": %d hits, %.1f us%n", query, hitCount, queryNs / 1e3);
+    }
+  }
+
+  /** Returns cue tables whose words follow a rough Zipf distribution, like real dialogue. */
+  private static CueTable[] generateCueTables(Random random) {
+    CueTable[] cueTables = new CueTable[DOCUMENT_COUNT];
+    StringBuilder text = new StringBuilder();
+    for (int document = 0; document < DOCUMENT_COUNT; document++) {
+      CueTable.Builder builder = new CueTable.Builder();
+      for (int cue = 0; cue < CUES_PER_DOCUMENT; cue++) {
+        text.setLength(0);
+        for (int word = 0; word < WORDS_PER_CUE; word++) {
+          int rank = (int) Math.pow(VOCABULARY_SIZE, random.nextDouble());
+          text.append(word == 0 ? "" : " ").append('w').append(rank - 1);
+        }
+        builder.add(cue * 2_000_000L, cue * 2_000_000L + 1_500_000L, text.toString());
+      }
+      cueTables[document] = builder.build();
+    }
+    return cueTables;
+  }
+}
@@ -0,0 +1,276 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public final class CaptionIndexTest {
+  // Magic, version and source stamp come before the document count.
+  private static final int DOCUMENT_COUNT_OFFSET = 16;
+
+  @Test
+  public void tokenize_lowerCasesAndSplitsOnPunctuation() {
+    assertEquals(
+        Arrays.asList("the", "dog", "barks", "42", "times"),
+        CaptionIndex.tokenize("The DOG barks... 42 times!"));
+  }
+
+  @Test
+  public void tokenize_stripsMarkup() {
+    assertEquals(
+        Arrays.asList("top", "italic", "bold", "text"),
+        CaptionIndex.tokenize("{\\an8}Top <i>italic</i> <font color=\"red\">bold</font>text"));
+  }
+
+  @Test
+  public void tokenize_dropsUnclosedMarkup() {
+    assertEquals(Collections.singletonList("before"), CaptionIndex.tokenize("before <i after"));
+  }
+
+  @Test
+  public void tokenize_emptyText() {
+    assertTrue(CaptionIndex.tokenize("").isEmpty());
+    assertTrue(CaptionIndex.tokenize(" ... ").isEmpty());
+  }
+
+  @Test
+  public void search_matchesEveryWordAsPrefix() {
+    CaptionIndex index =
+        new CaptionIndex.Builder()
+            .add(
+                "story",
+                cueTable("the dog barks", "the doorbell rings", "a cat barks", "dogs sleep"))
+            .build();
+
+    assertEquals(Arrays.asList(0, 3), cueIndices(index.search("dog", 10)));
+    assertEquals(Arrays.asList(0, 1, 3), cueIndices(index.search("do", 10)));
+    assertEquals(Collections.singletonList(0), cueIndices(index.search("do bar", 10)));
+    assertEquals(Arrays.asList(0, 2), cueIndices(index.search("BARK", 10)));
+    assertTrue(index.search("doge", 10).isEmpty());
+    assertTrue(index.search("dog cat", 10).isEmpty());
+  }
+
+  @Test
+  public void search_prefixDoesNotMatchLaterTerms() {
+    CaptionIndex index =
+        new CaptionIndex.Builder().add("story", cueTable("ab", "abc", "abd", "ac", "b")).build();
+
+    assertEquals(Arrays.asList(0, 1, 2), cueIndices(index.search("ab", 10)));
+    assertEquals(Collections.singletonList(1), cueIndices(index.search("abc", 10)));
+    assertEquals(Arrays.asList(0, 1, 2, 3), cueIndices(index.search("a", 10)));
+  }
+
+  @Test
+  public void search_limitsHitsAndIgnoresEmptyQueries() {
+    CaptionIndex index =
+        new CaptionIndex.Builder().add("story", cueTable("hi", "hi", "hi", "hi")).build();
+
+    assertEquals(Arrays.asList(0, 1), cueIndices(index.search("hi", 2)));
+    assertTrue(index.search("hi", 0).isEmpty());
+    assertTrue(index.search("", 10).isEmpty());
+    assertTrue(index.search("<i>", 10).isEmpty());
+  }
+
+  @Test
+  public void search_countsRepeatedWordOnce() {
+    CaptionIndex index =
+        new CaptionIndex.Builder().add("story", cueTable("no no no", "yes")).build();
+
+    assertEquals(Collections.singletonList(0), cueIndices(index.search("no", 10)));
+  }
+
+  @Test
+  public void search_decodesPostingsAcrossVarIntLengths() {
+    // Deltas encoded in one, two and three varint bytes, then in one byte again.
+    int[] wordCues = {0, 1, 128, 128 + 16_384, 128 + 16_384 + 1};
+    String[] texts = new String[wordCues[wordCues.length - 1] + 1];
+    Arrays.fill(texts, "filler");
+    for (int cue : wordCues) {
+      texts[cue] = "needle";
+    }
+    CaptionIndex index = new CaptionIndex.Builder().add("story", cueTable(texts)).build();
+
+    List<Integer> expected = new ArrayList<>();
+    for (int cue : wordCues) {
+      expected.add(cue);
+    }
+    assertEquals(expected, cueIndices(index.search("needle", 100)));
+    assertEquals(texts.length - wordCues.length, index.search("filler", texts.length).size());
+  }
+
+  @Test
+  public void search_mapsCuesToDocumentsAtBoundaries() {
+    CaptionIndex index =
+        new CaptionIndex.Builder()
+            .add("first", cueTable("word one", "word two"))
+            .add("empty", cueTable())
+            .add("second", cueTable("word three"))
+            .add("third", cueTable("word four", "word five", "word six"))
+            .build();
+
+    List<CaptionIndex.Hit> hits = index.search("word", 10);
+
+    assertEquals(6, hits.size());
+    assertHit(hits.get(0), "first", 0);
+    assertHit(hits.get(1), "first", 1);
+    assertHit(hits.get(2), "second", 0);
+    assertHit(hits.get(3), "third", 0);
+    assertHit(hits.get(4), "third", 1);
+    assertHit(hits.get(5), "third", 2);
+  }
+
+  @Test
+  public void search_reportsCueStartTimes() {
+    CaptionIndex index =
+        new CaptionIndex.Builder()
+            .add(
+                "story",
+                new CueTable.Builder()
+                    .add(5_000_000, 6_000_000, "later")
+                    .add(1_000_000, 2_000_000, "sooner later")
+                    .build())
+            .build();
+
+    List<CaptionIndex.Hit> hits = index.search("later", 10);
+
+    assertEquals(1_000_000, hits.get(0).getStartTimeUs());
+    assertEquals(5_000_000, hits.get(1).getStartTimeUs());
+  }
+
+  @Test
+  public void readWrite_roundTrips() throws IOException {
+    CaptionIndex index =
+        new CaptionIndex.Builder()
+            .setSourceStamp(1234)
+            .add("first", cueTable("the dog barks", "é accents ünïcode"))
+            .add("second", cueTable("the cat"))
+            .build();
+
+    CaptionIndex copy = roundTrip(index);
+
+    assertEquals(1234, copy.getSourceStamp());
+    assertEquals(index.getCueCount(), copy.getCueCount());
+    assertEquals(index.getTermCount(), copy.getTermCount());
+    List<CaptionIndex.Hit> hits = copy.search("the", 10);
+    assertEquals(2, hits.size());
+    assertHit(hits.get(0), "first", 0);
+    assertHit(hits.get(1), "second", 0);
+    assertHit(copy.search("ünï", 10).get(0), "first", 1);
+  }
+
+  @Test
+  public void readWrite_roundTripsEmptyIndex() throws IOException {
+    CaptionIndex copy = roundTrip(new CaptionIndex.Builder().build());
+
+    assertEquals(0, copy.getCueCount());
+    assertEquals(0, copy.getTermCount());
+    assertTrue(copy.search("anything", 10).isEmpty());
+  }
+
+  @Test
+  public void read_rejectsEveryTruncation() throws IOException {
+    byte[] data =
+        write(new CaptionIndex.Builder().add("story", cueTable("one two", "three")).build());
+
+    for (int length = 0; length < data.length; length++) {
+      try {
+        CaptionIndex.read(data, length);
+        fail("Read an index truncated to " + length + " of " + data.length + " bytes");
+      } catch (IOException expected) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test
+  public void read_rejectsNegativeCount() throws IOException {
+    assertInvalidDocumentCount(-1);
+  }
+
+  @Test
+  public void read_rejectsCountLargerThanData() throws IOException {
+    assertInvalidDocumentCount(Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void read_rejectsOtherFormats() throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cueTable("not an index").write(output);
+    byte[] data = output.toByteArray();
+
+    try {
+      CaptionIndex.read(data, data.length);
+      fail();
+    } catch (IOException expected) {
+      assertEquals("Not a caption index.", expected.getMessage());
+    }
+  }
+
+  private static void assertInvalidDocumentCount(int count) throws IOException {
+    byte[] data = write(new CaptionIndex.Builder().add("story", cueTable("text")).build());
+    ByteBuffer.wrap(data).putInt(DOCUMENT_COUNT_OFFSET, count);
+
+    try {
+      CaptionIndex.read(data, data.length);
+      fail();
+    } catch (IOException expected) {
+      assertEquals("Invalid count: " + count, expected.getMessage());
+    }
+  }
+
+  private static void assertHit(CaptionIndex.Hit hit, String documentId, int cueIndex) {
+    assertEquals(documentId, hit.getDocumentId());
+    assertEquals(cueIndex, hit.getCueIndex());
+  }
+
+  private static List<Integer> cueIndices(List<CaptionIndex.Hit> hits) {
+    List<Integer> cueIndices = new ArrayList<>();
+    for (CaptionIndex.Hit hit : hits) {
+      cueIndices.add(hit.getCueIndex());
+    }
+    return cueIndices;
+  }
+
+  /** Returns a table with one second long cues of the given texts, one after the other. */
+  static CueTable cueTable(String... texts) {
+    CueTable.Builder builder = new CueTable.Builder();
+    for (int i = 0; i < texts.length; i++) {
+      builder.add(i * 1_000_000L, (i + 1) * 1_000_000L, texts[i]);
+    }
+    return builder.build();
+  }
+
+  private static byte[] write(CaptionIndex index) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    index.write(output);
+    return output.toByteArray();
+  }
+
+  private static CaptionIndex roundTrip(CaptionIndex index) throws IOException {
+    byte[] data = write(index);
+    return CaptionIndex.read(data, data.length);
+  }
+}
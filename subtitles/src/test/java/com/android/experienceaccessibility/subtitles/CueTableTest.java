@@ -0,0 +1,170 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class CueTableTest {
+  // Magic, version and cue count come before the start times.
+  private static final int HEADER_SIZE = 12;
+
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void compile_roundTripsSubRip() throws IOException {
+    File srtFile = temporaryFolder.newFile("story.srt");
+    Files.write(
+        srtFile.toPath(),
+        ("1\n00:00:01,000 --> 00:00:02,500\n<i>Hello</i>\nthere\n\n"
+                + "2\n00:00:04,000 --> 00:00:05,000\nÜnïcode é\n\n"
+                + "3\n00:01:00,000 --> 00:01:01,000\nLast\n")
+            .getBytes(StandardCharsets.UTF_8));
+    File cueTableFile = temporaryFolder.newFile("story.cues");
+    List<String> problems = new ArrayList<>();
+
+    SubtitleCompiler.compile(srtFile, cueTableFile, problems);
+    byte[] data = Files.readAllBytes(cueTableFile.toPath());
+    CueTable cueTable = CueTable.read(data, data.length);
+
+    assertEquals(0, problems.size());
+    assertEquals(3, cueTable.size());
+    assertEquals("Hello\nthere", cueTable.getText(0));
+    assertEquals("Ünïcode é", cueTable.getText(1));
+    assertEquals("Last", cueTable.getText(2));
+    assertEquals(1_000_000, cueTable.getStartTimeUs(0));
+    assertEquals(2_500_000, cueTable.getEndTimeUs(0));
+    assertEquals(60_000_000, cueTable.getStartTimeUs(2));
+    assertEquals(-1, cueTable.floorIndex(999_999));
+    assertEquals(0, cueTable.floorIndex(1_000_000));
+    assertEquals(0, cueTable.floorIndex(3_000_000));
+    assertEquals(1, cueTable.floorIndex(4_000_000));
+    assertEquals(2, cueTable.floorIndex(Long.MAX_VALUE));
+    assertEquals(0, cueTable.activeIndex(2_000_000));
+    assertEquals(-1, cueTable.activeIndex(3_000_000));
+  }
+
+  @Test
+  public void build_sortsCuesKeepingOrderOfSimultaneousOnes() {
+    CueTable cueTable =
+        new CueTable.Builder()
+            .add(2_000_000, 3_000_000, "third")
+            .add(1_000_000, 2_000_000, "first")
+            .add(1_000_000, 4_000_000, "second")
+            .build();
+
+    assertEquals("first", cueTable.getText(0));
+    assertEquals("second", cueTable.getText(1));
+    assertEquals("third", cueTable.getText(2));
+    // The last of the cues starting at that time.
+    assertEquals(1, cueTable.floorIndex(1_000_000));
+  }
+
+  @Test
+  public void readWrite_roundTripsEmptyTable() throws IOException {
+    byte[] data = write(new CueTable.Builder().build());
+
+    CueTable cueTable = CueTable.read(data, data.length);
+
+    assertEquals(0, cueTable.size());
+    assertEquals(-1, cueTable.floorIndex(0));
+  }
+
+  @Test
+  public void read_rejectsEveryTruncation() throws IOException {
+    byte[] data = write(CaptionIndexTest.cueTable("one", "two", "three"));
+
+    for (int length = 0; length < data.length; length++) {
+      try {
+        CueTable.read(data, length);
+        fail("Read a table truncated to " + length + " of " + data.length + " bytes");
+      } catch (IOException expected) {
+        // Expected.
+      }
+    }
+  }
+
+  @Test
+  public void read_rejectsNonZeroFirstOffset() throws IOException {
+    byte[] data = write(CaptionIndexTest.cueTable("one", "two"));
+    ByteBuffer.wrap(data).putInt(textOffsetPosition(/* cueCount= */ 2, /* index= */ 0), 1);
+
+    assertReadFails(data, "Invalid first text offset: 1");
+  }
+
+  @Test
+  public void read_rejectsDecreasingOffsets() throws IOException {
+    byte[] data = write(CaptionIndexTest.cueTable("one", "two"));
+    // "one" would end after "two" starts.
+    ByteBuffer.wrap(data).putInt(textOffsetPosition(/* cueCount= */ 2, /* index= */ 1), 7);
+
+    assertReadFails(data, "Text offset 2 is before the previous one.");
+  }
+
+  @Test
+  public void read_rejectsUnsortedStartTimes() throws IOException {
+    byte[] data = write(CaptionIndexTest.cueTable("one", "two", "three"));
+    ByteBuffer.wrap(data).putLong(HEADER_SIZE + 2 * 8, 0);
+    ByteBuffer.wrap(data).putLong(HEADER_SIZE + 8, 5_000_000);
+
+    assertReadFails(data, "Cue 2 starts before the previous cue.");
+  }
+
+  @Test
+  public void read_rejectsNegativeCount() throws IOException {
+    byte[] data = write(CaptionIndexTest.cueTable("one"));
+    ByteBuffer.wrap(data).putInt(HEADER_SIZE - 4, -1);
+
+    assertReadFails(data, "Invalid cue count: -1");
+  }
+
+  @Test
+  public void read_rejectsOtherFormats() throws IOException {
+    byte[] data = "1\n00:00:01,000 --> 00:00:02,000\nHi\n".getBytes(StandardCharsets.UTF_8);
+
+    assertReadFails(data, "Not a cue table.");
+  }
+
+  private static void assertReadFails(byte[] data, String message) {
+    try {
+      CueTable.read(data, data.length);
+      fail();
+    } catch (IOException expected) {
+      assertEquals(message, expected.getMessage());
+    }
+  }
+
+  private static int textOffsetPosition(int cueCount, int index) {
+    return HEADER_SIZE + cueCount * 16 + index * 4;
+  }
+
+  private static byte[] write(CueTable cueTable) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    cueTable.write(output);
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.android.experienceaccessibility.subtitles.SrtParser.SrtCue;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+public final class SrtParserTest {
+
+  @Test
+  public void parse_readsCuesInFileOrder() throws IOException {
+    List<SrtCue> cues =
+        SrtParser.parse(
+            new StringReader(
+                "1\n00:00:05,000 --> 00:00:06,000\nLater\n\n"
+                    + "2\n01:02:03,004 --> 01:02:04,005\nFirst line\nSecond line\n"));
+
+    assertEquals(2, cues.size());
+    // Line numbers are those of the timing lines.
+    assertEquals(2, cues.get(0).lineNumber);
+    assertEquals(5_000_000, cues.get(0).startTimeUs);
+    assertEquals(6_000_000, cues.get(0).endTimeUs);
+    assertEquals("Later", cues.get(0).text);
+    assertEquals(6, cues.get(1).lineNumber);
+    assertEquals(((3600 + 2 * 60 + 3) * 1000 + 4) * 1000L, cues.get(1).startTimeUs);
+    assertEquals("First line\nSecond line", cues.get(1).text);
+  }
+
+  @Test
+  public void parse_acceptsVariantsSeenInPractice() throws IOException {
+    List<SrtCue> cues =
+        SrtParser.parse(
+            new StringReader(
+                "\uFEFF00:00:01.000 --> 00:00:02.000 X1:0 X2:10\r\n"
+                    + "  {\\an8}<b>Bold</b> top  \r\n"
+                    + "\r\n\r\n"
+                    + "7\r\n00:00:03,000-->00:00:04,000\r\n\r\n"));
+
+    assertEquals(2, cues.size());
+    assertEquals(1, cues.get(0).lineNumber);
+    assertEquals(1_000_000, cues.get(0).startTimeUs);
+    assertEquals("Bold top", cues.get(0).text);
+    assertEquals(3_000_000, cues.get(1).startTimeUs);
+    assertEquals("", cues.get(1).text);
+  }
+
+  @Test
+  public void parse_rejectsMissingTiming() {
+    try {
+      SrtParser.parse(new StringReader("1\n00:00:01,000 --> 00:00:02,000\nA\n\n2\nB\n"));
+      fail();
+    } catch (IOException expected) {
+      assertEquals("Expected cue timing at line 6.", expected.getMessage());
+    }
+  }
+
+  @Test
+  public void parse_rejectsTruncatedCue() {
+    try {
+      SrtParser.parse(new StringReader("1\n"));
+      fail();
+    } catch (IOException expected) {
+      assertEquals("Expected cue timing at line 2.", expected.getMessage());
+    }
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2021 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.android.experienceaccessibility.subtitles;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public final class SubtitleValidatorTest {
+
+  @Test
+  public void validate_acceptsOrderedCues() throws IOException {
+    assertTrue(
+        validate(
+                "00:00:01,000 --> 00:00:02,000\nA\n\n"
+                    + "00:00:02,000 --> 00:00:03,000\nB\n\n"
+                    + "00:00:05,000 --> 00:00:06,000\nC\n")
+            .isEmpty());
+  }
+
+  @Test
+  public void validate_reportsEveryProblemInFileOrder() throws IOException {
+    List<String> problems =
+        validate(
+            "1\n00:00:02,000 --> 00:00:01,000\nBackwards\n\n"
+                + "2\n00:00:05,000 --> 00:00:08,000\nLong\n\n"
+                + "3\n00:00:07,000 --> 00:00:09,000\nOverlapping\n\n"
+                + "4\n00:00:06,000 --> 00:00:06,500\nEarly\n");
+
+    assertEquals(
+        Arrays.asList(
+            "line 2: cue ends before it starts",
+            "line 10: cue overlaps the cue at line 6",
+            "line 14: cue starts before the cue at line 10"),
+        problems);
+  }
+
+  @Test
+  public void validate_reportsEmptyDuration() throws IOException {
+    assertEquals(
+        Arrays.asList("line 1: cue ends before it starts"),
+        validate("00:00:01,000 --> 00:00:01,000\nA\n"));
+  }
+
+  private static List<String> validate(String srt) throws IOException {
+    return SubtitleValidator.validate(SrtParser.parse(new StringReader(srt)));
+  }
+}